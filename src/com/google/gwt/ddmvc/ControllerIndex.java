@@ -0,0 +1,225 @@
+package com.google.gwt.ddmvc;
+
+import com.google.gwt.ddmvc.controller.Controller;
+import com.google.gwt.ddmvc.event.AppEvent;
+
+/**
+ * A ControllerIndex maps each type of event to the controllers subscribed to
+ * it, in the order in which they subscribed.
+ *
+ * Event types are keyed by class identity, by means of an open-addressing
+ * table, and the controllers of each type are held in a plain array, so that
+ * looking up the controllers of an event allocates nothing.  Subscribing the
+ * same controller to the same type of event twice has no effect.
+ *
+ * A controller subscribed to a type of event also receives its subclasses.
+ * The controllers which receive each concrete type of event are resolved the
+ * first time it is dispatched, and cached until the next subscription, so
+ * dispatching is a table probe and an array read.  Since GWT cannot list the
+ * interfaces of a class, only superclasses are taken into account.
+ */
+class ControllerIndex {
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final Controller[] NONE = new Controller[0];
+	
+	/**
+	 * An open-addressing table from class to array of controllers
+	 */
+	private static class Table {
+	
+		private Class<?>[] types;
+		private Controller[][] controllers;
+		private int size;
+		
+		private Table() {
+			types = new Class<?>[INITIAL_CAPACITY];
+			controllers = new Controller[INITIAL_CAPACITY][];
+			size = 0;
+		}
+		
+		/**
+		 * @param type - the type to look up
+		 * @return the controllers of the type, or null if it is absent
+		 */
+		private Controller[] get(Class<?> type) {
+			int position = find(types, type);
+			if(types[position] == null)
+				return null;
+			return controllers[position];
+		}
+		
+		/**
+		 * @param type - the type to set the controllers of
+		 * @param value - the controllers of the type
+		 */
+		private void set(Class<?> type, Controller[] value) {
+			int position = find(types, type);
+			if(types[position] == null) {
+				if((size + 1) * 2 > types.length) {
+					grow();
+					position = find(types, type);
+				}
+				types[position] = type;
+				size++;
+			}
+			controllers[position] = value;
+		}
+		
+		/**
+		 * Remove every type, keeping the allocated storage
+		 */
+		private void clear() {
+			if(size == 0)
+				return;
+			
+			for(int i = 0; i < types.length; i++) {
+				types[i] = null;
+				controllers[i] = null;
+			}
+			size = 0;
+		}
+		
+		/**
+		 * Double the capacity of the table, and re-insert every type
+		 */
+		private void grow() {
+			Class<?>[] oldTypes = types;
+			Controller[][] oldControllers = controllers;
+			types = new Class<?>[oldTypes.length * 2];
+			controllers = new Controller[oldTypes.length * 2][];
+			
+			for(int i = 0; i < oldTypes.length; i++) {
+				if(oldTypes[i] != null) {
+					int position = find(types, oldTypes[i]);
+					types[position] = oldTypes[i];
+					controllers[position] = oldControllers[i];
+				}
+			}
+		}
+	
+	}
+	
+	//The controllers subscribed directly to each type
+	private Table subscribed;
+	
+	//The controllers receiving each concrete type, including its superclasses
+	private Table resolved;
+	
+	/**
+	 * Instantiate a new, empty ControllerIndex
+	 */
+	public ControllerIndex() {
+		subscribed = new Table();
+		resolved = new Table();
+	}
+	
+	/**
+	 * @return the number of event types with subscribed controllers
+	 */
+	public int size() {
+		return subscribed.size;
+	}
+	
+	/**
+	 * Get the controllers subscribed directly to a type of event.
+	 * Note - the array returned must not be modified
+	 * @param eventType - the type of event
+	 * @return the subscribed controllers, an empty array if there are none
+	 */
+	public Controller[] get(Class<?> eventType) {
+		Controller[] controllers = subscribed.get(eventType);
+		return controllers == null ? NONE : controllers;
+	}
+	
+	/**
+	 * Get the controllers which receive a type of event, being those
+	 * subscribed to it or to any of its superclasses.  Those subscribed to
+	 * the most specific type come first, and each controller appears once.
+	 * Note - the array returned must not be modified
+	 * @param eventType - the concrete type of event
+	 * @return the receiving controllers, an empty array if there are none
+	 */
+	public Controller[] resolve(Class<?> eventType) {
+		Controller[] controllers = resolved.get(eventType);
+		if(controllers == null) {
+			controllers = collect(eventType);
+			resolved.set(eventType, controllers);
+		}
+		return controllers;
+	}
+	
+	/**
+	 * Subscribe a controller to a type of event
+	 * @param eventType - the type of event
+	 * @param controller - the controller to subscribe
+	 * @return true if the controller was not already subscribed
+	 */
+	public boolean put(Class<? extends AppEvent> eventType,
+			Controller controller) {
+		
+		Controller[] existing = get(eventType);
+		if(contains(existing, existing.length, controller))
+			return false;
+		
+		//Copy on write, so that arrays handed out are never modified
+		Controller[] added = new Controller[existing.length + 1];
+		System.arraycopy(existing, 0, added, 0, existing.length);
+		added[existing.length] = controller;
+		subscribed.set(eventType, added);
+		resolved.clear();
+		return true;
+	}
+	
+	/**
+	 * Collect the controllers subscribed to a type and its superclasses
+	 * @param eventType - the concrete type of event
+	 * @return the controllers, without duplicates
+	 */
+	private Controller[] collect(Class<?> eventType) {
+		int count = 0;
+		for(Class<?> type = eventType; type != null; type = type.getSuperclass())
+			count += get(type).length;
+		if(count == 0)
+			return NONE;
+		
+		Controller[] all = new Controller[count];
+		int size = 0;
+		for(Class<?> type = eventType; type != null; type = type.getSuperclass()) {
+			for(Controller controller : get(type))
+				if(!contains(all, size, controller))
+					all[size++] = controller;
+		}
+		
+		if(size == count)
+			return all;
+		Controller[] trimmed = new Controller[size];
+		System.arraycopy(all, 0, trimmed, 0, size);
+		return trimmed;
+	}
+	
+	private static boolean contains(Controller[] controllers, int size,
+			Controller controller) {
+		for(int i = 0; i < size; i++)
+			if(controllers[i] == controller)
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Find the position of a type in a table, or the empty position at which
+	 * it would be inserted
+	 * @param table - the table to search
+	 * @param type - the type to look for
+	 * @return the position in the table
+	 */
+	private static int find(Class<?>[] table, Class<?> type) {
+		int mask = table.length - 1;
+		int h = System.identityHashCode(type);
+		int position = (h ^ (h >>> 16)) & mask;
+		while(table[position] != null && table[position] != type)
+			position = (position + 1) & mask;
+		return position;
+	}
+
+}
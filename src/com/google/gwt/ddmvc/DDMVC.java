@@ -1,26 +1,31 @@
 package com.google.gwt.ddmvc;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.multimap.MultiHashListMap;
-import org.multimap.MultiHashMap;
-import org.multimap.MultiMap;
 import com.google.gwt.ddmvc.controller.Controller;
+import com.google.gwt.ddmvc.controller.RequestTransport;
 import com.google.gwt.ddmvc.controller.ServerRequest;
 import com.google.gwt.ddmvc.event.AppEvent;
 import com.google.gwt.ddmvc.event.Observer;
+import com.google.gwt.ddmvc.event.ObserverSet;
+import com.google.gwt.ddmvc.model.CachePolicy;
+import com.google.gwt.ddmvc.model.ComputedModel;
 import com.google.gwt.ddmvc.model.Field;
 import com.google.gwt.ddmvc.model.Model;
 import com.google.gwt.ddmvc.model.Path;
+import com.google.gwt.ddmvc.model.UndoLog;
 import com.google.gwt.ddmvc.model.Model.UpdateLevel;
+import com.google.gwt.ddmvc.model.exception.CyclicDependencyException;
 import com.google.gwt.ddmvc.model.update.Cascade;
 import com.google.gwt.ddmvc.model.update.ExceptionComputed;
 import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.model.update.UnknownUpdate;
 
 /**
  * The DDMVC object is the top-level object for managing the data and run-loop 
@@ -31,16 +36,97 @@ import com.google.gwt.ddmvc.model.update.ModelUpdate;
  */
 public class DDMVC {
 
-	private static MultiMap<Observer, ModelUpdate> pendingNotifies;
+	//The run-loop swaps between two of each of these buffers, rather than
+	//allocating new ones on every pass
+	private static NotificationQueue pendingNotifies;
+	private static NotificationQueue spareNotifies;
+	private static NotificationQueue freeNotifies;
 	private static List<AppEvent> pendingEvents;
-	private static MultiMap<String, Controller> subscriptions;
+	private static List<AppEvent> spareEvents;
+	private static List<ServerRequest> requests;
+	private static List<Runnable> laterTasks;
+	
+	//The observers affected by the update being notified, reused for each
+	private static ObserverSet affected;
+	private static List<Runnable> spareTasks;
+	
+	/**
+	 * The phases of the run-loop, in order.  A budgeted run-loop which is
+	 * stopped early resumes in the phase it was stopped in.
+	 */
+	private enum Phase {
+		EVENTS,
+		NOTIFICATIONS,
+		FREE_NOTIFICATIONS
+	}
+	
+	//Position of a run-loop which may have been stopped by its budget
+	private static Phase phase;
+	private static boolean loopStarted;
+	private static int eventSlot;
+	private static int notifySlot;
+	private static int freeSlot;
+	private static int iteration;
+	private static int lastIterations;
+	private static List<RunLoopException> exceptions;
+	
+	//Statistics of the run-loop in progress, and of the last completed one
+	private static RunLoopStats currentStats;
+	private static RunLoopStats lastStats;
+	private static ObserverProfiler observerProfiler;
+	private static long phaseStart;
+	
+	//The open transaction, and the notifications it has held back
+	private static UndoLog undoLog;
+	private static List<ModelUpdate> heldUpdates;
+	private static List<UpdateLevel> heldLevels;
+	
+	private static RunLoopScheduler scheduler;
+	private static boolean inRunLoop;
+	
+	//An open-addressed table of the first index of each class and conflation
+	//key among the events being conflated, reused from one run-loop to the next
+	private static int[] conflationIndex;
+	private static Class<?>[] conflationTypes;
+	private static Object[] conflationKeys;
+	
+	//Submissions from other threads, and the batch taken by the run-loop
+	private static Ingress ingress;
+	private static List<Object> ingressBatch;
+	
+	//Fires delayed and repeating events at the start of run-loops
+	private static EventTimer timer;
+	
+	//Carries the requests returned during each run-loop to the server
+	private static RequestTransport transport;
+	
+	//Records what drove the run-loop, and whether a controller is responding
+	private static Journal journal;
+	private static boolean dispatching;
+	
+	private static ControllerIndex subscriptions;
 	private static Model dataRoot;
 	private static Model observerRoot;
+	private static NotificationBudget notificationBudget;
+	private static CachePolicy cachePolicy;
+	private static int maxIterations;
+	
+	/**
+	 * The default maximum number of notification iterations in one run-loop
+	 */
+	public static final int DEFAULT_MAX_ITERATIONS = 1000;
 	
 	private static final int REFERENCE_OBSERVER_INDEX = 0;
 	private static final int VALUE_OBSERVER_INDEX = 1;
 	private static final int FIELD_OBSERVER_INDEX = 2;
 	
+	//Must be a power of two
+	private static final int INITIAL_CONFLATION_CAPACITY = 16;
+	
+	//Takes the place of an observer's queue once it has been collapsed
+	private static final ModelUpdate COLLAPSED = 
+		new UnknownUpdate(Path.ROOT_PATH);
+	
 	//Static initialization
 	static { init(); }
 	
@@ -50,9 +136,46 @@ public class DDMVC {
 	private static void init() {
 		dataRoot = new Model();
 		observerRoot = new Model();
-		pendingNotifies = new MultiHashListMap<Observer, ModelUpdate>();
+		pendingNotifies = new NotificationQueue();
+		spareNotifies = new NotificationQueue();
+		freeNotifies = new NotificationQueue();
+		affected = new ObserverSet();
 		pendingEvents = new ArrayList<AppEvent>();
-		subscriptions = new MultiHashMap<String, Controller>();
+		spareEvents = new ArrayList<AppEvent>();
+		requests = new ArrayList<ServerRequest>();
+		laterTasks = new ArrayList<Runnable>();
+		spareTasks = new ArrayList<Runnable>();
+		phase = Phase.EVENTS;
+		loopStarted = false;
+		eventSlot = 0;
+		notifySlot = 0;
+		freeSlot = 0;
+		iteration = 0;
+		lastIterations = 0;
+		exceptions = null;
+		currentStats = new RunLoopStats();
+		lastStats = new RunLoopStats();
+		observerProfiler = new ObserverProfiler();
+		if(undoLog != null)
+			undoLog.commit();
+		undoLog = null;
+		heldUpdates = new ArrayList<ModelUpdate>();
+		heldLevels = new ArrayList<UpdateLevel>();
+		scheduler = new RunLoopScheduler();
+		inRunLoop = false;
+		conflationIndex = new int[INITIAL_CONFLATION_CAPACITY];
+		conflationTypes = new Class<?>[INITIAL_CONFLATION_CAPACITY];
+		conflationKeys = new Object[INITIAL_CONFLATION_CAPACITY];
+		ingress = new Ingress();
+		ingressBatch = new ArrayList<Object>();
+		timer = new EventTimer();
+		transport = null;
+		journal = null;
+		dispatching = false;
+		subscriptions = new ControllerIndex();
+		notificationBudget = new NotificationBudget();
+		cachePolicy = CachePolicy.UNBOUNDED;
+		maxIterations = DEFAULT_MAX_ITERATIONS;
 	}
 	
 	/**
@@ -205,9 +328,9 @@ public class DDMVC {
 		if(observers == null)
 			return null;
 		
-		if(path.endsWith("$"))
+		if(path.isValuePath())
 			return observers[VALUE_OBSERVER_INDEX];
-		else if(path.endsWith("*"))
+		else if(path.isFieldPath())
 			return observers[FIELD_OBSERVER_INDEX];
 		else
 			return observers[REFERENCE_OBSERVER_INDEX];
@@ -331,6 +454,25 @@ public class DDMVC {
 	 * @return the set of all observers who would be affected
 	 */
 	public static Set<Observer> getAllAffected(Path<?,?,?> path, UpdateLevel level) {
+		ObserverSet packed = new ObserverSet();
+		getAllAffected(path, level, packed);
+		
+		Set<Observer> result = new HashSet<Observer>();
+		for(int i = 0; i < packed.size(); i++)
+			result.add(packed.get(i));
+		return result;
+	}
+	
+	/**
+	 * Pack all observers that would be affected by an update of a given level
+	 * into the provided set, which allocates nothing once the set has grown to
+	 * hold them.  All terminal fields will be ignored.
+	 * @param path - the path at which the update would occur
+	 * @param level - the level of update which would occur
+	 * @param set - the set to pack the observers into
+	 */
+	public static void getAllAffected(Path<?,?,?> path, UpdateLevel level,
+			ObserverSet set) {
 		path = path.ignoreTerminal();
 		
 		if(!observerRoot.hasPath(path)) {
@@ -338,9 +480,7 @@ public class DDMVC {
 			path = observerRoot.resolvePath(path);
 		}
 		
-		Set<Observer> result = new HashSet<Observer>();
-		packAllAffected(observerRoot.getModel(path), level, result);
-		return result;
+		packAllAffected(observerRoot.getModel(path), level, set);
 	}
 	
 	/**
@@ -351,7 +491,7 @@ public class DDMVC {
 	 */
 	@SuppressWarnings("unchecked")
 	private static void packAllAffected(Model observerModel, UpdateLevel level, 
-			Set<Observer> set) {
+			ObserverSet set) {
 		
 		Set<Observer>[] observers = (Set<Observer>[]) observerModel.getValue();
 		
@@ -399,13 +539,76 @@ public class DDMVC {
 	/**
 	 * Add an observer to the set of observers, according to the path variable.
 	 * Note - this makes no attempt to ensure a model is present here
+	 * If this would cause the observer to depend on itself, it will not be
+	 * added, and CyclicDependencyException will be thrown.
+	 * Computed models are told of each path they start observing.
 	 * @param observer - the observer to add
 	 * @param path - the path to add the observer to (defines what type of 
 	 * observer it is according to the right-most path field)
 	 */
 	public static void addObserver(Observer observer, Path<?,?,?> path) {
 		Set<Observer> observers = getObserversSafe(path, true);
-		observers.add(observer);
+		if(observers.add(observer)) {
+			List<Observer> cycle = findCycle(observer);
+			if(cycle != null) {
+				removeObserver(observer, path);
+				throw new CyclicDependencyException("Observing " + path 
+						+ " would create a cyclic dependency:", cycle);
+			}
+			
+			if(observer instanceof ComputedModel)
+				((ComputedModel) observer).observing(path);
+		}
+	}
+	
+	//
+	// Cycle Detection
+	//
+	
+	/**
+	 * Find a cycle of cascading notifications which would lead from an
+	 * observer back to itself.  An observer's updates are cascaded to whatever
+	 * would be affected by a value update at its path, so observers without a
+	 * path, such as views, can never be part of a cycle.
+	 * @param observer - the observer to start from
+	 * @return the cycle, starting and ending with the observer, or null if 
+	 * 				there is none
+	 */
+	private static List<Observer> findCycle(Observer observer) {
+		List<Observer> cycle = new ArrayList<Observer>();
+		if(!findCycle(observer, observer, new HashSet<Observer>(), cycle))
+			return null;
+		
+		Collections.reverse(cycle);
+		cycle.add(observer);
+		return cycle;
+	}
+	
+	/**
+	 * Depth-first search for a path of cascading notifications
+	 * @param current - the observer being searched from
+	 * @param target - the observer being searched for
+	 * @param visited - the observers which have been searched already
+	 * @param trail - the path found so far, packed in reverse on success
+	 * @return true if the target was found
+	 */
+	private static boolean findCycle(Observer current, Observer target,
+			Set<Observer> visited, List<Observer> trail) {
+		
+		if(current.getPath() == null)
+			return false;
+		
+		for(Observer dependent 
+				: getAllAffected(current.getPath(), UpdateLevel.VALUE)) {
+			
+			if(dependent == target 
+					|| (visited.add(dependent) 
+							&& findCycle(dependent, target, visited, trail))) {
+				trail.add(current);
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	//
@@ -458,7 +661,7 @@ public class DDMVC {
 	 * @param model - the observer model to check
 	 */
 	private static void cleanUp(Model model) {
-		if(model.hasChilds())
+		if(model.hasChilds() || model.getParent() == null)
 			return;
 		
 		if(!hasObservers(model, false, false)) {
@@ -922,18 +1125,222 @@ public class DDMVC {
 	public static void notifyObservers(ModelUpdate update, 
 			UpdateLevel level) {
 
-		Set<Observer> toBeNotified = getAllAffected(update.getTarget(), level);
-		for(Observer observer : toBeNotified)
-			addNotify(observer, update);
+		if(undoLog != null) {
+			heldUpdates.add(update);
+			heldLevels.add(level);
+			return;
+		}
+		
+		getAllAffected(update.getTarget(), level, affected);
+		try {
+			for(int i = 0; i < affected.size(); i++)
+				addNotify(affected.get(i), update);
+		} finally {
+			affected.clear();
+		}
 	}
 	
 	/**
-	 * Add an observer to be notified at the next run loop
+	 * Add an observer to be notified at the next run loop.
+	 * If this exceeds the limits of the notification budget, the observer's
+	 * queue is collapsed into a single UnknownUpdate.
 	 * @param observer - the observer to be notified
 	 * @param update - the update that caused this notification
 	 */
 	public static void addNotify(Observer observer, ModelUpdate update) {
-		pendingNotifies.put(observer, update);
+		List<ModelUpdate> queue = pendingNotifies.get(observer);
+		if(queue != null && queue.size() == 1 && queue.get(0) == COLLAPSED) {
+			notificationBudget.dropped();
+			return;
+		}
+		
+		int queued = pendingNotifies.add(observer, update);
+		notificationBudget.queued();
+		if(!inRunLoop)
+			scheduler.mutated();
+		
+		if(notificationBudget.mustCollapse(queued))
+			notificationBudget.collapsed(
+					pendingNotifies.replace(observer, COLLAPSED) - 1);
+	}
+	
+	/**
+	 * Determine whether or not updates are queued for an observer which it has
+	 * yet to be notified of, in this run-loop or the next
+	 * @param observer - the observer to look up
+	 * @return true if it has notifications pending
+	 */
+	public static boolean hasPendingNotifications(Observer observer) {
+		return pendingNotifies.indexOf(observer) >= 0
+			|| spareNotifies.indexOf(observer) >= notifySlot
+			|| freeNotifies.indexOf(observer) >= freeSlot;
+	}
+	
+	/**
+	 * @return the maximum number of notification iterations in one run-loop
+	 */
+	public static int getMaxIterations() {
+		return maxIterations;
+	}
+	
+	/**
+	 * Set the maximum number of notification iterations in one run-loop.  A
+	 * run-loop which has not settled by then is considered to be diverging. Its
+	 * remaining notifications are abandoned, and a RunLoopException holding a
+	 * CyclicDependencyException is reported.
+	 * @param max - the maximum number of iterations, must be positive
+	 */
+	public static void setMaxIterations(int max) {
+		if(max < 1)
+			throw new IllegalArgumentException("Maximum iterations must be " +
+					"positive.");
+		maxIterations = max;
+	}
+	
+	/**
+	 * Get the statistics of the last completed run-loop.  The same instance is
+	 * updated in place at the end of every run-loop, so copy any values which
+	 * need to be kept.
+	 * @return the statistics of the last completed run-loop
+	 */
+	public static RunLoopStats getRunLoopStats() {
+		return lastStats;
+	}
+	
+	/**
+	 * Get the profiler which times modelChanged() for each class of observer.
+	 * It is disabled by default.
+	 * @return the observer profiler
+	 */
+	public static ObserverProfiler getObserverProfiler() {
+		return observerProfiler;
+	}
+	
+	/**
+	 * Get the scheduler which runs the run-loop automatically after mutations.
+	 * It is disabled until it is given an executor.
+	 * @return the run-loop scheduler
+	 */
+	public static RunLoopScheduler getRunLoopScheduler() {
+		return scheduler;
+	}
+	
+	/**
+	 * Get the ingress through which events and model updates may be submitted
+	 * from any thread.  It is drained at the start of every run-loop.
+	 * @return the ingress
+	 */
+	public static Ingress getIngress() {
+		return ingress;
+	}
+	
+	/**
+	 * Get the timer which fires delayed and repeating events.  The events which
+	 * have come due are fired at the start of every run-loop.
+	 * @return the event timer
+	 */
+	public static EventTimer getEventTimer() {
+		return timer;
+	}
+	
+	/**
+	 * Install the timer which fires delayed and repeating events, such as one
+	 * reading a virtual clock.  Timeouts pending in the previous timer are not
+	 * fired.
+	 * @param eventTimer - the timer to install, or null for one reading the
+	 * 				system clock
+	 */
+	public static void setEventTimer(EventTimer eventTimer) {
+		timer = eventTimer == null ? new EventTimer() : eventTimer;
+	}
+	
+	/**
+	 * @return the transport which carries server requests, or null if none
+	 * 				has been installed
+	 */
+	public static RequestTransport getRequestTransport() {
+		return transport;
+	}
+	
+	/**
+	 * Install the transport which carries server requests.  The requests
+	 * returned by controllers during each run-loop are sent to it in a single
+	 * batch, at the end of the events phase.  Without a transport, every
+	 * request fails.
+	 * @param requestTransport - the transport to install, or null for none
+	 */
+	public static void setRequestTransport(RequestTransport requestTransport) {
+		transport = requestTransport;
+	}
+	
+	/**
+	 * @return the journal recording what drives DDMVC, or null if none has
+	 * 				been installed
+	 */
+	public static Journal getJournal() {
+		return journal;
+	}
+	
+	/**
+	 * Install a journal to record every event fired, every update made to the
+	 * data tree, and where each run-loop finishes.
+	 * @param newJournal - the journal to install, or null to stop recording
+	 */
+	public static void setJournal(Journal newJournal) {
+		journal = newJournal;
+	}
+	
+	/**
+	 * Record an update made to a model in the journal, if there is one and the
+	 * model is in the data tree.  Updates made during a transaction are held
+	 * until it completes, and updates made under any other undo log, such as
+	 * the predictions of an optimistic request, are not recorded at all, since
+	 * only the answer which replaces them is kept.  This is called by Model,
+	 * and need not be called explicitly.
+	 * @param model - the model the update is being made through
+	 * @param update - the update
+	 */
+	public static void recordUpdate(Model model, ModelUpdate update) {
+		if(journal == null || model.getRoot() != dataRoot)
+			return;
+		
+		if(undoLog != null)
+			journal.holdUpdate(update, dispatching);
+		else if(!UndoLog.isOpen())
+			journal.recordUpdate(update, dispatching);
+	}
+	
+	/**
+	 * Record that a view rendered in response to a notification.  This is
+	 * called by View, and need not be called explicitly.
+	 */
+	public static void recordRender() {
+		currentStats.rendered();
+	}
+	
+	/**
+	 * Get the budget which bounds the pending notifications.  Use this to
+	 * configure the limits and to read the metrics.
+	 * @return the notification budget
+	 */
+	public static NotificationBudget getNotificationBudget() {
+		return notificationBudget;
+	}
+	
+	/**
+	 * @return the cache policy used by computed models by default
+	 */
+	public static CachePolicy getCachePolicy() {
+		return cachePolicy;
+	}
+	
+	/**
+	 * Install the cache policy used by computed models by default.  This only
+	 * affects values cached from now on, so it is best done at start-up.
+	 * @param policy - the policy to install, or null for UNBOUNDED
+	 */
+	public static void setCachePolicy(CachePolicy policy) {
+		cachePolicy = policy == null ? CachePolicy.UNBOUNDED : policy;
 	}
 	
 	/**
@@ -946,6 +1353,91 @@ public class DDMVC {
 			addNotify(observer, update);
 	}
 	
+	//
+	//                     
+	//  Transactions
+	//                     
+	//
+	
+	/**
+	 * Run a batch of changes to the data tree atomically.  Notifications are
+	 * held back until the transaction completes, and the affected observers
+	 * are then found once for each distinct path and level updated, rather
+	 * than once per update.  If the transaction throws, every change it made
+	 * is reverted, no observer is notified, and the exception is rethrown.
+	 * 
+	 * A transaction run inside another transaction becomes part of it.
+	 * Note - computed models read during a transaction are not cached, since
+	 * their values could be rolled back.
+	 * @param transaction - the changes to make
+	 */
+	public static void transaction(Transaction transaction) {
+		if(undoLog != null) {
+			transaction.run();
+			return;
+		}
+		
+		undoLog = UndoLog.open(dataRoot);
+		boolean completed = false;
+		try {
+			transaction.run();
+			completed = true;
+		} finally {
+			UndoLog log = undoLog;
+			undoLog = null;
+			if(completed) {
+				log.commit();
+				if(journal != null)
+					journal.releaseHeld();
+				releaseHeldNotifications();
+			}
+			else {
+				log.rollback();
+				if(journal != null)
+					journal.discardHeld();
+				heldUpdates.clear();
+				heldLevels.clear();
+			}
+		}
+	}
+	
+	/**
+	 * @return true if a transaction is in progress
+	 */
+	public static boolean isInTransaction() {
+		return undoLog != null;
+	}
+	
+	/**
+	 * Notify the observers of all the updates held back by a transaction, in
+	 * order, looking up the affected observers once for each path and level
+	 */
+	@SuppressWarnings("unchecked")
+	private static void releaseHeldNotifications() {
+		Map<String, Set<Observer>>[] affected = (Map<String, Set<Observer>>[]) 
+			new Map<?, ?>[UpdateLevel.values().length];
+		
+		for(int i = 0; i < heldUpdates.size(); i++) {
+			ModelUpdate update = heldUpdates.get(i);
+			int level = heldLevels.get(i).ordinal();
+			if(affected[level] == null)
+				affected[level] = new HashMap<String, Set<Observer>>();
+			
+			String target = update.getTarget().toString();
+			Set<Observer> observers = affected[level].get(target);
+			if(observers == null) {
+				observers = getAllAffected(update.getTarget(), heldLevels.get(i));
+				affected[level].put(target, observers);
+			}
+			
+			for(Observer observer : observers)
+				addNotify(observer, update);
+		}
+		
+		heldUpdates.clear();
+		heldLevels.clear();
+	}
+	
 	//
 	//                     
 	//  Event Methods
@@ -953,15 +1445,15 @@ public class DDMVC {
 	//
 	
 	/**
-	 * Notify a particular controller whenever a particular type of event is
-	 * fired.
+	 * Notify a particular controller whenever a particular type of event, or
+	 * any subclass of it, is fired.
 	 * @param eventType - the class of the event to listen to
 	 * @param controller - the controller to notify when the event is fired.
 	 */
 	public static void subscribeToEvent(Class<? extends AppEvent> eventType, 
 			Controller controller) {
 		
-		subscriptions.put(eventType.getName(), controller);
+		subscriptions.put(eventType, controller);
 	}
 	
 	/**
@@ -969,89 +1461,576 @@ public class DDMVC {
 	 * @param event - the event to fire
 	 */
 	public static void fireEvent(AppEvent event) {
+		if(journal != null)
+			journal.recordEvent(event);
 		pendingEvents.add(event);
+		if(!inRunLoop)
+			scheduler.mutated();
 	}
 	
 	/**
-	 * Execute all controllers subscribed to a particular event
-	 * @param event - the event to respond to
-	 * @param request - the list of all requests encountered
+	 * Run a task at the start of the next run-loop, before any events are
+	 * handled.  This is how results which arrive asynchronously are brought
+	 * into the run-loop.  Tasks added while the tasks are being run will wait
+	 * for the following run-loop.
+	 * @param task - the task to run
 	 */
-	private static List<ServerRequest> handleEvent(AppEvent event) {
-		List<ServerRequest> requests = new ArrayList<ServerRequest>();
-		Collection<Controller> controllers = 
-			subscriptions.get(event.getClass().getName());
-		for(Controller controller : controllers)
-			requests.add(controller.respondToEvent(event));
-		return requests;
+	public static void invokeLater(Runnable task) {
+		laterTasks.add(task);
+		if(!inRunLoop)
+			scheduler.mutated();
 	}
 	
 	/**
-	 * Perform the run-loop, should generally not be called explicitly
-	 * @return the list of all exceptions encountered during the run-loop
+	 * Run the tasks added by invokeLater(...), recording any exception thrown
 	 */
-	public static List<RunLoopException> runLoop() {
-		List<ServerRequest> requests = new ArrayList<ServerRequest>();
-		while(pendingEvents.size() > 0) {
-			List<AppEvent> events = pendingEvents;
-			pendingEvents = new ArrayList<AppEvent>();
+	private static void runLaterTasks() {
+		List<Runnable> tasks = laterTasks;
+		laterTasks = spareTasks;
+		spareTasks = tasks;
+		
+		for(int i = 0; i < tasks.size(); i++) {
+			try {
+				tasks.get(i).run();
+			} catch(Exception e) {
+				addException(new RunLoopException(e, null, 0));
+			}
+		}
+		tasks.clear();
+	}
+	
+	/**
+	 * Fire the events and handle the updates taken from the ingress, recording
+	 * any exception thrown
+	 */
+	private static void drainIngress() {
+		if(ingress.drainTo(ingressBatch) == 0)
+			return;
+		
+		for(int i = 0; i < ingressBatch.size(); i++) {
+			Object item = ingressBatch.get(i);
+			try {
+				if(item instanceof AppEvent)
+					fireEvent((AppEvent) item);
+				else
+					handleUpdate((ModelUpdate) item);
+			} catch(Exception e) {
+				addException(new RunLoopException(e, null, 0));
+			}
+		}
+		ingressBatch.clear();
+	}
+	
+	/**
+	 * Conflate the events of the same class with equal conflation keys, in
+	 * place.  Each group is merged into the position of its first event.
+	 * Does not allocate, except to grow the table of keys for a larger batch
+	 * of events than any before it.
+	 * @param events - the events about to be dispatched
+	 */
+	private static void conflate(List<AppEvent> events) {
+		if(events.size() < 2)
+			return;
+		
+		//Keep the table at most half full, so that probing stays short
+		int capacity = conflationIndex.length;
+		if(capacity < events.size() * 2) {
+			while(capacity < events.size() * 2)
+				capacity *= 2;
+			conflationIndex = new int[capacity];
+			conflationTypes = new Class<?>[capacity];
+			conflationKeys = new Object[capacity];
+		}
+		int mask = capacity - 1;
+		
+		boolean keyed = false;
+		int conflated = 0;
+		for(int i = 0; i < events.size(); i++) {
+			AppEvent event = events.get(i);
+			Object key = event.getConflationKey();
+			if(key == null)
+				continue;
+			keyed = true;
+			
+			Class<?> type = event.getClass();
+			int hash = type.hashCode() * 31 + key.hashCode();
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			while(conflationTypes[slot] != null && (conflationTypes[slot] != type 
+					|| !key.equals(conflationKeys[slot])))
+				slot = (slot + 1) & mask;
+			
+			if(conflationTypes[slot] == null) {
+				conflationTypes[slot] = type;
+				conflationKeys[slot] = key;
+				conflationIndex[slot] = i;
+				continue;
+			}
 			
-			for(AppEvent event : events)
-				requests.addAll(handleEvent(event));
+			try {
+				int first = conflationIndex[slot];
+				AppEvent earlier = events.get(first);
+				AppEvent merged = earlier.merge(event);
+				events.set(first, merged);
+				events.set(i, null);
+				conflated++;
+				
+				//Pooled events merged away will not be dispatched
+				if(earlier != merged)
+					earlier.release();
+				if(event != merged)
+					event.release();
+			} catch(Exception e) {
+				addException(new RunLoopException(e, null, 0));
+			}
+		}
+		
+		if(conflated > 0) {
+			int size = 0;
+			for(int i = 0; i < events.size(); i++)
+				if(events.get(i) != null)
+					events.set(size++, events.get(i));
+			while(events.size() > size)
+				events.remove(events.size() - 1);
+			currentStats.eventsConflated(conflated);
+		}
+		
+		//Forget the keys, so that they are not held onto
+		if(keyed) {
+			Arrays.fill(conflationTypes, null);
+			Arrays.fill(conflationKeys, null);
 		}
+	}
+	
+	/**
+	 * Execute all controllers subscribed to a particular event
+	 * @param event - the event to respond to
+	 * @param requests - the list to add any requests encountered to
+	 */
+	private static void handleEvent(AppEvent event, 
+			List<ServerRequest> requests) {
 		
-		//TODO - send out the requests, please
+		Controller[] controllers = subscriptions.resolve(event.getClass());
+		int requested = 0;
+		dispatching = true;
+		try {
+			for(Controller controller : controllers) {
+				ServerRequest request = controller.respondToEvent(event);
+				if(request != null) {
+					addRequest(request, controller, event);
+					requested++;
+				}
+			}
+		} finally {
+			dispatching = false;
+			event.release();
+		}
+		currentStats.eventDispatched(controllers.length, requested);
+	}
+	
+	/**
+	 * Submit a request made by a controller after it responded to the event,
+	 * such as once an asynchronous validation has passed.  The request is sent
+	 * with the others at the end of the events phase of the current run-loop,
+	 * or of the next one if it is already over.
+	 * @param request - the request to send
+	 * @param controller - the controller making the request
+	 * @param event - the event which led to the request
+	 */
+	public static void submitRequest(ServerRequest request, 
+			Controller controller, AppEvent event) {
+		addRequest(request, controller, event);
+		currentStats.requestSubmitted();
+		if(!inRunLoop)
+			scheduler.mutated();
+	}
+	
+	/**
+	 * Set the origin of a request, apply its predictions, and add it to the
+	 * requests to be sent
+	 */
+	private static void addRequest(ServerRequest request, Controller controller,
+			AppEvent event) {
+		request.setOrigin(controller, event);
+		event.retain();
+		request.getResponse().applyPredictions();
+		requests.add(request);
+	}
+	
+	/**
+	 * Send the requests collected during the events phase to the transport, as
+	 * a single batch.  If there is no transport, or it throws, the requests
+	 * it did not complete fail.
+	 */
+	private static void sendRequests() {
+		if(requests.size() == 0)
+			return;
 		
-		MultiHashMap<Observer, ModelUpdate> freeNotifies = 
-			new MultiHashMap<Observer, ModelUpdate>();
+		//The transport may hold on to the batch, so it gets a list of its own
+		List<ServerRequest> batch = new ArrayList<ServerRequest>(requests);
+		requests.clear();
 		
-		List<RunLoopException> exceptions = new ArrayList<RunLoopException>();
+		if(transport == null) {
+			fail(batch, new IllegalStateException("No request transport has " +
+					"been installed."));
+			return;
+		}
 		
-		//PendingNotifies will build up with notifications as we edit values.
-		int iteration = 0;
-		while(pendingNotifies.size() > 0) {
-			//Extracts the notifications we will handle now, and reset pending
-			Set<Map.Entry<Observer, Collection<ModelUpdate>>> notifies = 
-				pendingNotifies.entrySet();
-			pendingNotifies = new MultiHashListMap<Observer, ModelUpdate>();
+		currentStats.roundTrip();
+		try {
+			transport.send(batch);
+		} catch(Exception e) {
+			addException(new RunLoopException(e, null, 0));
+			fail(batch, e);
+		}
+	}
+	
+	/**
+	 * Fail every request of a batch which has not been completed
+	 * @param batch - the requests
+	 * @param caught - the cause of the failure
+	 */
+	private static void fail(List<ServerRequest> batch, Throwable caught) {
+		for(ServerRequest request : batch)
+			if(!request.getResponse().isCompleted())
+				request.getResponse().onFailure(caught);
+	}
+	
+	/**
+	 * Perform the run-loop until there is nothing left to do, should generally
+	 * not be called explicitly.
+	 * If a budgeted run-loop was stopped early, this will complete it.
+	 * @return the list of all exceptions encountered during the run-loop
+	 */
+	public static List<RunLoopException> runLoop() {
+		runLoopGuarded(RunLoopBudget.UNLIMITED);
+		return takeExceptions();
+	}
+	
+	/**
+	 * Perform the run-loop until there is nothing left to do, or until the
+	 * budget is exhausted.  If it stops early, calling either runLoop method
+	 * again will resume exactly where it left off, and the outcome of the
+	 * completed run-loop will be the same as if it had never stopped.
+	 * Notifications added in the meantime are handled as though they had been
+	 * added by the last observer notified.
+	 * @param budget - the limit on the work done by this call
+	 * @return the progress of the run-loop, and the exceptions encountered 
+	 * 				during this call
+	 */
+	public static RunLoopProgress runLoop(RunLoopBudget budget) {
+		boolean complete = runLoopGuarded(budget);
+		int currentIteration = complete ? lastIterations : iteration;
+		
+		return new RunLoopProgress(complete,
+				spareEvents.size() - eventSlot + pendingEvents.size(),
+				spareNotifies.size() - notifySlot + pendingNotifies.size()
+					+ freeNotifies.size() - freeSlot,
+				currentIteration, takeExceptions());
+	}
+	
+	/**
+	 * Perform the run-loop within a budget, noting that it is running so that
+	 * the mutations it makes are not reported to the scheduler
+	 * @param budget - the limit on the work done by this call
+	 * @return true if the run-loop completed
+	 */
+	private static boolean runLoopGuarded(RunLoopBudget budget) {
+		boolean nested = inRunLoop;
+		inRunLoop = true;
+		try {
+			return runLoopSafe(budget);
+		} finally {
+			inRunLoop = nested;
+		}
+	}
+	
+	/**
+	 * Perform the run-loop within a budget, collecting any exceptions in the
+	 * exceptions field.  Does not allocate unless there are events, or
+	 * exceptions, or the queues need to grow.
+	 * @param budget - the limit on the work done by this call
+	 * @return true if the run-loop completed
+	 */
+	private static boolean runLoopSafe(RunLoopBudget budget) {
+		long deadline = -1;
+		if(budget.getMillis() >= 0)
+			deadline = System.currentTimeMillis() + budget.getMillis();
+		int iterationsLeft = budget.getIterations();
+		int steps = 0;
+		phaseStart = System.nanoTime();
+		
+		if(phase == Phase.EVENTS) {
+			//The ingress, timer and tasks are only drained when a new run-loop
+			//starts, not when a stopped one resumes
+			if(!loopStarted) {
+				loopStarted = true;
+				drainIngress();
+				timer.fireDue();
+				if(laterTasks.size() > 0)
+					runLaterTasks();
+			}
 			
-			//Iterate through all of the current notifications
-			for(Map.Entry<Observer, Collection<ModelUpdate>> entry : notifies) {
-				Observer observer = entry.getKey();
+			while(eventSlot < spareEvents.size() || pendingEvents.size() > 0) {
+				//Extract the events we will handle now
+				if(eventSlot == spareEvents.size()) {
+					List<AppEvent> events = pendingEvents;
+					pendingEvents = spareEvents;
+					spareEvents = events;
+					conflate(events);
+				}
 				
-				if(!observer.hasObservers())
-					freeNotifies.put(entry.getKey(), entry.getValue());
-				else {
-					//Notify the model of a change
-					try { 
-						observer.modelChanged(entry.getValue());
-						//Cascade the update to its dependents (next loop)
-						observer.notifyObservers(new Cascade(observer.getPath()), 
-								Model.UpdateLevel.VALUE);
-					} catch(Exception e) {
-						//Cascade the exception update to its dependents (next loop)
-						observer.notifyObservers(
-								new ExceptionComputed( observer.getPath(), e), 
-								Model.UpdateLevel.VALUE);
-						exceptions.add(new RunLoopException(e, observer, iteration));
+				while(eventSlot < spareEvents.size()) {
+					if(isExhausted(deadline, steps))
+						return stopPhase();
+					handleEvent(spareEvents.get(eventSlot++), requests);
+					steps++;
+				}
+				spareEvents.clear();
+				eventSlot = 0;
+			}
+			
+			sendRequests();
+			endPhase();
+			phase = Phase.NOTIFICATIONS;
+		}
+		
+		//PendingNotifies will build up with notifications as we edit values.
+		if(phase == Phase.NOTIFICATIONS) {
+			while(notifySlot < spareNotifies.size() || pendingNotifies.size() > 0) {
+				//Extracts the notifications we will handle now, and swap in the
+				//cleared buffer to collect the next iteration's notifications
+				if(notifySlot == spareNotifies.size()) {
+					if(iterationsLeft == 0)
+						return stopPhase();
+					if(iterationsLeft > 0)
+						iterationsLeft--;
+					
+					if(iteration >= maxIterations) {
+						abandonNotifications();
+						break;
 					}
+					
+					NotificationQueue notifies = pendingNotifies;
+					pendingNotifies = spareNotifies;
+					spareNotifies = notifies;
+					notificationBudget.drained(notifies.updateCount());
+					currentStats.iterationStarted();
+				}
+				
+				//Iterate through all of the current notifications
+				while(notifySlot < spareNotifies.size()) {
+					if(isExhausted(deadline, steps))
+						return stopPhase();
+					//The slot is passed before notifying, so that the observer's
+					//updates no longer count as pending
+					Observer observer = spareNotifies.getObserver(notifySlot);
+					notify(observer, spareNotifies.getUpdates(notifySlot++));
+					steps++;
 				}
+				spareNotifies.clear();
+				notifySlot = 0;
+				iteration++;
 			}
-			iteration++;
+			endPhase();
+			phase = Phase.FREE_NOTIFICATIONS;
 		}
 		
 		//Now just tie up the loose ends!
-		for(Map.Entry<Observer, Collection<ModelUpdate>> free 
-				: freeNotifies.entrySet()) {
+		while(freeSlot < freeNotifies.size()) {
+			if(isExhausted(deadline, steps))
+				return stopPhase();
 			
+			Observer observer = freeNotifies.getObserver(freeSlot);
+			List<ModelUpdate> updates = freeNotifies.getUpdates(freeSlot++);
 			try {
-				free.getKey().modelChanged(free.getValue()); 
+				deliver(observer, updates); 
 			} catch(Exception e) {
-				exceptions.add(new RunLoopException(e, free.getKey(), iteration));
+				addException(new RunLoopException(e, observer, iteration));
 			}
+			steps++;
 		}
+		freeNotifies.clear();
+		freeSlot = 0;
+		endPhase();
+		
+		phase = Phase.EVENTS;
+		loopStarted = false;
+		lastIterations = iteration;
+		iteration = 0;
+		lastStats.copy(currentStats);
+		currentStats.clear();
+		cachePolicy.runLoopFinished();
+		if(journal != null)
+			journal.recordLoopFinished();
+		return true;
+	}
+	
+	/**
+	 * Add the time spent in the current phase since phaseStart to the 
+	 * statistics, and restart the clock for the next phase
+	 */
+	private static void endPhase() {
+		long now = System.nanoTime();
+		long elapsed = now - phaseStart;
+		phaseStart = now;
+		
+		switch(phase) {
+			case EVENTS: currentStats.eventTime(elapsed); break;
+			case NOTIFICATIONS: currentStats.notificationTime(elapsed); break;
+			case FREE_NOTIFICATIONS: currentStats.freeNotificationTime(elapsed);
+		}
+	}
+	
+	/**
+	 * Stop a budgeted run-loop early, in the middle of the current phase
+	 * @return false, since the run-loop did not complete
+	 */
+	private static boolean stopPhase() {
+		endPhase();
+		return false;
+	}
 	
-		return exceptions;
+	/**
+	 * Call modelChanged() on an observer, recording it in the statistics and,
+	 * if enabled, timing it in the observer profiler
+	 * @param observer - the observer to notify
+	 * @param updates - the updates to notify it of
+	 */
+	private static void deliver(Observer observer, List<ModelUpdate> updates) {
+		currentStats.notificationDelivered(updates.size(), 
+				observer instanceof ComputedModel);
+		
+		if(!observerProfiler.isEnabled()) {
+			observer.modelChanged(updates);
+			return;
+		}
+		
+		long start = System.nanoTime();
+		try {
+			observer.modelChanged(updates);
+		} finally {
+			observerProfiler.record(observer.getClass(), 
+					System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Abandon the pending notifications of a run-loop which is not converging,
+	 * and report the cycle responsible, if one can be found.  Otherwise, the
+	 * observers still pending are reported.
+	 */
+	private static void abandonNotifications() {
+		List<Observer> cycle = null;
+		for(int i = 0; i < pendingNotifies.size() && cycle == null; i++)
+			cycle = findCycle(pendingNotifies.getObserver(i));
+		
+		if(cycle == null) {
+			cycle = new ArrayList<Observer>();
+			for(int i = 0; i < pendingNotifies.size(); i++)
+				cycle.add(pendingNotifies.getObserver(i));
+		}
+		
+		addException(new RunLoopException(
+				new CyclicDependencyException("Run-loop did not converge after " 
+						+ iteration + " iterations:", cycle), 
+				cycle.get(0), iteration));
+		
+		notificationBudget.drained(pendingNotifies.updateCount());
+		pendingNotifies.clear();
+	}
+	
+	/**
+	 * Notify a single observer during the notification phase of the run-loop.
+	 * If the observer has no observers of its own, it is set aside to be
+	 * notified at the end of the run-loop instead.
+	 * @param observer - the observer to notify
+	 * @param updates - the updates to notify it of
+	 */
+	private static void notify(Observer observer, List<ModelUpdate> updates) {
+		if(!observer.hasObservers())
+			freeNotifies.addAll(observer, updates);
+		else {
+			//Notify the model of a change
+			try { 
+				deliver(observer, updates);
+				//Cascade the update to its dependents (next loop)
+				if(shouldCascade(observer))
+					observer.notifyObservers(getCascade(observer), 
+							Model.UpdateLevel.VALUE);
+			} catch(Exception e) {
+				//Cascade the exception update to its dependents (next loop)
+				observer.notifyObservers(
+						new ExceptionComputed( observer.getPath(), e), 
+						Model.UpdateLevel.VALUE);
+				addException(new RunLoopException(e, observer, iteration));
+			}
+		}
+	}
+	
+	/**
+	 * Determine whether or not a run-loop has used up its budget.  The first
+	 * step is always allowed, so that every call makes progress.
+	 * @param deadline - the time at which to stop, or -1 if none
+	 * @param steps - the number of steps taken so far
+	 * @return true if the run-loop should stop
+	 */
+	private static boolean isExhausted(long deadline, int steps) {
+		return deadline >= 0 && steps > 0 
+			&& System.currentTimeMillis() >= deadline;
+	}
+	
+	/**
+	 * Determine whether or not the dependents of an observer which has just
+	 * been notified should be sent a Cascade
+	 * @param observer - the observer which was notified
+	 * @return true unless the observer is a computed model which declines
+	 */
+	private static boolean shouldCascade(Observer observer) {
+		if(!(observer instanceof ComputedModel))
+			return true;
+		
+		ComputedModel model = (ComputedModel) observer;
+		if(model.shouldCascade())
+			return true;
+		if(!model.isLazy())
+			currentStats.cutoff();
+		return false;
+	}
+	
+	/**
+	 * Get the Cascade to send to the dependents of an observer which has just
+	 * been recomputed.  Computed models reuse a single immutable Cascade.
+	 * @param observer - the observer which was recomputed
+	 * @return the cascade update
+	 */
+	private static ModelUpdate getCascade(Observer observer) {
+		if(observer instanceof ComputedModel)
+			return ((ComputedModel) observer).getCascade();
+		return new Cascade(observer.getPath());
+	}
+	
+	/**
+	 * Record an exception encountered by the run-loop, creating the list of
+	 * exceptions if need be
+	 * @param exception - the exception to add
+	 */
+	private static void addException(RunLoopException exception) {
+		currentStats.exceptionEncountered();
+		if(exceptions == null)
+			exceptions = new ArrayList<RunLoopException>();
+		exceptions.add(exception);
+	}
+	
+	/**
+	 * Take the exceptions recorded by the run-loop, and reset the record
+	 * @return the exceptions recorded
+	 */
+	private static List<RunLoopException> takeExceptions() {
+		List<RunLoopException> taken = exceptions;
+		exceptions = null;
+		if(taken == null)
+			return Collections.emptyList();
+		return taken;
 	}
 	
 	/**
@@ -0,0 +1,445 @@
+package com.google.gwt.ddmvc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import com.google.gwt.ddmvc.event.AppEvent;
+
+/**
+ * The EventTimer fires AppEvents after a delay, once or repeatedly, as part of
+ * the run-loop.  At the start of each run-loop, every event which has come 
+ * due is fired, in the order of their deadlines, and of scheduling for equal
+ * deadlines, exactly as though fireEvent(...) had been called at that moment.
+ * 
+ * Timeouts are kept in a hashed timing wheel: a ring of slots, each covering
+ * one tick, in which a timeout is appended to the slot of the tick it is due
+ * in, modulo the size of the ring.  A slot may therefore hold timeouts due in
+ * different rotations of the wheel, so those which come due together are
+ * sorted before they are fired.  Scheduling and cancelling are constant
+ * time, and each tick only visits the timeouts of one slot, so the timer
+ * scales to very many pending timeouts.  Deadlines are rounded up to whole
+ * ticks, so events are never fired early, and at most a tick late, provided
+ * a run-loop happens.
+ * 
+ * If given an executor, the timer also reads its clock from it, and checks
+ * for due events every tick while any are pending, so that a run-loop is
+ * performed when one comes due: by the RunLoopScheduler if it is enabled,
+ * and directly otherwise.  Without one, the timer reads the system clock, 
+ * and relies on the run-loop being performed by other means.
+ * 
+ * The timer holds on to pooled events until it is done with them, so a 
+ * repeating event may be taken from an EventPool once and reused each time.
+ */
+public class EventTimer {
+
+	/**
+	 * The default length of a tick, in milliseconds
+	 */
+	public static final int DEFAULT_TICK_MILLIS = 10;
+	
+	/**
+	 * The default number of slots in the wheel
+	 */
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+	
+	/**
+	 * A handle on a scheduled event, used to cancel it
+	 */
+	public class Timeout {
+	
+		private AppEvent event;
+		private long deadline;
+		private long deadlineTick;
+		private int periodMillis;
+		private long sequence;
+		private boolean cancelled;
+		
+		//Position in the wheel
+		private boolean linked;
+		private Timeout previous;
+		private Timeout next;
+		
+		//The number of times it came due, and waits to be fired
+		private int queued;
+		
+		private Timeout(AppEvent event, long deadline, int periodMillis, 
+				long sequence) {
+			this.event = event;
+			this.deadline = deadline;
+			this.periodMillis = periodMillis;
+			this.sequence = sequence;
+			this.cancelled = false;
+			this.linked = false;
+			this.queued = 0;
+		}
+		
+		/**
+		 * @return the event fired by this timeout
+		 */
+		public AppEvent getEvent() {
+			return event;
+		}
+		
+		/**
+		 * @return true if this timeout fires repeatedly
+		 */
+		public boolean isRepeating() {
+			return periodMillis > 0;
+		}
+		
+		/**
+		 * @return true if this timeout was cancelled
+		 */
+		public boolean isCancelled() {
+			return cancelled;
+		}
+		
+		/**
+		 * @return true if this timeout will not fire again
+		 */
+		public boolean isFinished() {
+			return cancelled || (!linked && queued == 0);
+		}
+		
+		/**
+		 * Cancel the timeout, so that its event is not fired again, even if it
+		 * has already come due
+		 * @return true if it would have fired again
+		 */
+		public boolean cancel() {
+			if(isFinished())
+				return false;
+			
+			cancelled = true;
+			cancelledCount++;
+			if(linked) {
+				unlink(this);
+				event.release();
+			}
+			return true;
+		}
+		
+	}
+	
+	/**
+	 * Orders timeouts by deadline, and then by the order they were scheduled
+	 */
+	private static final Comparator<Timeout> BY_DEADLINE = 
+		new Comparator<Timeout>() {
+			@Override
+			public int compare(Timeout a, Timeout b) {
+				if(a.deadline != b.deadline)
+					return a.deadline < b.deadline ? -1 : 1;
+				if(a.sequence != b.sequence)
+					return a.sequence < b.sequence ? -1 : 1;
+				return 0;
+			}
+		};
+	
+	private TaskExecutor executor;
+	private int tickMillis;
+	private int mask;
+	
+	//The first and last timeout in each slot
+	private Timeout[] wheel;
+	private Timeout[] tails;
+	private long processedTick;
+	private int pending;
+	
+	//The timeouts which have come due, and wait for the next run-loop
+	private List<Timeout> due;
+	private List<Timeout> spareDue;
+	
+	private boolean ticking;
+	private long scheduledCount;
+	private long firedCount;
+	private long cancelledCount;
+	
+	/**
+	 * Instantiate a new EventTimer reading the system clock, with the default
+	 * tick and wheel size
+	 */
+	public EventTimer() {
+		this(null);
+	}
+	
+	/**
+	 * Instantiate a new EventTimer with the default tick and wheel size
+	 * @param executor - the executor to read the clock from and check for due
+	 * 				events on, or null to read the system clock
+	 */
+	public EventTimer(TaskExecutor executor) {
+		this(executor, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+	}
+	
+	/**
+	 * @param executor - the executor to read the clock from and check for due
+	 * 				events on, or null to read the system clock
+	 * @param tickMillis - the length of a tick, in milliseconds
+	 * @param wheelSize - the number of slots in the wheel, rounded up to a
+	 * 				power of two
+	 */
+	public EventTimer(TaskExecutor executor, int tickMillis, int wheelSize) {
+		if(tickMillis < 1)
+			throw new IllegalArgumentException("Tick must be positive.");
+		if(wheelSize < 1)
+			throw new IllegalArgumentException("Wheel size must be positive.");
+		
+		int size = 1;
+		while(size < wheelSize)
+			size <<= 1;
+		
+		this.executor = executor;
+		this.tickMillis = tickMillis;
+		this.mask = size - 1;
+		this.wheel = new Timeout[size];
+		this.tails = new Timeout[size];
+		this.processedTick = now() / tickMillis;
+		this.pending = 0;
+		this.due = new ArrayList<Timeout>();
+		this.spareDue = new ArrayList<Timeout>();
+		this.ticking = false;
+	}
+	
+	//
+	// Scheduling
+	//
+	
+	/**
+	 * Fire an event once, after a delay
+	 * @param event - the event to fire
+	 * @param delayMillis - the delay, in milliseconds
+	 * @return the handle to cancel it with
+	 */
+	public Timeout schedule(AppEvent event, int delayMillis) {
+		return add(event, delayMillis, 0);
+	}
+	
+	/**
+	 * Fire an event repeatedly, until it is cancelled.  Periods missed because
+	 * no run-loop happened are skipped, rather than fired all at once.
+	 * @param event - the event to fire each time
+	 * @param delayMillis - the delay before the first time, in milliseconds
+	 * @param periodMillis - the time between each time, in milliseconds
+	 * @return the handle to cancel it with
+	 */
+	public Timeout scheduleRepeating(AppEvent event, int delayMillis, 
+			int periodMillis) {
+		if(periodMillis < 1)
+			throw new IllegalArgumentException("Period must be positive.");
+		return add(event, delayMillis, periodMillis);
+	}
+	
+	private Timeout add(AppEvent event, int delayMillis, int periodMillis) {
+		if(event == null)
+			throw new NullPointerException("Cannot schedule null.");
+		if(delayMillis < 0)
+			throw new IllegalArgumentException("Delay must not be negative.");
+		
+		Timeout timeout = new Timeout(event, now() + delayMillis, periodMillis, 
+				scheduledCount);
+		link(timeout);
+		scheduledCount++;
+		startTicking();
+		return timeout;
+	}
+	
+	//
+	// Metrics
+	//
+	
+	/**
+	 * @return the number of timeouts waiting in the wheel
+	 */
+	public int getPending() {
+		return pending;
+	}
+	
+	/**
+	 * @return the number of timeouts scheduled
+	 */
+	public long getScheduled() {
+		return scheduledCount;
+	}
+	
+	/**
+	 * @return the number of events fired
+	 */
+	public long getFired() {
+		return firedCount;
+	}
+	
+	/**
+	 * @return the number of timeouts cancelled
+	 */
+	public long getCancelled() {
+		return cancelledCount;
+	}
+	
+	//
+	// Run-loop, used by DDMVC
+	//
+	
+	/**
+	 * Fire every event which has come due, in the order of their deadlines
+	 */
+	void fireDue() {
+		if(pending > 0)
+			collect();
+		if(due.size() == 0)
+			return;
+		
+		List<Timeout> firing = due;
+		due = spareDue;
+		spareDue = firing;
+		
+		for(int i = 0; i < firing.size(); i++) {
+			Timeout timeout = firing.get(i);
+			timeout.queued--;
+			if(timeout.cancelled) {
+				timeout.event.release();
+				continue;
+			}
+			DDMVC.fireEvent(timeout.event);
+			firedCount++;
+		}
+		firing.clear();
+	}
+	
+	/**
+	 * Move the timeouts which have come due from the wheel to the due list,
+	 * visiting each slot of the ticks which have elapsed, at most once, then
+	 * sort them and put those which repeat back in the wheel
+	 */
+	private void collect() {
+		long now = now();
+		long nowTick = now / tickMillis;
+		long last = Math.min(nowTick, processedTick + wheel.length);
+		int start = due.size();
+		
+		for(long tick = processedTick + 1; tick <= last; tick++) {
+			Timeout timeout = wheel[(int) (tick & mask)];
+			while(timeout != null) {
+				Timeout next = timeout.next;
+				if(timeout.deadlineTick <= nowTick) {
+					unlink(timeout);
+					due.add(timeout);
+					timeout.queued++;
+				}
+				timeout = next;
+			}
+		}
+		processedTick = nowTick;
+		
+		//A slot visited later may hold timeouts due in an earlier tick, from a
+		//later rotation of the wheel
+		if(due.size() - start > 1)
+			Collections.sort(due.subList(start, due.size()), BY_DEADLINE);
+		
+		for(int i = start; i < due.size(); i++)
+			if(due.get(i).isRepeating())
+				reschedule(due.get(i), now);
+	}
+	
+	/**
+	 * Put a repeating timeout which came due back in the wheel, at its next
+	 * deadline
+	 * @param timeout - the timeout which came due
+	 * @param now - the current time
+	 */
+	private void reschedule(Timeout timeout, long now) {
+		//The timer keeps its hold, the run-loop takes another
+		timeout.event.retain();
+		long missed = (now - timeout.deadline) / timeout.periodMillis + 1;
+		timeout.deadline += missed * timeout.periodMillis;
+		link(timeout);
+	}
+	
+	//
+	// Wheel
+	//
+	
+	/**
+	 * Append a timeout to the slot of the tick it is due in, which is after 
+	 * the last tick processed
+	 */
+	private void link(Timeout timeout) {
+		long tick = (timeout.deadline + tickMillis - 1) / tickMillis;
+		if(tick <= processedTick)
+			tick = processedTick + 1;
+		timeout.deadlineTick = tick;
+		
+		int slot = (int) (tick & mask);
+		timeout.previous = tails[slot];
+		timeout.next = null;
+		if(tails[slot] != null)
+			tails[slot].next = timeout;
+		else
+			wheel[slot] = timeout;
+		tails[slot] = timeout;
+		timeout.linked = true;
+		pending++;
+	}
+	
+	private void unlink(Timeout timeout) {
+		int slot = (int) (timeout.deadlineTick & mask);
+		if(timeout.previous != null)
+			timeout.previous.next = timeout.next;
+		else
+			wheel[slot] = timeout.next;
+		if(timeout.next != null)
+			timeout.next.previous = timeout.previous;
+		else
+			tails[slot] = timeout.previous;
+		
+		timeout.previous = null;
+		timeout.next = null;
+		timeout.linked = false;
+		pending--;
+	}
+	
+	//
+	// Clock
+	//
+	
+	private long now() {
+		return executor == null ? System.currentTimeMillis() 
+				: executor.currentTimeMillis();
+	}
+	
+	/**
+	 * Check for due events every tick, while any timeout is pending
+	 */
+	private void startTicking() {
+		if(executor == null || ticking)
+			return;
+		
+		ticking = true;
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				tick();
+			}
+		}, tickMillis);
+	}
+	
+	private void tick() {
+		ticking = false;
+		if(DDMVC.getEventTimer() != this)
+			return;
+		
+		if(pending > 0)
+			collect();
+		if(due.size() > 0) {
+			RunLoopScheduler scheduler = DDMVC.getRunLoopScheduler();
+			if(scheduler.getExecutor() != null)
+				scheduler.mutated();
+			else
+				DDMVC.runLoop();
+		}
+		if(pending > 0)
+			startTicking();
+	}
+
+}
@@ -0,0 +1,198 @@
+package com.google.gwt.ddmvc;
+
+import java.util.List;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+
+/**
+ * The Ingress is a bounded queue through which events and model updates may
+ * be submitted from any thread, to be applied by whichever thread performs
+ * the run-loop.  Every other DDMVC method must be called from that thread.
+ *
+ * Submissions are held in a ring buffer.  At the start of every run-loop, the
+ * run-loop takes up to a batch of them, in the order they were submitted.
+ * Events are fired, and updates are handled, exactly as though fireEvent(...)
+ * and handleUpdate(...) had been called at that moment.  Whatever is left
+ * over waits for the next run-loop.
+ *
+ * When the ring is full, submissions are refused rather than blocking, so
+ * that producers can decide whether to retry, wait, or drop them.
+ *
+ * Note - GWT is single-threaded, and compiles synchronized away, so in the
+ * browser this is simply a bounded queue.
+ */
+public class Ingress {
+
+	/**
+	 * The default capacity of the ring
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/**
+	 * Value of the batch size which takes everything in the ring
+	 */
+	public static final int UNLIMITED = -1;
+	
+	private Object[] ring;
+	private int head;
+	private int size;
+	private int batchSize;
+	
+	private long accepted;
+	private long refused;
+	private int peakSize;
+	
+	/**
+	 * Instantiate a new Ingress with the default capacity
+	 */
+	public Ingress() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * @param capacity - the number of submissions the ring can hold
+	 */
+	public Ingress(int capacity) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive.");
+		ring = new Object[capacity];
+		head = 0;
+		size = 0;
+		batchSize = UNLIMITED;
+	}
+	
+	//
+	// Producers
+	//
+	
+	/**
+	 * Submit an event, to be fired at the start of the next run-loop.
+	 * @param event - the event to fire
+	 * @return true if it was accepted, false if the ring is full
+	 */
+	public boolean offer(AppEvent event) {
+		return offerItem(event);
+	}
+	
+	/**
+	 * Submit a model update, to be handled at the start of the next run-loop.
+	 * @param update - the update to handle
+	 * @return true if it was accepted, false if the ring is full
+	 */
+	public boolean offer(ModelUpdate update) {
+		return offerItem(update);
+	}
+	
+	private synchronized boolean offerItem(Object item) {
+		if(item == null)
+			throw new NullPointerException("Cannot submit null.");
+		
+		if(size == ring.length) {
+			refused++;
+			return false;
+		}
+		
+		ring[(head + size) % ring.length] = item;
+		size++;
+		accepted++;
+		if(size > peakSize)
+			peakSize = size;
+		return true;
+	}
+	
+	//
+	// Configuration
+	//
+	
+	/**
+	 * @return the number of submissions the ring can hold
+	 */
+	public synchronized int getCapacity() {
+		return ring.length;
+	}
+	
+	/**
+	 * @return the number of submissions waiting in the ring
+	 */
+	public synchronized int size() {
+		return size;
+	}
+	
+	/**
+	 * @return the largest number of submissions taken by one run-loop, or
+	 * 				UNLIMITED
+	 */
+	public synchronized int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * Set the largest number of submissions taken by one run-loop
+	 * @param batchSize - the batch size, must be at least 1, or UNLIMITED
+	 */
+	public synchronized void setBatchSize(int batchSize) {
+		if(batchSize < 1 && batchSize != UNLIMITED)
+			throw new IllegalArgumentException("Batch size must be positive or " +
+					"UNLIMITED.");
+		this.batchSize = batchSize;
+	}
+	
+	//
+	// Metrics
+	//
+	
+	/**
+	 * @return the number of submissions accepted
+	 */
+	public synchronized long getAccepted() {
+		return accepted;
+	}
+	
+	/**
+	 * @return the number of submissions refused because the ring was full
+	 */
+	public synchronized long getRefused() {
+		return refused;
+	}
+	
+	/**
+	 * @return the largest number of submissions which waited at once
+	 */
+	public synchronized int getPeakSize() {
+		return peakSize;
+	}
+	
+	/**
+	 * Reset all metrics
+	 */
+	public synchronized void resetMetrics() {
+		accepted = 0;
+		refused = 0;
+		peakSize = size;
+	}
+	
+	//
+	// Consumer, used by DDMVC
+	//
+	
+	/**
+	 * Take up to a batch of submissions from the ring, so that they can be
+	 * applied without holding the lock
+	 * @param batch - the list to add the submissions to, in order
+	 * @return the number of submissions taken
+	 */
+	synchronized int drainTo(List<Object> batch) {
+		int count = size;
+		if(batchSize != UNLIMITED && batchSize < count)
+			count = batchSize;
+		
+		for(int i = 0; i < count; i++) {
+			batch.add(ring[head]);
+			ring[head] = null;
+			head = (head + 1) % ring.length;
+		}
+		size -= count;
+		return count;
+	}
+
+}
@@ -0,0 +1,222 @@
+package com.google.gwt.ddmvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+
+/**
+ * A Journal records everything which drove DDMVC: the events fired, the
+ * updates made to the data tree, and where each run-loop finished, so that
+ * the same work can be replayed later, such as to reproduce a performance
+ * problem, or as the input of a benchmark.
+ * 
+ * Install a journal with DDMVC.setJournal(...).  Records are appended to
+ * plain arrays, so recording allocates nothing but the occasional growth.
+ * Updates made while a controller is responding to an event are marked as
+ * caused by it, since they will be made again if the event is replayed.
+ * 
+ * Updates made during a transaction are held until it commits, and dropped
+ * if it rolls back.  The predictions of an optimistic request are not
+ * recorded, since they are always reverted, only the answer which replaces
+ * them.
+ * 
+ * A journal may be given a sink, which is handed the records and then
+ * forgotten whenever a run-loop finishes with at least a threshold of records
+ * waiting, so that a long session can be written out, or sent to a server, 
+ * piece by piece.  Without a sink, the journal keeps everything.
+ * 
+ * Note - events and updates are recorded by reference, so they should not be
+ * modified after they are fired or handled.  Pooled events are retained until
+ * the journal forgets them.
+ */
+public class Journal {
+
+	/**
+	 * Receives the records of a journal, in order
+	 */
+	public interface Visitor {
+	
+		/**
+		 * An event was fired
+		 * @param event - the event
+		 */
+		public void event(AppEvent event);
+		
+		/**
+		 * An update was made to the data tree
+		 * @param update - the update, or a ModelDeleted for a deletion
+		 * @param caused - true if it was made by a controller responding to an
+		 * 				event
+		 */
+		public void update(ModelUpdate update, boolean caused);
+		
+		/**
+		 * A run-loop finished
+		 */
+		public void loopFinished();
+		
+	}
+	
+	private static final byte EVENT = 0;
+	private static final byte UPDATE = 1;
+	private static final byte CAUSED_UPDATE = 2;
+	private static final byte LOOP = 3;
+	
+	private static final int INITIAL_CAPACITY = 256;
+	
+	private Object[] items;
+	private byte[] kinds;
+	private int size;
+	private int loops;
+	private long recorded;
+	
+	private Visitor sink;
+	private int flushThreshold;
+	
+	//Updates made during the open transaction, held until it completes
+	private List<ModelUpdate> held;
+	private List<Boolean> heldCaused;
+	
+	/**
+	 * Instantiate a new Journal which keeps everything
+	 */
+	public Journal() {
+		this(null, 0);
+	}
+	
+	/**
+	 * @param sink - the visitor to hand the records to, or null to keep them
+	 * @param flushThreshold - the number of records which must be waiting
+	 * 				before they are handed to the sink
+	 */
+	public Journal(Visitor sink, int flushThreshold) {
+		this.items = new Object[INITIAL_CAPACITY];
+		this.kinds = new byte[INITIAL_CAPACITY];
+		this.size = 0;
+		this.loops = 0;
+		this.recorded = 0;
+		this.sink = sink;
+		this.flushThreshold = flushThreshold;
+		this.held = new ArrayList<ModelUpdate>();
+		this.heldCaused = new ArrayList<Boolean>();
+	}
+	
+	/**
+	 * @return the number of records held
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return the number of run-loops finished among the records held
+	 */
+	public int getLoops() {
+		return loops;
+	}
+	
+	/**
+	 * @return the number of records made since the journal was created,
+	 * 				including those handed to the sink
+	 */
+	public long getRecorded() {
+		return recorded;
+	}
+	
+	/**
+	 * Pass every record held to a visitor, in order, keeping them
+	 * @param visitor - the visitor
+	 */
+	public void accept(Visitor visitor) {
+		for(int i = 0; i < size; i++) {
+			switch(kinds[i]) {
+			case EVENT:
+				visitor.event((AppEvent) items[i]);
+				break;
+			case UPDATE:
+				visitor.update((ModelUpdate) items[i], false);
+				break;
+			case CAUSED_UPDATE:
+				visitor.update((ModelUpdate) items[i], true);
+				break;
+			default:
+				visitor.loopFinished();
+			}
+		}
+	}
+	
+	/**
+	 * Hand every record held to the sink, if there is one, and forget them
+	 */
+	public void flush() {
+		if(sink != null)
+			accept(sink);
+		clear();
+	}
+	
+	/**
+	 * Forget every record held
+	 */
+	public void clear() {
+		for(int i = 0; i < size; i++) {
+			if(kinds[i] == EVENT)
+				((AppEvent) items[i]).release();
+			items[i] = null;
+		}
+		size = 0;
+		loops = 0;
+	}
+	
+	//
+	// Recording, used by DDMVC
+	//
+	
+	void recordEvent(AppEvent event) {
+		event.retain();
+		append(event, EVENT);
+	}
+	
+	void recordUpdate(ModelUpdate update, boolean caused) {
+		append(update, caused ? CAUSED_UPDATE : UPDATE);
+	}
+	
+	void holdUpdate(ModelUpdate update, boolean caused) {
+		held.add(update);
+		heldCaused.add(caused);
+	}
+	
+	void releaseHeld() {
+		for(int i = 0; i < held.size(); i++)
+			recordUpdate(held.get(i), heldCaused.get(i));
+		discardHeld();
+	}
+	
+	void discardHeld() {
+		held.clear();
+		heldCaused.clear();
+	}
+	
+	void recordLoopFinished() {
+		append(null, LOOP);
+		loops++;
+		if(sink != null && size >= flushThreshold)
+			flush();
+	}
+	
+	private void append(Object item, byte kind) {
+		if(size == items.length) {
+			Object[] newItems = new Object[size * 2];
+			byte[] newKinds = new byte[size * 2];
+			System.arraycopy(items, 0, newItems, 0, size);
+			System.arraycopy(kinds, 0, newKinds, 0, size);
+			items = newItems;
+			kinds = newKinds;
+		}
+		items[size] = item;
+		kinds[size] = kind;
+		size++;
+		recorded++;
+	}
+
+}
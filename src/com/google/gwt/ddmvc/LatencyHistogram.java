@@ -0,0 +1,105 @@
+package com.google.gwt.ddmvc;
+
+/**
+ * A LatencyHistogram counts durations in buckets whose bounds are powers of
+ * two, in nanoseconds.  Recording is a few arithmetic operations with no 
+ * allocation, and the histogram takes a fixed amount of memory, at the cost
+ * of percentiles only being accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+
+	//Bucket i counts durations of i significant bits, below 2^i nanoseconds
+	private static final int BUCKETS = 64;
+	
+	private long[] counts;
+	private long count;
+	private long totalNanos;
+	private long maxNanos;
+	
+	public LatencyHistogram() {
+		counts = new long[BUCKETS];
+	}
+	
+	/**
+	 * Record a single duration
+	 * @param nanos - the duration, in nanoseconds
+	 */
+	public void record(long nanos) {
+		if(nanos < 0)
+			nanos = 0;
+		
+		counts[BUCKETS - Long.numberOfLeadingZeros(nanos)]++;
+		count++;
+		totalNanos += nanos;
+		if(nanos > maxNanos)
+			maxNanos = nanos;
+	}
+	
+	/**
+	 * @return the number of durations recorded
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return the sum of all durations recorded, in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+	
+	/**
+	 * @return the longest duration recorded, in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+	
+	/**
+	 * @return the mean duration recorded, in nanoseconds
+	 */
+	public long getMeanNanos() {
+		if(count == 0)
+			return 0;
+		return totalNanos / count;
+	}
+	
+	/**
+	 * Get an upper bound on a percentile of the durations recorded
+	 * @param percentile - the percentile, between 0 and 100
+	 * @return the upper bound of the bucket holding the percentile, in 
+	 * 				nanoseconds, never more than the longest duration
+	 */
+	public long getPercentileNanos(double percentile) {
+		if(percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("Percentile must be between " +
+					"0 and 100.");
+		if(count == 0)
+			return 0;
+		
+		long rank = (long) Math.ceil(count * percentile / 100);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if(seen >= rank && seen > 0)
+				return Math.min((1L << i) - 1, maxNanos);
+		}
+		return maxNanos;
+	}
+	
+	/**
+	 * @param bucket - the bucket index, between 0 and 63
+	 * @return the number of durations in [2^(bucket-1), 2^bucket) nanoseconds
+	 */
+	public long getBucketCount(int bucket) {
+		return counts[bucket];
+	}
+	
+	@Override
+	public String toString() {
+		return count + " calls, mean " + getMeanNanos() / 1000 + "us, p99 " 
+			+ getPercentileNanos(99) / 1000 + "us, max " + maxNanos / 1000 + "us";
+	}
+	
+}
@@ -0,0 +1,187 @@
+package com.google.gwt.ddmvc;
+
+/**
+ * The NotificationBudget bounds the number of ModelUpdates which may be held
+ * in the pending notifications between two run-loops, and records metrics
+ * about how often the bounds were reached.
+ *
+ * There are two limits.  The per-observer limit caps the number of updates
+ * queued for any single observer.  The global budget caps the total number
+ * of updates queued for all observers.  When either limit is exceeded, the
+ * queue of the observer receiving the update is collapsed into a single
+ * UnknownUpdate, which every observer already treats as "something changed".
+ * Views will simply render(), and computed models will simply recompute.
+ *
+ * Since GWT provides no means of measuring the size of an object, the budget
+ * is expressed as a number of queued updates rather than as a number of bytes.
+ *
+ * By default, both limits are disabled.
+ */
+public class NotificationBudget {
+
+	/**
+	 * Value of a limit which is not enforced
+	 */
+	public static final int UNLIMITED = -1;
+
+	private int maxUpdatesPerObserver;
+	private int maxQueuedUpdates;
+
+	private int queuedUpdates;
+	private int peakQueuedUpdates;
+	private int collapsedQueues;
+	private long droppedUpdates;
+
+	/**
+	 * Instantiate a new NotificationBudget with no limits
+	 */
+	public NotificationBudget() {
+		maxUpdatesPerObserver = UNLIMITED;
+		maxQueuedUpdates = UNLIMITED;
+		resetMetrics();
+	}
+
+	//
+	// Configuration
+	//
+
+	/**
+	 * @return the maximum number of updates queued for a single observer
+	 * 				before its queue is collapsed, or UNLIMITED
+	 */
+	public int getMaxUpdatesPerObserver() {
+		return maxUpdatesPerObserver;
+	}
+
+	/**
+	 * Set the maximum number of updates which may be queued for a single
+	 * observer.  Beyond this, the queue is collapsed into an UnknownUpdate.
+	 * @param max - the cap, must be at least 1, or UNLIMITED
+	 */
+	public void setMaxUpdatesPerObserver(int max) {
+		validateLimit(max);
+		this.maxUpdatesPerObserver = max;
+	}
+
+	/**
+	 * @return the maximum number of updates queued for all observers, or
+	 * 				UNLIMITED
+	 */
+	public int getMaxQueuedUpdates() {
+		return maxQueuedUpdates;
+	}
+
+	/**
+	 * Set the global budget of updates which may be queued for all observers.
+	 * While the budget is exceeded, any observer receiving another update will
+	 * have its queue collapsed into an UnknownUpdate.
+	 * @param max - the budget, must be at least 1, or UNLIMITED
+	 */
+	public void setMaxQueuedUpdates(int max) {
+		validateLimit(max);
+		this.maxQueuedUpdates = max;
+	}
+
+	private static void validateLimit(int max) {
+		if(max < 1 && max != UNLIMITED)
+			throw new IllegalArgumentException("Limit must be positive or " +
+					"UNLIMITED.");
+	}
+
+	//
+	// Metrics
+	//
+
+	/**
+	 * @return the number of updates currently queued for all observers
+	 */
+	public int getQueuedUpdates() {
+		return queuedUpdates;
+	}
+
+	/**
+	 * @return the largest number of updates which were queued at once
+	 */
+	public int getPeakQueuedUpdates() {
+		return peakQueuedUpdates;
+	}
+
+	/**
+	 * @return the number of times an observer's queue was collapsed
+	 */
+	public int getCollapsedQueues() {
+		return collapsedQueues;
+	}
+
+	/**
+	 * @return the number of updates discarded by collapsing queues
+	 */
+	public long getDroppedUpdates() {
+		return droppedUpdates;
+	}
+
+	/**
+	 * Reset all metrics, except the number of currently queued updates
+	 */
+	public void resetMetrics() {
+		peakQueuedUpdates = queuedUpdates;
+		collapsedQueues = 0;
+		droppedUpdates = 0;
+	}
+
+	//
+	// Accounting, used by DDMVC
+	//
+
+	/**
+	 * Determine whether or not an observer's queue must be collapsed
+	 * @param observerQueued - the number of updates queued for the observer
+	 * @return true if either limit has been exceeded
+	 */
+	boolean mustCollapse(int observerQueued) {
+		if(observerQueued <= 1)
+			return false;
+
+		if(maxUpdatesPerObserver != UNLIMITED
+				&& observerQueued > maxUpdatesPerObserver)
+			return true;
+
+		return maxQueuedUpdates != UNLIMITED && queuedUpdates > maxQueuedUpdates;
+	}
+
+	/**
+	 * Record that a single update was queued
+	 */
+	void queued() {
+		queuedUpdates++;
+		if(queuedUpdates > peakQueuedUpdates)
+			peakQueuedUpdates = queuedUpdates;
+	}
+
+	/**
+	 * Record that an observer's queue was collapsed
+	 * @param discarded - the number of updates which were discarded
+	 */
+	void collapsed(int discarded) {
+		collapsedQueues++;
+		droppedUpdates += discarded;
+		queuedUpdates -= discarded;
+	}
+
+	/**
+	 * Record that a single update was discarded without being queued, because
+	 * the observer's queue had already been collapsed
+	 */
+	void dropped() {
+		droppedUpdates++;
+	}
+
+	/**
+	 * Record that a number of updates were taken from the queue by the run-loop
+	 * @param count - the number of updates taken
+	 */
+	void drained(int count) {
+		queuedUpdates -= count;
+	}
+
+}
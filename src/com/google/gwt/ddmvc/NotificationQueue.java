@@ -0,0 +1,259 @@
+package com.google.gwt.ddmvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import com.google.gwt.ddmvc.event.Observer;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+
+/**
+ * A NotificationQueue holds the updates pending for each observer, in the
+ * order in which the observers were first notified.
+ *
+ * Observers are keyed by identity, by means of an open-addressing table of
+ * indexes into parallel arrays of observers and update lists.  Clearing the
+ * queue keeps the arrays and the update lists, so that a queue which is
+ * cleared and refilled with a similar number of notifications allocates
+ * nothing.  Storage beyond a high-water limit is released when the queue is
+ * cleared, so that a single burst of notifications does not keep its peak
+ * capacity for good.  DDMVC keeps two of these and swaps between them on
+ * every iteration of the run-loop.
+ *
+ * The update lists handed out by this class are reused once the queue is
+ * cleared, so they must not be held onto.
+ */
+class NotificationQueue {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	//The most slots, and updates per slot, kept when the queue is cleared
+	private static final int MAX_RETAINED_CAPACITY = 1024;
+	private static final int MAX_RETAINED_UPDATES = 64;
+
+	private Observer[] observers;
+	private List<ModelUpdate>[] updates;
+	private int[] positions;
+	private int size;
+	private int updateCount;
+
+	//Open-addressing table holding slot + 1, or 0 if empty
+	private int[] index;
+
+	/**
+	 * Instantiate a new, empty NotificationQueue
+	 */
+	public NotificationQueue() {
+		allocate(INITIAL_CAPACITY);
+		size = 0;
+		updateCount = 0;
+	}
+
+	//
+	// Accessors
+	//
+
+	/**
+	 * @return the number of observers in the queue
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the total number of updates in the queue
+	 */
+	public int updateCount() {
+		return updateCount;
+	}
+
+	/**
+	 * @param slot - the slot to access, between 0 and size() - 1
+	 * @return the observer in the slot
+	 */
+	public Observer getObserver(int slot) {
+		return observers[slot];
+	}
+
+	/**
+	 * @param slot - the slot to access, between 0 and size() - 1
+	 * @return the updates pending for the observer in the slot
+	 */
+	public List<ModelUpdate> getUpdates(int slot) {
+		return updates[slot];
+	}
+
+	/**
+	 * @param observer - the observer to look up
+	 * @return the updates pending for the observer, or null if there are none
+	 */
+	public List<ModelUpdate> get(Observer observer) {
+		int slot = indexOf(observer);
+		if(slot < 0)
+			return null;
+		return updates[slot];
+	}
+
+	/**
+	 * @param observer - the observer to look up
+	 * @return the slot of the observer, or -1 if it is not in the queue
+	 */
+	public int indexOf(Observer observer) {
+		return index[find(observer)] - 1;
+	}
+
+	//
+	// Mutators
+	//
+
+	/**
+	 * Add an update for an observer
+	 * @param observer - the observer to notify
+	 * @param update - the update to add
+	 * @return the number of updates pending for the observer
+	 */
+	public int add(Observer observer, ModelUpdate update) {
+		List<ModelUpdate> list = slotFor(observer);
+		list.add(update);
+		updateCount++;
+		return list.size();
+	}
+
+	/**
+	 * Add a number of updates for an observer.
+	 * Note - this copies by index, since List.addAll() allocates an array
+	 * @param observer - the observer to notify
+	 * @param toAdd - the updates to add, in order
+	 */
+	public void addAll(Observer observer, List<ModelUpdate> toAdd) {
+		List<ModelUpdate> list = slotFor(observer);
+		for(int i = 0; i < toAdd.size(); i++)
+			list.add(toAdd.get(i));
+		updateCount += toAdd.size();
+	}
+
+	/**
+	 * Replace all of the updates pending for an observer with a single update
+	 * @param observer - the observer whose updates are to be replaced
+	 * @param update - the update to replace them with
+	 * @return the number of updates discarded
+	 */
+	public int replace(Observer observer, ModelUpdate update) {
+		List<ModelUpdate> list = slotFor(observer);
+		int discarded = list.size();
+		list.clear();
+		list.add(update);
+		updateCount += 1 - discarded;
+		return discarded;
+	}
+
+	/**
+	 * Remove all observers and updates, keeping the allocated storage up to
+	 * the high-water limit
+	 */
+	public void clear() {
+		for(int i = 0; i < size; i++) {
+			observers[i] = null;
+			if(updates[i].size() > MAX_RETAINED_UPDATES)
+				updates[i] = null;
+			else
+				updates[i].clear();
+			index[positions[i]] = 0;
+		}
+		size = 0;
+		updateCount = 0;
+
+		if(observers.length > MAX_RETAINED_CAPACITY)
+			allocate(MAX_RETAINED_CAPACITY);
+	}
+
+	//
+	// Table management
+	//
+
+	/**
+	 * Get the update list for an observer, creating its slot if necessary
+	 * @param observer - the observer to look up
+	 * @return the update list of the observer
+	 */
+	private List<ModelUpdate> slotFor(Observer observer) {
+		int position = find(observer);
+		if(index[position] != 0)
+			return updates[index[position] - 1];
+
+		if(size == observers.length) {
+			grow();
+			position = find(observer);
+		}
+
+		observers[size] = observer;
+		if(updates[size] == null)
+			updates[size] = new ArrayList<ModelUpdate>();
+		positions[size] = position;
+		index[position] = size + 1;
+		return updates[size++];
+	}
+
+	/**
+	 * Find the position of an observer in the index table, or the empty
+	 * position at which it would be inserted
+	 * @param observer - the observer to look for
+	 * @return the position in the table
+	 */
+	private int find(Observer observer) {
+		int mask = index.length - 1;
+		int position = hash(observer) & mask;
+		while(index[position] != 0 && observers[index[position] - 1] != observer)
+			position = (position + 1) & mask;
+		return position;
+	}
+
+	private static int hash(Observer observer) {
+		int h = System.identityHashCode(observer);
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Allocate empty slots and an empty table, keeping the update lists which
+	 * fit.  Must only be called while the queue is empty.
+	 * @param capacity - the number of slots, a power of two
+	 */
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		List<ModelUpdate>[] newUpdates = 
+			(List<ModelUpdate>[]) new List<?>[capacity];
+		if(updates != null)
+			for(int i = 0; i < capacity && i < updates.length; i++)
+				newUpdates[i] = updates[i];
+
+		observers = new Observer[capacity];
+		updates = newUpdates;
+		positions = new int[capacity];
+		index = new int[capacity * 2];
+	}
+
+	/**
+	 * Double the capacity of the slots and the table, and re-index the slots
+	 */
+	@SuppressWarnings("unchecked")
+	private void grow() {
+		int capacity = observers.length * 2;
+
+		Observer[] newObservers = new Observer[capacity];
+		List<ModelUpdate>[] newUpdates = 
+			(List<ModelUpdate>[]) new List<?>[capacity];
+		for(int i = 0; i < size; i++) {
+			newObservers[i] = observers[i];
+			newUpdates[i] = updates[i];
+		}
+		observers = newObservers;
+		updates = newUpdates;
+		positions = new int[capacity];
+		index = new int[capacity * 2];
+
+		for(int i = 0; i < size; i++) {
+			int position = find(observers[i]);
+			positions[i] = position;
+			index[position] = i + 1;
+		}
+	}
+
+}
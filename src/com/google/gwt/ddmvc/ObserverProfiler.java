@@ -0,0 +1,75 @@
+package com.google.gwt.ddmvc;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The ObserverProfiler keeps a LatencyHistogram of the time taken by 
+ * modelChanged() for each class of observer, across all run-loops.  This
+ * shows which views and computed models dominate the run-loop.
+ * 
+ * Profiling is disabled by default, since it reads the clock twice for every
+ * notification.
+ */
+public class ObserverProfiler {
+
+	private boolean enabled;
+	private Map<Class<?>, LatencyHistogram> histograms;
+	
+	public ObserverProfiler() {
+		enabled = false;
+		histograms = new HashMap<Class<?>, LatencyHistogram>();
+	}
+	
+	/**
+	 * @return true if notifications are being timed
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * @param enabled - true to time notifications, false to stop
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	
+	/**
+	 * @param cls - the class of observer
+	 * @return the histogram for the class, or null if none was notified
+	 */
+	public LatencyHistogram getHistogram(Class<?> cls) {
+		return histograms.get(cls);
+	}
+	
+	/**
+	 * @return the histograms of all classes of observers notified, unmodifiable
+	 */
+	public Map<Class<?>, LatencyHistogram> getHistograms() {
+		return Collections.unmodifiableMap(histograms);
+	}
+	
+	/**
+	 * Discard all of the histograms
+	 */
+	public void reset() {
+		histograms.clear();
+	}
+	
+	/**
+	 * Record the time taken to notify an observer
+	 * @param cls - the class of the observer
+	 * @param nanos - the time taken, in nanoseconds
+	 */
+	void record(Class<?> cls, long nanos) {
+		LatencyHistogram histogram = histograms.get(cls);
+		if(histogram == null) {
+			histogram = new LatencyHistogram();
+			histograms.put(cls, histogram);
+		}
+		histogram.record(nanos);
+	}
+	
+}
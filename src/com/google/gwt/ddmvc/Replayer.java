@@ -0,0 +1,126 @@
+package com.google.gwt.ddmvc;
+
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.model.update.ModelDeleted;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+
+/**
+ * A Replayer drives DDMVC with the records of a Journal, as fast as it can,
+ * performing a run-loop wherever one finished when they were recorded.  It
+ * should generally replay into a freshly reset DDMVC, with whatever views and
+ * observers are to be measured already in place.
+ * 
+ * By default, events are not fired, and every update recorded is made, so
+ * the data tree goes through the same changes without any controller.  If
+ * events are dispatched instead, the controllers subscribed are expected to
+ * make the updates they caused again, so those are skipped.
+ * 
+ * Since time, server answers and the order of events are all taken from the
+ * journal, replaying the same journal twice does the same work.
+ */
+public class Replayer implements Journal.Visitor {
+
+	private boolean dispatchEvents;
+	private int loops;
+	private int events;
+	private int updates;
+	private long nanos;
+	
+	/**
+	 * Instantiate a new Replayer which makes updates, rather than firing events
+	 */
+	public Replayer() {
+		this(false);
+	}
+	
+	/**
+	 * @param dispatchEvents - true to fire the events recorded, and skip the
+	 * 				updates they caused
+	 */
+	public Replayer(boolean dispatchEvents) {
+		this.dispatchEvents = dispatchEvents;
+	}
+	
+	/**
+	 * Replay every record of a journal.  The journal installed in DDMVC, if any,
+	 * is set aside while replaying.
+	 * @param journal - the journal to replay
+	 */
+	public void replay(Journal journal) {
+		Journal installed = DDMVC.getJournal();
+		DDMVC.setJournal(null);
+		long start = System.nanoTime();
+		try {
+			journal.accept(this);
+		} finally {
+			nanos += System.nanoTime() - start;
+			DDMVC.setJournal(installed);
+		}
+	}
+	
+	//
+	// Metrics
+	//
+	
+	/**
+	 * @return the number of run-loops performed
+	 */
+	public int getLoops() {
+		return loops;
+	}
+	
+	/**
+	 * @return the number of events fired
+	 */
+	public int getEvents() {
+		return events;
+	}
+	
+	/**
+	 * @return the number of updates made
+	 */
+	public int getUpdates() {
+		return updates;
+	}
+	
+	/**
+	 * @return the wall time spent replaying, in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+	
+	//
+	// Journal.Visitor Implementation
+	//
+	
+	@Override
+	public void event(AppEvent event) {
+		if(!dispatchEvents)
+			return;
+		
+		//The journal keeps its hold on pooled events, dispatch takes another
+		event.retain();
+		DDMVC.fireEvent(event);
+		events++;
+	}
+	
+	@Override
+	public void update(ModelUpdate update, boolean caused) {
+		if(dispatchEvents && caused)
+			return;
+		
+		if(update instanceof ModelDeleted)
+			DDMVC.deleteModel(update.getTarget());
+		else
+			DDMVC.handleUpdate(update);
+		updates++;
+	}
+	
+	@Override
+	public void loopFinished() {
+		DDMVC.runLoop();
+		loops++;
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.google.gwt.ddmvc;
+
+/**
+ * A RunLoopBudget limits how much work a single call to 
+ * DDMVC.runLoop(RunLoopBudget) may perform before it returns.  The work is
+ * limited by a time allowance, by a number of notification iterations, or by
+ * both.  When the budget is exhausted, the run-loop stops and can be resumed
+ * by a later call.
+ * 
+ * The budget is only checked between individual events and notifications, so
+ * a single slow observer may still overrun the time allowance.  Also, every
+ * call performs at least one step, so that repeated calls always make
+ * progress.
+ */
+public class RunLoopBudget {
+
+	/**
+	 * A budget which runs the loop to completion
+	 */
+	public static final RunLoopBudget UNLIMITED = new RunLoopBudget(-1, -1);
+	
+	private long millis;
+	private int iterations;
+	
+	/**
+	 * Create a budget which stops once a time allowance has passed
+	 * @param millis - the number of milliseconds the run-loop may take
+	 * @return the new budget
+	 */
+	public static RunLoopBudget millis(long millis) {
+		return make(millis, -1);
+	}
+	
+	/**
+	 * Create a budget which stops after a number of notification iterations
+	 * @param iterations - the number of iterations the run-loop may start
+	 * @return the new budget
+	 */
+	public static RunLoopBudget iterations(int iterations) {
+		return make(-1, iterations);
+	}
+	
+	/**
+	 * Create a budget which stops after a time allowance has passed or a
+	 * number of notification iterations have been started, whichever is first.
+	 * Either limit may be -1 to leave it unlimited, but not both.
+	 * @param millis - the number of milliseconds the run-loop may take
+	 * @param iterations - the number of iterations the run-loop may start
+	 * @return the new budget
+	 */
+	public static RunLoopBudget make(long millis, int iterations) {
+		if(millis < -1 || iterations < -1 || iterations == 0
+				|| (millis == -1 && iterations == -1))
+			throw new IllegalArgumentException("Invalid run-loop budget.");
+		
+		return new RunLoopBudget(millis, iterations);
+	}
+	
+	private RunLoopBudget(long millis, int iterations) {
+		this.millis = millis;
+		this.iterations = iterations;
+	}
+	
+	/**
+	 * @return the time allowance in milliseconds, or -1 if unlimited
+	 */
+	public long getMillis() {
+		return millis;
+	}
+	
+	/**
+	 * @return the number of iterations allowed, or -1 if unlimited
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+	
+	/**
+	 * @return true if this budget is not limited at all
+	 */
+	public boolean isUnlimited() {
+		return millis < 0 && iterations < 0;
+	}
+	
+}
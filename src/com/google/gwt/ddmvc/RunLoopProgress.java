@@ -0,0 +1,76 @@
+package com.google.gwt.ddmvc;
+
+import java.util.List;
+
+/**
+ * A RunLoopProgress is returned by DDMVC.runLoop(RunLoopBudget) to describe
+ * how far the run-loop got within its budget.  If the run-loop is not
+ * complete, calling DDMVC.runLoop(...) again will resume exactly where it
+ * stopped.
+ */
+public class RunLoopProgress {
+
+	private boolean complete;
+	private int pendingEvents;
+	private int pendingNotifications;
+	private int iteration;
+	private List<RunLoopException> exceptions;
+	
+	public RunLoopProgress(boolean complete, int pendingEvents, 
+			int pendingNotifications, int iteration, 
+			List<RunLoopException> exceptions) {
+		
+		super();
+		this.complete = complete;
+		this.pendingEvents = pendingEvents;
+		this.pendingNotifications = pendingNotifications;
+		this.iteration = iteration;
+		this.exceptions = exceptions;
+	}
+	
+	/**
+	 * @return true if the run-loop ran until there was nothing left to do
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+	
+	/**
+	 * @return the number of events which have not been dispatched yet
+	 */
+	public int getPendingEvents() {
+		return pendingEvents;
+	}
+	
+	/**
+	 * @return the number of observers which have not been notified yet
+	 */
+	public int getPendingNotifications() {
+		return pendingNotifications;
+	}
+	
+	/**
+	 * @return the notification iteration the run-loop stopped during, or the
+	 * 				total number of iterations if it is complete
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+	
+	/**
+	 * @return the exceptions encountered during this call of the run-loop
+	 */
+	public List<RunLoopException> getExceptions() {
+		return exceptions;
+	}
+	
+	@Override
+	public String toString() {
+		if(complete)
+			return "Run-loop complete after " + iteration + " iterations";
+		return "Run-loop stopped during iteration " + iteration + " with " 
+				+ pendingEvents + " events and " + pendingNotifications 
+				+ " notifications pending";
+	}
+	
+}
@@ -0,0 +1,283 @@
+package com.google.gwt.ddmvc;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The RunLoopScheduler runs the run-loop automatically after events are fired
+ * or observers are notified, so that callers need not call DDMVC.runLoop().
+ * 
+ * Mutations are coalesced into one run-loop: it runs once no mutation has
+ * occurred for the debounce window, or once the first pending mutation is
+ * older than the maximum delay, whichever comes first.  Only one task is
+ * scheduled with the executor at a time, however many mutations occur.
+ * 
+ * If a budget is set, each scheduled run-loop is limited by it, and a
+ * run-loop which stops early is resumed by another task as soon as possible.
+ * 
+ * The scheduler is disabled until an executor is set.
+ */
+public class RunLoopScheduler {
+
+	/**
+	 * Receives the outcome of each scheduled run-loop
+	 */
+	public interface Listener {
+		
+		/**
+		 * Called after each scheduled call to the run-loop
+		 * @param progress - the progress of the run-loop, holding the exceptions
+		 * 				encountered during the call
+		 */
+		public void runLoopRan(RunLoopProgress progress);
+		
+	}
+	
+	private TaskExecutor executor;
+	private Listener listener;
+	private RunLoopBudget budget;
+	private int debounceMillis;
+	private int maxDelayMillis;
+	
+	private boolean pending;
+	private boolean scheduled;
+	private boolean resuming;
+	private int generation;
+	private long firstMutation;
+	private long lastMutation;
+	
+	private int scheduledLoops;
+	private int flushes;
+	private long mutations;
+	
+	/**
+	 * Instantiate a new RunLoopScheduler, disabled, with no debounce
+	 */
+	public RunLoopScheduler() {
+		executor = null;
+		listener = null;
+		budget = RunLoopBudget.UNLIMITED;
+		debounceMillis = 0;
+		maxDelayMillis = 0;
+	}
+	
+	//
+	// Configuration
+	//
+	
+	/**
+	 * @return the executor, or null if the scheduler is disabled
+	 */
+	public TaskExecutor getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * Set the executor which runs the scheduled run-loops.  Any run-loop
+	 * already scheduled with the previous executor will not run.
+	 * @param executor - the executor, or null to disable the scheduler
+	 */
+	public void setExecutor(TaskExecutor executor) {
+		this.executor = executor;
+		generation++;
+		scheduled = false;
+		if(executor != null && pending)
+			schedule(0);
+	}
+	
+	/**
+	 * @param listener - receives the outcome of scheduled run-loops, or null
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * @return the budget of each scheduled run-loop
+	 */
+	public RunLoopBudget getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * @param budget - the budget of each scheduled run-loop
+	 */
+	public void setBudget(RunLoopBudget budget) {
+		if(budget == null)
+			throw new IllegalArgumentException("Budget cannot be null.");
+		this.budget = budget;
+	}
+	
+	/**
+	 * @return the time without mutations after which the run-loop runs
+	 */
+	public int getDebounceMillis() {
+		return debounceMillis;
+	}
+	
+	/**
+	 * Set the time without mutations after which the run-loop runs.  If the
+	 * maximum delay is shorter, it is raised to match.
+	 * @param millis - the debounce window, 0 to run as soon as possible
+	 */
+	public void setDebounceMillis(int millis) {
+		if(millis < 0)
+			throw new IllegalArgumentException("Debounce cannot be negative.");
+		debounceMillis = millis;
+		if(maxDelayMillis < millis)
+			maxDelayMillis = millis;
+	}
+	
+	/**
+	 * @return the longest time a mutation waits for the run-loop
+	 */
+	public int getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+	
+	/**
+	 * Set the longest time a mutation waits for the run-loop, however often
+	 * further mutations occur.
+	 * @param millis - the coalescing window, at least the debounce window
+	 */
+	public void setMaxDelayMillis(int millis) {
+		if(millis < debounceMillis)
+			throw new IllegalArgumentException("Maximum delay cannot be shorter " +
+					"than the debounce window.");
+		maxDelayMillis = millis;
+	}
+	
+	//
+	// Metrics
+	//
+	
+	/**
+	 * @return true if a mutation is waiting for the run-loop, or a run-loop
+	 * 				stopped by its budget is waiting to be resumed
+	 */
+	public boolean isPending() {
+		return pending || resuming;
+	}
+	
+	/**
+	 * @return the number of run-loops run by the scheduler
+	 */
+	public int getScheduledLoops() {
+		return scheduledLoops;
+	}
+	
+	/**
+	 * @return the number of run-loops run by flush()
+	 */
+	public int getFlushes() {
+		return flushes;
+	}
+	
+	/**
+	 * @return the number of mutations seen outside of the run-loop
+	 */
+	public long getMutations() {
+		return mutations;
+	}
+	
+	/**
+	 * Reset all metrics
+	 */
+	public void resetMetrics() {
+		scheduledLoops = 0;
+		flushes = 0;
+		mutations = 0;
+	}
+	
+	//
+	// Scheduling
+	//
+	
+	/**
+	 * Run the run-loop to completion now, if a mutation is pending, and cancel
+	 * the scheduled run-loop.  This is intended for tests.
+	 * @return the exceptions encountered, empty if none
+	 */
+	public List<RunLoopException> flush() {
+		if(!pending && !resuming)
+			return Collections.emptyList();
+		
+		generation++;
+		scheduled = false;
+		pending = false;
+		resuming = false;
+		flushes++;
+		return DDMVC.runLoop();
+	}
+	
+	/**
+	 * Record a mutation made outside of the run-loop, scheduling the run-loop
+	 * if need be
+	 */
+	void mutated() {
+		if(executor == null)
+			return;
+		
+		mutations++;
+		lastMutation = executor.currentTimeMillis();
+		if(!pending) {
+			pending = true;
+			firstMutation = lastMutation;
+		}
+		if(!scheduled)
+			schedule(debounceMillis);
+	}
+	
+	/**
+	 * Schedule a task to run the run-loop
+	 * @param delay - the delay, in milliseconds
+	 */
+	private void schedule(int delay) {
+		scheduled = true;
+		final int scheduledGeneration = generation;
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if(scheduledGeneration == generation)
+					fire();
+			}
+		}, delay);
+	}
+	
+	/**
+	 * Run the run-loop if the debounce or coalescing window has passed,
+	 * otherwise wait for whichever comes first
+	 */
+	private void fire() {
+		scheduled = false;
+		if(!resuming) {
+			if(!pending)
+				return;
+			
+			long now = executor.currentTimeMillis();
+			long due = Math.min(lastMutation + debounceMillis, 
+					firstMutation + maxDelayMillis);
+			if(now < due) {
+				schedule((int) (due - now));
+				return;
+			}
+			
+			pending = false;
+			scheduledLoops++;
+		}
+		
+		RunLoopProgress progress = DDMVC.runLoop(budget);
+		
+		//A run-loop stopped by its budget is resumed as soon as possible, and
+		//any mutation made between its calls gets a run-loop of its own
+		resuming = !progress.isComplete();
+		if(resuming)
+			schedule(0);
+		else if(pending)
+			schedule(debounceMillis);
+		
+		if(listener != null)
+			listener.runLoopRan(progress);
+	}
+	
+}
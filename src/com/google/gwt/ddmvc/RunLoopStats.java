@@ -0,0 +1,262 @@
+package com.google.gwt.ddmvc;
+
+/**
+ * RunLoopStats records what happened during a single run-loop: how many
+ * events were dispatched, how many observers were notified, how many
+ * computed models were recomputed and views rendered, and how much time was
+ * spent in each phase.
+ * 
+ * The statistics of the last completed run-loop are available from 
+ * DDMVC.getRunLoopStats().  A budgeted run-loop which is stopped early keeps
+ * accumulating into the same statistics until it completes.
+ */
+public class RunLoopStats {
+
+	private int iterations;
+	private int eventsDispatched;
+	private int eventsConflated;
+	private int controllerInvocations;
+	private int serverRequests;
+	private int roundTrips;
+	private int notificationsDelivered;
+	private int updatesDelivered;
+	private int recomputes;
+	private int cutoffs;
+	private int renders;
+	private int exceptions;
+	private long eventNanos;
+	private long notificationNanos;
+	private long freeNotificationNanos;
+	
+	//
+	// Accessors
+	//
+	
+	/**
+	 * @return the number of notification iterations
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+	
+	/**
+	 * @return the number of events dispatched to controllers
+	 */
+	public int getEventsDispatched() {
+		return eventsDispatched;
+	}
+	
+	/**
+	 * @return the number of events which were conflated into earlier events
+	 * 				of the same kind, and so were not dispatched on their own
+	 */
+	public int getEventsConflated() {
+		return eventsConflated;
+	}
+	
+	/**
+	 * @return the number of times a controller responded to an event
+	 */
+	public int getControllerInvocations() {
+		return controllerInvocations;
+	}
+	
+	/**
+	 * @return the number of server requests returned by controllers
+	 */
+	public int getServerRequests() {
+		return serverRequests;
+	}
+	
+	/**
+	 * @return the number of batches of server requests sent to the transport
+	 */
+	public int getRoundTrips() {
+		return roundTrips;
+	}
+	
+	/**
+	 * @return the number of round trips saved by sending the server requests
+	 * 				in batches, rather than one at a time
+	 */
+	public int getRoundTripsSaved() {
+		return roundTrips == 0 ? 0 : serverRequests - roundTrips;
+	}
+	
+	/**
+	 * @return the number of times an observer's modelChanged() was called
+	 */
+	public int getNotificationsDelivered() {
+		return notificationsDelivered;
+	}
+	
+	/**
+	 * @return the total number of updates passed to observers
+	 */
+	public int getUpdatesDelivered() {
+		return updatesDelivered;
+	}
+	
+	/**
+	 * @return the number of notifications delivered to computed models
+	 */
+	public int getRecomputes() {
+		return recomputes;
+	}
+	
+	/**
+	 * @return the number of computed models notified whose recomputed value was
+	 * 				equivalent to the previous one, so were not cascaded
+	 */
+	public int getCutoffs() {
+		return cutoffs;
+	}
+	
+	/**
+	 * @return the number of times a view rendered in response to a notification
+	 */
+	public int getRenders() {
+		return renders;
+	}
+	
+	/**
+	 * @return the number of exceptions encountered
+	 */
+	public int getExceptions() {
+		return exceptions;
+	}
+	
+	/**
+	 * @return the wall time spent dispatching events, in nanoseconds
+	 */
+	public long getEventNanos() {
+		return eventNanos;
+	}
+	
+	/**
+	 * @return the wall time spent notifying observers with observers of their
+	 * 				own, such as computed models, in nanoseconds
+	 */
+	public long getNotificationNanos() {
+		return notificationNanos;
+	}
+	
+	/**
+	 * @return the wall time spent notifying observers without observers of
+	 * 				their own, such as views, in nanoseconds
+	 */
+	public long getFreeNotificationNanos() {
+		return freeNotificationNanos;
+	}
+	
+	/**
+	 * @return the wall time spent in all phases, in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return eventNanos + notificationNanos + freeNotificationNanos;
+	}
+	
+	@Override
+	public String toString() {
+		return iterations + " iterations, " 
+			+ eventsDispatched + " events, "
+			+ eventsConflated + " conflated, "
+			+ serverRequests + " requests in "
+			+ roundTrips + " round trips, "
+			+ notificationsDelivered + " notifications, "
+			+ recomputes + " recomputes, "
+			+ cutoffs + " cutoffs, "
+			+ renders + " renders, "
+			+ exceptions + " exceptions in "
+			+ (getTotalNanos() / 1000) + "us";
+	}
+	
+	//
+	// Recording, used by DDMVC
+	//
+	
+	void iterationStarted() {
+		iterations++;
+	}
+	
+	void eventDispatched(int controllers, int requests) {
+		eventsDispatched++;
+		controllerInvocations += controllers;
+		serverRequests += requests;
+	}
+	
+	void requestSubmitted() {
+		serverRequests++;
+	}
+	
+	void roundTrip() {
+		roundTrips++;
+	}
+	
+	void eventsConflated(int count) {
+		eventsConflated += count;
+	}
+	
+	void notificationDelivered(int updates, boolean recompute) {
+		notificationsDelivered++;
+		updatesDelivered += updates;
+		if(recompute)
+			recomputes++;
+	}
+	
+	void cutoff() {
+		cutoffs++;
+	}
+	
+	void rendered() {
+		renders++;
+	}
+	
+	void exceptionEncountered() {
+		exceptions++;
+	}
+	
+	void eventTime(long nanos) {
+		eventNanos += nanos;
+	}
+	
+	void notificationTime(long nanos) {
+		notificationNanos += nanos;
+	}
+	
+	void freeNotificationTime(long nanos) {
+		freeNotificationNanos += nanos;
+	}
+	
+	/**
+	 * Copy all of the statistics from another instance, without allocating
+	 * @param other - the statistics to copy
+	 */
+	void copy(RunLoopStats other) {
+		iterations = other.iterations;
+		eventsDispatched = other.eventsDispatched;
+		eventsConflated = other.eventsConflated;
+		controllerInvocations = other.controllerInvocations;
+		serverRequests = other.serverRequests;
+		roundTrips = other.roundTrips;
+		notificationsDelivered = other.notificationsDelivered;
+		updatesDelivered = other.updatesDelivered;
+		recomputes = other.recomputes;
+		cutoffs = other.cutoffs;
+		renders = other.renders;
+		exceptions = other.exceptions;
+		eventNanos = other.eventNanos;
+		notificationNanos = other.notificationNanos;
+		freeNotificationNanos = other.freeNotificationNanos;
+	}
+	
+	/**
+	 * Reset all of the statistics to zero
+	 */
+	void clear() {
+		copy(EMPTY);
+	}
+	
+	private static final RunLoopStats EMPTY = new RunLoopStats();
+	
+}
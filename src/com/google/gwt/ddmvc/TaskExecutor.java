@@ -0,0 +1,23 @@
+package com.google.gwt.ddmvc;
+
+/**
+ * A TaskExecutor runs tasks after a delay, on the same thread as the rest of
+ * the application.  In a browser, this would generally wrap a GWT Timer or
+ * Scheduler; in tests, it can run tasks on a virtual clock.
+ */
+public interface TaskExecutor {
+
+	/**
+	 * Run a task once, after a delay
+	 * @param task - the task to run
+	 * @param delayMillis - the delay, in milliseconds, 0 to run as soon as
+	 * 				possible after the current event
+	 */
+	public void schedule(Runnable task, int delayMillis);
+	
+	/**
+	 * @return the current time of the executor's clock, in milliseconds
+	 */
+	public long currentTimeMillis();
+	
+}
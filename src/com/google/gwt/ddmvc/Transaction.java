@@ -0,0 +1,17 @@
+package com.google.gwt.ddmvc;
+
+/**
+ * A Transaction is a batch of changes to the data tree, run by 
+ * DDMVC.transaction(...).  The changes are either all kept, with the affected
+ * observers notified together, or all reverted if run() throws.
+ * 
+ * Generally, this will be implemented as an anonymous class.
+ */
+public interface Transaction {
+
+	/**
+	 * Make the changes to the data tree, by any of the usual methods
+	 */
+	public void run();
+	
+}
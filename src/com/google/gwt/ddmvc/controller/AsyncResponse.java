@@ -1,31 +1,294 @@
 package com.google.gwt.ddmvc.controller;
 
+import java.util.ArrayList;
 import java.util.List;
-
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.model.Model;
+import com.google.gwt.ddmvc.model.Path;
+import com.google.gwt.ddmvc.model.UndoLog;
+import com.google.gwt.ddmvc.model.Model.UpdateLevel;
 import com.google.gwt.ddmvc.model.update.ModelUpdate;
-import com.google.gwt.ddmvc.view.View;
+import com.google.gwt.ddmvc.model.update.UnknownUpdate;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 
+/**
+ * The AsyncResponse of a ServerRequest is called by the RequestTransport once
+ * the server has answered.  Since the answer may arrive at any time, it is
+ * brought into the next run-loop with DDMVC.invokeLater(...): the 
+ * ModelUpdates returned are applied in one batch, and then the controller of
+ * the request is told of the outcome.
+ * 
+ * If the request carries predictions, they are applied as an overlay when
+ * the request is returned, with their changes recorded in an UndoLog.  Once
+ * the answer arrives, the overlay is reverted without notifying anyone, and 
+ * on success the updates returned are applied in its place, so the server
+ * has the last word.  The observers of each predicted model are told that
+ * it reverted by an UnknownUpdate, so that those which apply updates one at a
+ * time, such as incremental models, rebuild rather than count a prediction
+ * and its confirmation twice.  They are then notified of the updates
+ * returned.  Observers of models neither predicted nor updated are left
+ * alone.
+ * 
+ * Overlays which predict the same models, or models under one another, are
+ * stacked in the order they were applied.  When one of them is answered, the
+ * whole stack is reverted to the confirmed values, the answer is applied,
+ * and the predictions still outstanding are applied again on top, in order.
+ * The requests may therefore be answered in any order.
+ * Note - reverting an overlay also reverts any change made since to the
+ * models it predicted, other than by the answers of other requests.
+ * 
+ * A response may only be completed once.  Listeners added to it, such as by
+ * transports which share one answer between several requests, are told of
+ * the outcome as soon as it arrives.
+ */
 public class AsyncResponse implements AsyncCallback<List<ModelUpdate>> {
 
+	private ServerRequest request;
+	private boolean completed;
+	private List<AsyncCallback<List<ModelUpdate>>> listeners;
+	private UndoLog overlay;
+	
+	//The responses whose overlays are applied to the data root, in the order
+	//they were applied
+	private static List<AsyncResponse> overlays = 
+		new ArrayList<AsyncResponse>();
+	private static Model overlaysRoot;
+	
 	/**
 	 * Instantiate a new response object waiting on a server response 
-	 * @param controller the controller object to call on completion
-	 * @param source	 the source view if applicable
+	 * @param request - the request being responded to
 	 */
-	public AsyncResponse(Controller controller, View source) {
-		
+	public AsyncResponse(ServerRequest request) {
+		this.request = request;
+		this.completed = false;
+		this.listeners = null;
+		this.overlay = null;
 	}
+	
+	/**
+	 * Apply the predictions of the request as an overlay, which is called by
+	 * DDMVC when the request is returned, and need not be called explicitly.
+	 * Does nothing if there are no predictions, or they were already applied.
+	 */
+	public void applyPredictions() {
+		List<ModelUpdate> predictions = request.getPredictions();
+		if(predictions.size() == 0 || overlay != null || completed)
+			return;
 		
+		applyOverlay();
+	}
+	
+	/**
+	 * @return true if the predictions of the request are applied, and waiting
+	 * 				on the answer
+	 */
+	public boolean isPredicting() {
+		return overlay != null;
+	}
+	
+	/**
+	 * @return true if the transport has completed this response
+	 */
+	public boolean isCompleted() {
+		return completed;
+	}
+	
+	/**
+	 * Add a listener to be told of the outcome as soon as it arrives, rather
+	 * than in the next run-loop.  Listeners are called in the order they were
+	 * added, after the outcome has been queued for the controller, so that
+	 * anything they queue in turn is handled after it.
+	 * @param listener - the listener to add
+	 */
+	public void addListener(AsyncCallback<List<ModelUpdate>> listener) {
+		if(completed)
+			throw new IllegalStateException("The response has already been " +
+					"completed.");
+		if(listeners == null)
+			listeners = new ArrayList<AsyncCallback<List<ModelUpdate>>>();
+		listeners.add(listener);
+	}
+	
 	@Override
-	public void onFailure(Throwable caught) {
+	public void onFailure(final Throwable caught) {
+		complete();
+		DDMVC.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				revertOverlay(null);
+				try {
+					request.getController().onRequestFailure(request.getEvent(), 
+							caught);
+				} finally {
+					request.getEvent().release();
+				}
+			}
+		});
 		
+		if(listeners != null)
+			for(AsyncCallback<List<ModelUpdate>> listener : listeners)
+				listener.onFailure(caught);
 	}
-
+	
 	@Override
-	public void onSuccess(List<ModelUpdate> result) {
+	public void onSuccess(final List<ModelUpdate> result) {
+		complete();
+		DDMVC.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				succeed(result);
+			}
+		});
 		
+		if(listeners != null)
+			for(AsyncCallback<List<ModelUpdate>> listener : listeners)
+				listener.onSuccess(result);
 	}
 	
+	/**
+	 * Complete the response successfully within the current run-loop, rather
+	 * than the next, for answers which are known without a round trip.  Must
+	 * be called from within the run-loop.
+	 * @param result - the updates to apply
+	 */
+	void onSuccessNow(List<ModelUpdate> result) {
+		complete();
+		if(listeners != null)
+			for(AsyncCallback<List<ModelUpdate>> listener : listeners)
+				listener.onSuccess(result);
+		succeed(result);
+	}
+	
+	/**
+	 * Apply the updates returned, and tell the controller
+	 * @param result - the updates to apply, may be null
+	 */
+	private void succeed(List<ModelUpdate> result) {
+		revertOverlay(result);
+		try {
+			request.getController().onRequestSuccess(request.getEvent());
+		} finally {
+			request.getEvent().release();
+		}
+	}
+	
+	//
+	// Overlays
+	//
+	
+	/**
+	 * Apply the predictions of the request, recording them in a new overlay
+	 */
+	private void applyOverlay() {
+		overlay = UndoLog.open(DDMVC.getDataRoot());
+		try {
+			DDMVC.handleUpdates(request.getPredictions());
+		} finally {
+			overlay.suspend();
+			getOverlays().add(this);
+		}
+	}
+	
+	/**
+	 * Revert the overlay, if there is one, along with the other overlays
+	 * stacked with it, and notify the observers of every predicted model that
+	 * it reverted.  Then apply the answer, and the predictions of the other
+	 * overlays on top of it.
+	 * @param result - the updates to apply, may be null
+	 */
+	private void revertOverlay(List<ModelUpdate> result) {
+		if(overlay == null) {
+			if(result != null)
+				DDMVC.handleUpdates(result);
+			return;
+		}
+		
+		List<AsyncResponse> stack = getStack();
+		for(int i = stack.size() - 1; i >= 0; i--) {
+			AsyncResponse response = stack.get(i);
+			response.overlay.rollback();
+			response.overlay = null;
+			overlays.remove(response);
+		}
+		
+		for(AsyncResponse response : stack)
+			for(ModelUpdate prediction : response.request.getPredictions())
+				DDMVC.notifyObservers(new UnknownUpdate(prediction.getTarget()), 
+						UpdateLevel.REFERENCE);
+		
+		if(result != null)
+			DDMVC.handleUpdates(result);
+		
+		for(AsyncResponse response : stack)
+			if(response != this)
+				response.applyOverlay();
+	}
+	
+	/**
+	 * @return the overlays stacked with this one, including it, in the order 
+	 * 				they were applied
+	 */
+	private List<AsyncResponse> getStack() {
+		List<AsyncResponse> applied = getOverlays();
+		boolean[] stacked = new boolean[applied.size()];
+		stacked[applied.indexOf(this)] = true;
+		
+		//Overlays which overlap any overlay in the stack join it, until no
+		//more do
+		boolean grown = true;
+		while(grown) {
+			grown = false;
+			for(int i = 0; i < applied.size(); i++) {
+				for(int j = 0; j < applied.size() && !stacked[i]; j++) {
+					if(stacked[j] && applied.get(i).overlaps(applied.get(j))) {
+						stacked[i] = true;
+						grown = true;
+					}
+				}
+			}
+		}
+		
+		List<AsyncResponse> stack = new ArrayList<AsyncResponse>();
+		for(int i = 0; i < applied.size(); i++)
+			if(stacked[i])
+				stack.add(applied.get(i));
+		return stack;
+	}
+	
+	/**
+	 * @param other - the response to compare with
+	 * @return true if the two predict the same model, or models under one
+	 * 				another
+	 */
+	private boolean overlaps(AsyncResponse other) {
+		for(ModelUpdate mine : request.getPredictions()) {
+			Path<?,?,?> a = mine.getTarget().ignoreTerminal();
+			for(ModelUpdate theirs : other.request.getPredictions()) {
+				Path<?,?,?> b = theirs.getTarget().ignoreTerminal();
+				if(a.startsWith(b) || b.startsWith(a))
+					return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return the responses whose overlays are applied, forgetting those 
+	 * 				applied to a data root which has since been replaced
+	 */
+	private static List<AsyncResponse> getOverlays() {
+		if(overlaysRoot != DDMVC.getDataRoot()) {
+			overlays.clear();
+			overlaysRoot = DDMVC.getDataRoot();
+		}
+		return overlays;
+	}
+	
+	private void complete() {
+		if(completed)
+			throw new IllegalStateException("The response has already been " +
+					"completed.");
+		completed = true;
+	}
 
 }
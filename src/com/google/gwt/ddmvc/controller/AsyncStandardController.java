@@ -0,0 +1,194 @@
+package com.google.gwt.ddmvc.controller;
+
+import java.util.List;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.TaskExecutor;
+import com.google.gwt.ddmvc.event.AppEvent;
+
+/**
+ * A StandardController whose validation takes long enough that it should not
+ * hold up the run-loop, such as checking that a name is unique against a
+ * large index, or asking the server.
+ * 
+ * Each event is first validated by validate(...), as usual, which should only
+ * perform the cheap checks.  If it passes, a Validation is started with
+ * validateAsync(...), either on the executor, or directly if there is none,
+ * in which case validateAsync(...) is expected to hand the work off itself.
+ * Validations of different events are independent, and may be in progress at
+ * the same time.
+ * 
+ * Once a validation completes, its outcome is applied at the start of the
+ * next run-loop: onValidationFailure(...) is called if there were errors, and
+ * otherwise execute(...) is, and the request it returns is sent along with
+ * the requests of that run-loop.  Events are executed in the order their
+ * validations complete.
+ */
+public abstract class AsyncStandardController extends StandardController {
+
+	/**
+	 * A handle on the validation of a single event, used to deliver its outcome
+	 */
+	public class Validation {
+	
+		private AppEvent event;
+		private boolean finished;
+		
+		private Validation(AppEvent event) {
+			this.event = event;
+			this.finished = false;
+		}
+		
+		/**
+		 * @return the event being validated
+		 */
+		public AppEvent getEvent() {
+			return event;
+		}
+		
+		/**
+		 * Deliver the outcome of the validation, to be applied at the start of
+		 * the next run-loop.  Ignored if already finished.
+		 * @param errors - the validation errors, null or empty if it passed
+		 */
+		public void complete(final List<ValidationError> errors) {
+			if(!finish())
+				return;
+			
+			DDMVC.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					applyOutcome(event, errors);
+				}
+			});
+		}
+		
+		/**
+		 * Deliver an exception encountered while validating.  The event is not
+		 * executed, and the exception is reported by the next run-loop.  Ignored
+		 * if already finished.
+		 * @param exception - the exception encountered
+		 */
+		public void fail(final RuntimeException exception) {
+			if(!finish())
+				return;
+			
+			DDMVC.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					pending--;
+					event.release();
+					throw exception;
+				}
+			});
+		}
+		
+		private boolean finish() {
+			if(finished)
+				return false;
+			finished = true;
+			return true;
+		}
+	
+	}
+	
+	private TaskExecutor executor;
+	private int pending;
+	
+	/**
+	 * Instantiate a new AsyncStandardController which starts its validations
+	 * directly
+	 */
+	public AsyncStandardController() {
+		this(null);
+	}
+	
+	/**
+	 * Instantiate a new AsyncStandardController which starts its validations
+	 * on an executor
+	 * @param executor - the executor to run validateAsync(...) on, or null to
+	 * 				run it directly
+	 */
+	public AsyncStandardController(TaskExecutor executor) {
+		this.executor = executor;
+		this.pending = 0;
+	}
+	
+	/**
+	 * Perform the expensive validation of an event, delivering the outcome
+	 * through the validation handle, now or later.
+	 * @param validation - the handle to deliver the outcome to
+	 */
+	protected abstract void validateAsync(Validation validation);
+	
+	/**
+	 * @return the number of validations which have started, and whose outcome
+	 * 				has not been applied yet
+	 */
+	public int getPendingValidations() {
+		return pending;
+	}
+	
+	/**
+	 * Validate the event synchronously, and then start the asynchronous
+	 * validation if it passed.  The request, if any, is submitted later.
+	 */
+	@Override
+	public ServerRequest respondToEvent(AppEvent event) {
+		List<ValidationError> errors = validate(event);
+		if(errors != null && errors.size() > 0) {
+			onValidationFailure(event, errors);
+			return null;
+		}
+		
+		//The event is held until the outcome has been applied
+		pending++;
+		event.retain();
+		final Validation validation = new Validation(event);
+		if(executor == null) {
+			run(validation);
+			return null;
+		}
+		
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				AsyncStandardController.this.run(validation);
+			}
+		}, 0);
+		return null;
+	}
+	
+	/**
+	 * Run a validation, failing it if it throws
+	 * @param validation - the validation to run
+	 */
+	private void run(Validation validation) {
+		try {
+			validateAsync(validation);
+		} catch(RuntimeException e) {
+			validation.fail(e);
+		}
+	}
+	
+	/**
+	 * Apply the outcome of a validation
+	 * @param event - the event validated
+	 * @param errors - the validation errors, null or empty if it passed
+	 */
+	private void applyOutcome(AppEvent event, List<ValidationError> errors) {
+		pending--;
+		try {
+			if(errors != null && errors.size() > 0) {
+				onValidationFailure(event, errors);
+				return;
+			}
+			
+			ServerRequest request = execute(event);
+			if(request != null)
+				DDMVC.submitRequest(request, this, event);
+		} finally {
+			event.release();
+		}
+	}
+
+}
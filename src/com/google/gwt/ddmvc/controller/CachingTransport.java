@@ -0,0 +1,397 @@
+package com.google.gwt.ddmvc.controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.TaskExecutor;
+import com.google.gwt.ddmvc.model.Path;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.model.update.SetValue;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+/**
+ * A RequestTransport which stands in front of another, so that identical
+ * requests reach the server as seldom as possible.  Requests are identical
+ * if they are of the same class and have equal signatures; requests without
+ * a signature are always passed on.
+ * 
+ * A request identical to one which is still awaiting its answer is not sent,
+ * but coalesced onto it, and succeeds or fails along with it, without
+ * applying the answer a second time.  Successful answers are then 
+ * remembered, up to a number of entries and for a time to live, and an 
+ * identical request which arrives in the meantime succeeds at once, in the
+ * same run-loop, applying the cached answer again.
+ * 
+ * ModelUpdates are not safe to apply twice, since list updates would be 
+ * repeated, and updates such as SetValue record what they replaced.  So once
+ * an answer has been applied, the cache takes a snapshot of the values it
+ * left the models it updated with, and a cached request applies a new
+ * SetValue for each of them.  Lists are copied, both into the snapshot and
+ * out of it; other values are shared.  Models the answer deleted are not
+ * deleted again.  The cache should be invalidated or cleared whenever the
+ * data it answered for may have changed on the server.
+ */
+public class CachingTransport implements RequestTransport {
+
+	/**
+	 * Value of the time to live which never expires answers
+	 */
+	public static final int FOREVER = -1;
+	
+	/**
+	 * Identifies requests of the same class with equal signatures
+	 */
+	private static class Signature {
+	
+		private Class<?> type;
+		private Object key;
+		
+		private Signature(Class<?> type, Object key) {
+			this.type = type;
+			this.key = key;
+		}
+		
+		@Override
+		public int hashCode() {
+			return type.hashCode() * 31 + key.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof Signature))
+				return false;
+			Signature that = (Signature) other;
+			return type == that.type && key.equals(that.key);
+		}
+		
+	}
+	
+	/**
+	 * The values an answer left the models it updated with, and when
+	 */
+	private static class Answer {
+		
+		private long time;
+		private List<Path<?,?,?>> targets;
+		private List<Object> values;
+		
+		private Answer(long time) {
+			this.time = time;
+			this.targets = new ArrayList<Path<?,?,?>>();
+			this.values = new ArrayList<Object>();
+		}
+		
+	}
+	
+	private RequestTransport delegate;
+	private int maxEntries;
+	private int ttlMillis;
+	private TaskExecutor clock;
+	
+	//The answers, from least to most recently used
+	private LinkedHashMap<Signature, Answer> cache;
+	
+	//The requests waiting on each request sent
+	private Map<Signature, List<ServerRequest>> inFlight;
+	
+	private int hits;
+	private int misses;
+	private int coalesced;
+	private int evictions;
+	
+	/**
+	 * Instantiate a new CachingTransport which reads time from the system
+	 * @param delegate - the transport to send requests through
+	 * @param maxEntries - the number of answers to cache, 0 to only coalesce
+	 * @param ttlMillis - how long answers are cached for, or FOREVER
+	 */
+	public CachingTransport(RequestTransport delegate, int maxEntries,
+			int ttlMillis) {
+		this(delegate, maxEntries, ttlMillis, null);
+	}
+	
+	/**
+	 * @param delegate - the transport to send requests through
+	 * @param maxEntries - the number of answers to cache, 0 to only coalesce
+	 * @param ttlMillis - how long answers are cached for, or FOREVER
+	 * @param clock - the executor whose clock to read time from, or null to
+	 * 				read it from the system
+	 */
+	public CachingTransport(RequestTransport delegate, int maxEntries,
+			int ttlMillis, TaskExecutor clock) {
+		if(maxEntries < 0)
+			throw new IllegalArgumentException("Entries must not be negative.");
+		if(ttlMillis < 0 && ttlMillis != FOREVER)
+			throw new IllegalArgumentException("Time to live must not be " +
+					"negative, unless it is FOREVER.");
+		
+		this.delegate = delegate;
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+		this.cache = new LinkedHashMap<Signature, Answer>(16, 0.75f, true);
+		this.inFlight = new HashMap<Signature, List<ServerRequest>>();
+	}
+	
+	//
+	// Cache Management
+	//
+	
+	/**
+	 * Drop every cached answer, such as after the data on the server changed
+	 */
+	public void clear() {
+		cache.clear();
+	}
+	
+	/**
+	 * Drop the cached answer to a request, if there is one
+	 * @param request - a request with a signature
+	 */
+	public void invalidate(ServerRequest request) {
+		Signature signature = signature(request);
+		if(signature != null)
+			cache.remove(signature);
+	}
+	
+	/**
+	 * @return the number of answers cached
+	 */
+	public int size() {
+		return cache.size();
+	}
+	
+	/**
+	 * @return the number of requests waiting on an answer from the server
+	 */
+	public int getInFlight() {
+		return inFlight.size();
+	}
+	
+	//
+	// Metrics
+	//
+	
+	/**
+	 * @return the number of requests answered from the cache
+	 */
+	public int getHits() {
+		return hits;
+	}
+	
+	/**
+	 * @return the number of requests with a signature sent to the server
+	 */
+	public int getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * @return the number of requests coalesced onto an identical request
+	 */
+	public int getCoalesced() {
+		return coalesced;
+	}
+	
+	/**
+	 * @return the number of answers dropped to stay within the bound, or
+	 * 				because they expired
+	 */
+	public int getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * Reset all metrics
+	 */
+	public void resetMetrics() {
+		hits = 0;
+		misses = 0;
+		coalesced = 0;
+		evictions = 0;
+	}
+	
+	//
+	// RequestTransport Implementation
+	//
+	
+	@Override
+	public void send(List<ServerRequest> batch) {
+		List<ServerRequest> sent = new ArrayList<ServerRequest>(batch.size());
+		List<ServerRequest> answered = null;
+		List<Answer> answers = null;
+		
+		for(ServerRequest request : batch) {
+			final Signature signature = signature(request);
+			if(signature == null) {
+				sent.add(request);
+				continue;
+			}
+			
+			Answer answer = lookup(signature);
+			if(answer != null) {
+				if(answered == null) {
+					answered = new ArrayList<ServerRequest>();
+					answers = new ArrayList<Answer>();
+				}
+				answered.add(request);
+				answers.add(answer);
+				hits++;
+				continue;
+			}
+			
+			List<ServerRequest> waiting = inFlight.get(signature);
+			if(waiting != null) {
+				waiting.add(request);
+				coalesced++;
+				continue;
+			}
+			
+			misses++;
+			inFlight.put(signature, new ArrayList<ServerRequest>());
+			request.getResponse().addListener(
+					new AsyncCallback<List<ModelUpdate>>() {
+				@Override
+				public void onSuccess(final List<ModelUpdate> result) {
+					//Runs after the answer has been applied
+					if(maxEntries > 0)
+						DDMVC.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								store(signature, snapshot(result));
+							}
+						});
+					
+					for(ServerRequest follower : inFlight.remove(signature))
+						if(!follower.getResponse().isCompleted())
+							follower.getResponse().onSuccess(null);
+				}
+				
+				@Override
+				public void onFailure(Throwable caught) {
+					for(ServerRequest follower : inFlight.remove(signature))
+						if(!follower.getResponse().isCompleted())
+							follower.getResponse().onFailure(caught);
+				}
+			});
+			sent.add(request);
+		}
+		
+		if(sent.size() > 0)
+			delegate.send(sent);
+		
+		if(answered != null)
+			for(int i = 0; i < answered.size(); i++)
+				answered.get(i).getResponse().onSuccessNow(
+						replay(answers.get(i)));
+	}
+	
+	//
+	// Helpers
+	//
+	
+	/**
+	 * @param request - the request
+	 * @return the signature of the request, or null if it has none
+	 */
+	private static Signature signature(ServerRequest request) {
+		Object key = request.getSignature();
+		if(key == null)
+			return null;
+		return new Signature(request.getClass(), key);
+	}
+	
+	/**
+	 * @param signature - the signature to look up
+	 * @return the answer cached, or null if there is none or it has expired
+	 */
+	private Answer lookup(Signature signature) {
+		Answer answer = cache.get(signature);
+		if(answer == null)
+			return null;
+		
+		if(ttlMillis != FOREVER && now() - answer.time >= ttlMillis) {
+			cache.remove(signature);
+			evictions++;
+			return null;
+		}
+		return answer;
+	}
+	
+	/**
+	 * Cache an answer, dropping the least recently used ones if need be
+	 * @param signature - the signature of the request answered
+	 * @param answer - the snapshot of the answer
+	 */
+	private void store(Signature signature, Answer answer) {
+		cache.put(signature, answer);
+		Iterator<Answer> it = cache.values().iterator();
+		while(cache.size() > maxEntries) {
+			it.next();
+			it.remove();
+			evictions++;
+		}
+	}
+	
+	/**
+	 * Take a snapshot of the values of the models an answer updated, once it
+	 * has been applied
+	 * @param result - the updates returned, may be null
+	 * @return the snapshot
+	 */
+	private Answer snapshot(List<ModelUpdate> result) {
+		Answer answer = new Answer(now());
+		if(result == null)
+			return answer;
+		
+		for(ModelUpdate update : result) {
+			Path<?,?,?> target = update.getTarget().ignoreTerminal();
+			if(!DDMVC.hasPath(target) || contains(answer.targets, target))
+				continue;
+			answer.targets.add(target);
+			answer.values.add(copy(DDMVC.getValue(target)));
+		}
+		return answer;
+	}
+	
+	/**
+	 * @param answer - the snapshot of an answer
+	 * @return new updates setting every model in the snapshot to its value
+	 */
+	private static List<ModelUpdate> replay(Answer answer) {
+		List<ModelUpdate> updates = 
+			new ArrayList<ModelUpdate>(answer.targets.size());
+		for(int i = 0; i < answer.targets.size(); i++)
+			updates.add(new SetValue(answer.targets.get(i), 
+					copy(answer.values.get(i))));
+		return updates;
+	}
+	
+	private static boolean contains(List<Path<?,?,?>> paths, 
+			Path<?,?,?> path) {
+		for(Path<?,?,?> other : paths)
+			if(other.equals(path))
+				return true;
+		return false;
+	}
+	
+	/**
+	 * @param value - a value of a model
+	 * @return a copy of the value if it is a list, otherwise the value
+	 */
+	private static Object copy(Object value) {
+		if(value instanceof List)
+			return new ArrayList<Object>((List<?>) value);
+		return value;
+	}
+	
+	private long now() {
+		return clock == null ? System.currentTimeMillis() 
+				: clock.currentTimeMillis();
+	}
+
+}
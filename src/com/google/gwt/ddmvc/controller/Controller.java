@@ -18,6 +18,32 @@ public abstract class Controller extends EventSource {
 	 */
 	public abstract ServerRequest respondToEvent(AppEvent event);
 	
+	/**
+	 * Respond to a successful server request.  This will be called in the 
+	 * run-loop after the request's response arrives, once the ModelUpdates 
+	 * it returned have been applied.  By default, it does nothing.
+	 * @param event - the event that led to the request
+	 */
+	protected void onRequestSuccess(AppEvent event) {}
+	
+	/**
+	 * Respond to a failure of a server request.  This will be called in the
+	 * run-loop after the failure arrives.  By default, it calls 
+	 * onRequestFailure(event).
+	 * @param event - the event that led to the request
+	 * @param caught - the cause of the failure
+	 */
+	protected void onRequestFailure(AppEvent event, Throwable caught) {
+		onRequestFailure(event);
+	}
+	
+	/**
+	 * Respond to a failure of a server request, when the cause is of no 
+	 * interest.  By default, it does nothing.
+	 * @param event - the event that led to the request
+	 */
+	protected void onRequestFailure(AppEvent event) {}
+	
 	/**
 	 * Subscribe to a particular type of event.  Generally would be best to call
 	 * in the constructor.  Convenient alternative to DDMVC.subscribeToEvent(...)
@@ -0,0 +1,143 @@
+package com.google.gwt.ddmvc.controller;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.google.gwt.ddmvc.TaskExecutor;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+
+/**
+ * A RequestTransport which answers requests in the same process, by means of
+ * handlers registered for each type of request.  It stands in for the server
+ * in tests, and in applications which are not yet talking to one.
+ * 
+ * A handler registered for a type of request also handles its subclasses.
+ * Requests without a handler, and requests whose handler throws, fail.
+ * 
+ * Without an executor, batches are answered from within send(...), as soon
+ * as the events phase ends.  With one, each batch is answered by a single 
+ * task after the given delay, much like a real round trip.
+ */
+public class InProcessTransport implements RequestTransport {
+
+	/**
+	 * Answers a single type of request
+	 */
+	public interface RequestHandler {
+	
+		/**
+		 * @param request - the request to answer
+		 * @return the updates to apply in response, may be null
+		 * @throws Exception - to fail the request
+		 */
+		public List<ModelUpdate> handle(ServerRequest request) throws Exception;
+		
+	}
+	
+	private Map<Class<?>, RequestHandler> handlers;
+	private TaskExecutor executor;
+	private int delayMillis;
+	private int roundTrips;
+	private int requestsHandled;
+	
+	/**
+	 * Instantiate a new InProcessTransport which answers batches immediately
+	 */
+	public InProcessTransport() {
+		this(null, 0);
+	}
+	
+	/**
+	 * @param executor - the executor to answer batches on, or null to answer
+	 * 				them immediately
+	 * @param delayMillis - the delay before each batch is answered
+	 */
+	public InProcessTransport(TaskExecutor executor, int delayMillis) {
+		this.handlers = new HashMap<Class<?>, RequestHandler>();
+		this.executor = executor;
+		this.delayMillis = delayMillis;
+		this.roundTrips = 0;
+		this.requestsHandled = 0;
+	}
+	
+	/**
+	 * Register the handler of a type of request, replacing any previous one
+	 * @param requestType - the type of request, including its subclasses
+	 * @param handler - the handler
+	 */
+	public void setHandler(Class<? extends ServerRequest> requestType,
+			RequestHandler handler) {
+		handlers.put(requestType, handler);
+	}
+	
+	/**
+	 * @return the number of batches received
+	 */
+	public int getRoundTrips() {
+		return roundTrips;
+	}
+	
+	/**
+	 * @return the number of requests answered, successfully or not
+	 */
+	public int getRequestsHandled() {
+		return requestsHandled;
+	}
+	
+	@Override
+	public void send(final List<ServerRequest> batch) {
+		roundTrips++;
+		if(executor == null) {
+			answer(batch);
+			return;
+		}
+		
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				answer(batch);
+			}
+		}, delayMillis);
+	}
+	
+	/**
+	 * Answer every request of a batch, in order
+	 * @param batch - the requests to answer
+	 */
+	private void answer(List<ServerRequest> batch) {
+		for(ServerRequest request : batch) {
+			requestsHandled++;
+			AsyncResponse response = request.getResponse();
+			RequestHandler handler = findHandler(request.getClass());
+			if(handler == null) {
+				response.onFailure(new IllegalStateException("No handler for " +
+						request.getClass().getName() + "."));
+				continue;
+			}
+			
+			List<ModelUpdate> result;
+			try {
+				result = handler.handle(request);
+			} catch(Exception e) {
+				response.onFailure(e);
+				continue;
+			}
+			response.onSuccess(result);
+		}
+	}
+	
+	/**
+	 * @param requestType - the concrete type of request
+	 * @return the handler of the type or its closest superclass, or null
+	 */
+	private RequestHandler findHandler(Class<?> requestType) {
+		for(Class<?> type = requestType; type != null; 
+				type = type.getSuperclass()) {
+			RequestHandler handler = handlers.get(type);
+			if(handler != null)
+				return handler;
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.google.gwt.ddmvc.controller;
+
+import java.util.List;
+
+/**
+ * A RequestTransport carries batches of ServerRequests to the server, such as
+ * by a single GWT-RPC call.  Each batch holds all of the requests returned
+ * by controllers during one run-loop, and should take one round trip.
+ * 
+ * The transport must eventually complete the response of every request in
+ * the batch, with either onSuccess(...) or onFailure(...).  It may do so
+ * from within send(...), or at any later time.
+ */
+public interface RequestTransport {
+
+	/**
+	 * Send a batch of requests
+	 * @param batch - the requests, in the order they were returned
+	 */
+	public void send(List<ServerRequest> batch);
+	
+}
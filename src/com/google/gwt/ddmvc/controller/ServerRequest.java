@@ -1,5 +1,103 @@
 package com.google.gwt.ddmvc.controller;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+
+/**
+ * A ServerRequest is returned by a controller in response to an event, to 
+ * ask the server for something.  Subclass it to carry whatever the server
+ * needs to know.
+ * 
+ * The requests returned during a run-loop are sent together, in one round
+ * trip, through the RequestTransport installed in DDMVC.  The transport
+ * completes each request through its response, and the ModelUpdates the 
+ * server returns are applied in the following run-loop, after which the
+ * controller's onRequestSuccess(...) or onRequestFailure(...) is called.
+ * 
+ * The origin of the request, being the controller and event it came from,
+ * is set by DDMVC, and cannot be changed once set.
+ * 
+ * A request may carry predictions of the updates the server will make, which
+ * are applied as soon as the request is returned, so that the user sees the
+ * outcome without waiting for the round trip.  See AsyncResponse for how they
+ * are reconciled with the answer.
+ */
 public class ServerRequest {
 
+	private Controller controller;
+	private AppEvent event;
+	private AsyncResponse response;
+	private List<ModelUpdate> predictions;
+	
+	/**
+	 * Get the signature of this request, which identifies what it asks of the
+	 * server.  Requests of the same class with equal signatures are taken to
+	 * be identical, so a CachingTransport may answer them all with a single
+	 * round trip, or with a cached answer.  Signatures must implement equals
+	 * and hashCode.
+	 * @return the signature, null by default, which is never identical to any
+	 * 				other request
+	 */
+	public Object getSignature() {
+		return null;
+	}
+	
+	/**
+	 * Predict an update the server will make.  Predictions must be made before
+	 * the request is returned to DDMVC.
+	 * @param update - the update to apply until the server answers
+	 */
+	public void predict(ModelUpdate update) {
+		if(predictions == null)
+			predictions = new ArrayList<ModelUpdate>();
+		predictions.add(update);
+	}
+	
+	/**
+	 * @return the predicted updates, in the order they were made
+	 */
+	public List<ModelUpdate> getPredictions() {
+		if(predictions == null)
+			return Collections.emptyList();
+		return predictions;
+	}
+	
+	/**
+	 * @return the controller which returned this request
+	 */
+	public Controller getController() {
+		return controller;
+	}
+	
+	/**
+	 * @return the event which led to this request
+	 */
+	public AppEvent getEvent() {
+		return event;
+	}
+	
+	/**
+	 * @return the response through which the transport completes this request
+	 */
+	public AsyncResponse getResponse() {
+		return response;
+	}
+	
+	/**
+	 * Set the origin of the request.
+	 * Note - this will have no effect if the origin has already been set.
+	 * @param controller - the controller which returned this request
+	 * @param event - the event which led to this request
+	 */
+	public void setOrigin(Controller controller, AppEvent event) {
+		if(this.controller == null) {
+			this.controller = controller;
+			this.event = event;
+			this.response = new AsyncResponse(this);
+		}
+	}
+	
 }
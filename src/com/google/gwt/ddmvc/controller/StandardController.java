@@ -53,6 +53,9 @@ public abstract class StandardController extends Controller {
 	 * Return the ServerRequest (if any) to make.  The request will be sent at
 	 * the end of the method call and will invoke this controller's server
 	 * response methods when it is received.
+	 * The changes the server is expected to make may be predicted on the
+	 * request, so that they are shown immediately, and are rolled back if the
+	 * request fails.
 	 * This is the only method whose implementation is absolutely necessary
 	 * @param event - the event the is being executed
 	 * @return the request to be sent to the server, or null if none necessary
@@ -66,6 +69,7 @@ public abstract class StandardController extends Controller {
 	 * automatically, regardless.
 	 * @param event - the event that led to the request
 	 */
+	@Override
 	protected void onRequestSuccess(AppEvent event) {}
 	
 	/**
@@ -76,6 +80,7 @@ public abstract class StandardController extends Controller {
 	 * message to the user and roll back any changes made in execute().
 	 * @param event - the event that failed
 	 */
+	@Override
 	protected void onRequestFailure(AppEvent event) {}
 	
 }
@@ -14,19 +14,106 @@ package com.google.gwt.ddmvc.event;
  * explicitly set the source, as this will be accomplished within the
  * EventSource class.  Also, once the source has been set, it cannot be set
  * to anything else.
+ * 
+ * High-frequency events may opt in to conflation by returning a key from
+ * getConflationKey().  Of the events waiting to be dispatched by a run-loop,
+ * those of the same class with equal keys are combined into one by merge(...),
+ * which is dispatched in place of the first of them.  By default, the latest
+ * event simply wins.
+ * 
+ * High-rate events may also be taken from an EventPool, and are then returned
+ * to it, reset, as soon as the run-loop has dispatched them.  Whatever holds 
+ * on to a pooled event beyond its dispatch must retain() it, and release() it
+ * when done.  Events which are not pooled ignore retain() and release().
  */
 public abstract class AppEvent {
 
 	private EventSource source;
+	private EventPool<?> pool;
+	private int references;
 	
 	public AppEvent() {
 		source = null;
+		pool = null;
+		references = 0;
 	}
 
 	public EventSource getSource() {
 		return source;
 	}
 	
+	/**
+	 * Get the key by which this event is conflated with other events of the
+	 * same class, such as the id of the object whose position changed.
+	 * @return the conflation key, or null if this event is never conflated, 
+	 * 				which is the default
+	 */
+	public Object getConflationKey() {
+		return null;
+	}
+	
+	/**
+	 * Combine this event with a later event of the same class and conflation
+	 * key.  Override this to accumulate, rather than replace, the earlier
+	 * event, such as to sum the deltas of two scroll events.
+	 * @param later - the later event
+	 * @return the event to dispatch in place of both, the later one by default
+	 */
+	public AppEvent merge(AppEvent later) {
+		return later;
+	}
+	
+	/**
+	 * @return true if this event was taken from a pool
+	 */
+	public boolean isPooled() {
+		return pool != null;
+	}
+	
+	/**
+	 * Hold on to a pooled event beyond its dispatch, so that it is not reused
+	 * until it is released again
+	 */
+	public void retain() {
+		if(pool != null)
+			references++;
+	}
+	
+	/**
+	 * Let go of a pooled event.  Once every holder has let go, it is reset and
+	 * returned to its pool.
+	 * @throws IllegalStateException if it has already been returned
+	 */
+	public void release() {
+		if(pool == null)
+			return;
+		if(references <= 0)
+			throw new IllegalStateException("The event has already been " +
+					"returned to its pool.");
+		
+		references--;
+		if(references == 0)
+			pool.recycle(this);
+	}
+	
+	/**
+	 * Clear the state of the event, so that it can be reused by a pool.
+	 * Override this to clear the fields of a pooled event, calling 
+	 * super.reset().
+	 */
+	protected void reset() {
+		source = null;
+	}
+	
+	/**
+	 * Hand the event out of a pool, held once, by whoever fires it
+	 * @param from - the pool handing it out
+	 */
+	void obtained(EventPool<?> from) {
+		pool = from;
+		references = 1;
+	}
+	
 	/**
 	 * Set the source of the event to source.
 	 * Note - this will have no effect if the source has already been set.
@@ -0,0 +1,119 @@
+package com.google.gwt.ddmvc.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An EventPool reuses the instances of a type of AppEvent, so that a
+ * high-rate stream of them, such as pointer moves or ticks, can be fired 
+ * without allocating an event each time.
+ * 
+ * Take an event with obtain(), fill it in, and fire it.  The run-loop returns
+ * it to the pool once it has been dispatched, where it is reset() and kept
+ * for the next obtain().  At most maxFree events are kept; any more are left 
+ * to the garbage collector.  A pool must only be used on the thread which
+ * performs the run-loop.
+ * 
+ * Generally, this will be implemented as an anonymous class, or a static 
+ * field of the event class.
+ * @param <EventType> - the type of event pooled
+ */
+public abstract class EventPool<EventType extends AppEvent> {
+
+	/**
+	 * The default number of free events kept
+	 */
+	public static final int DEFAULT_MAX_FREE = 256;
+	
+	private List<EventType> free;
+	private int maxFree;
+	private int created;
+	private int reused;
+	private int recycled;
+	
+	/**
+	 * Instantiate a new EventPool keeping the default number of free events
+	 */
+	public EventPool() {
+		this(DEFAULT_MAX_FREE);
+	}
+	
+	/**
+	 * @param maxFree - the number of free events to keep
+	 */
+	public EventPool(int maxFree) {
+		if(maxFree < 0)
+			throw new IllegalArgumentException("Size must not be negative.");
+		this.free = new ArrayList<EventType>();
+		this.maxFree = maxFree;
+	}
+	
+	/**
+	 * Create a new, blank event, when there is no free one to reuse
+	 * @return the new event
+	 */
+	protected abstract EventType create();
+	
+	/**
+	 * Take an event from the pool, creating one if need be
+	 * @return a blank event, held by the caller until it is fired
+	 */
+	public EventType obtain() {
+		EventType event;
+		if(free.size() > 0) {
+			event = free.remove(free.size() - 1);
+			reused++;
+		}
+		else {
+			event = create();
+			created++;
+		}
+		event.obtained(this);
+		return event;
+	}
+	
+	//
+	// Metrics
+	//
+	
+	/**
+	 * @return the number of free events waiting to be reused
+	 */
+	public int getFree() {
+		return free.size();
+	}
+	
+	/**
+	 * @return the number of events created
+	 */
+	public int getCreated() {
+		return created;
+	}
+	
+	/**
+	 * @return the number of times an event was reused
+	 */
+	public int getReused() {
+		return reused;
+	}
+	
+	/**
+	 * @return the number of events returned to the pool
+	 */
+	public int getRecycled() {
+		return recycled;
+	}
+	
+	/**
+	 * Return an event released by every holder
+	 * @param event - the event, which came from this pool
+	 */
+	@SuppressWarnings("unchecked")
+	void recycle(AppEvent event) {
+		recycled++;
+		event.reset();
+		if(free.size() < maxFree)
+			free.add((EventType) event);
+	}
+
+}
@@ -14,6 +14,11 @@ public interface Observer {
 
 	/**
 	 * Notify this observer that the model has changed.
+	 * Note - the collection belongs to the run-loop, which clears and reuses it
+	 * once this method returns, so it must not be held onto; copy it if the
+	 * updates are needed later.  Earlier versions passed a new collection on
+	 * every notification, so observers which kept it must be changed to copy
+	 * it.
 	 * @param updates - the collection of updates applied
 	 */
 	public void modelChanged(Collection<ModelUpdate> updates);
@@ -0,0 +1,150 @@
+package com.google.gwt.ddmvc.event;
+
+import java.util.Collection;
+
+/**
+ * An ObserverSet holds distinct observers, compared by identity, in the order
+ * in which they were first added.
+ *
+ * It is meant to be filled and cleared over and over, such as with the
+ * observers affected by each update.  A HashSet allocates an entry for every
+ * observer added, whereas an ObserverSet keeps its arrays when it is cleared,
+ * so once it has held its largest batch it allocates nothing.  Storage beyond
+ * a high-water limit is released when it is cleared.
+ */
+public class ObserverSet {
+
+	private static final int INITIAL_CAPACITY = 16;
+	
+	//The most observers whose storage is kept when the set is cleared
+	private static final int MAX_RETAINED_CAPACITY = 1024;
+	
+	private Observer[] observers;
+	private int[] positions;
+	private int size;
+	
+	//Open-addressing table holding index + 1, or 0 if empty
+	private int[] index;
+	
+	/**
+	 * Instantiate a new, empty ObserverSet
+	 */
+	public ObserverSet() {
+		allocate(INITIAL_CAPACITY);
+		size = 0;
+	}
+	
+	/**
+	 * @return the number of observers in the set
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @param i - the index of the observer, between 0 and size() - 1
+	 * @return the observer added i-th
+	 */
+	public Observer get(int i) {
+		return observers[i];
+	}
+	
+	/**
+	 * @param observer - the observer to look for
+	 * @return true if the observer is in the set
+	 */
+	public boolean contains(Observer observer) {
+		return index[find(observer)] != 0;
+	}
+	
+	/**
+	 * Add an observer, if it is not in the set already
+	 * @param observer - the observer to add
+	 * @return true if it was added
+	 */
+	public boolean add(Observer observer) {
+		int position = find(observer);
+		if(index[position] != 0)
+			return false;
+		
+		if(size == observers.length) {
+			grow();
+			position = find(observer);
+		}
+		observers[size] = observer;
+		positions[size] = position;
+		index[position] = ++size;
+		return true;
+	}
+	
+	/**
+	 * Add every observer of a collection which is not in the set already
+	 * @param toAdd - the observers to add
+	 */
+	public void addAll(Collection<Observer> toAdd) {
+		if(toAdd.isEmpty())
+			return;
+		for(Observer observer : toAdd)
+			add(observer);
+	}
+	
+	/**
+	 * Remove every observer, keeping the allocated storage up to the
+	 * high-water limit
+	 */
+	public void clear() {
+		if(observers.length > MAX_RETAINED_CAPACITY) {
+			allocate(MAX_RETAINED_CAPACITY);
+			size = 0;
+			return;
+		}
+		
+		for(int i = 0; i < size; i++) {
+			index[positions[i]] = 0;
+			observers[i] = null;
+		}
+		size = 0;
+	}
+	
+	//
+	// Table management
+	//
+	
+	/**
+	 * Find the position of an observer in the index table, or the empty
+	 * position at which it would be inserted
+	 * @param observer - the observer to look for
+	 * @return the position in the table
+	 */
+	private int find(Observer observer) {
+		int mask = index.length - 1;
+		int h = System.identityHashCode(observer);
+		int position = (h ^ (h >>> 16)) & mask;
+		while(index[position] != 0 && observers[index[position] - 1] != observer)
+			position = (position + 1) & mask;
+		return position;
+	}
+	
+	/**
+	 * @param capacity - the number of observers, a power of two
+	 */
+	private void allocate(int capacity) {
+		observers = new Observer[capacity];
+		positions = new int[capacity];
+		index = new int[capacity * 2];
+	}
+	
+	/**
+	 * Double the capacity, and re-index the observers
+	 */
+	private void grow() {
+		Observer[] old = observers;
+		allocate(old.length * 2);
+		for(int i = 0; i < size; i++) {
+			observers[i] = old[i];
+			positions[i] = find(old[i]);
+			index[positions[i]] = i + 1;
+		}
+	}
+
+}
@@ -0,0 +1,267 @@
+package com.google.gwt.ddmvc.model;
+
+import java.util.Collection;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.TaskExecutor;
+import com.google.gwt.ddmvc.model.update.ExceptionComputed;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+
+/**
+ * Represents a value which depends on some other model(s), and which takes
+ * long enough to compute that it should not hold up the run-loop.
+ * 
+ * Whenever its dependencies change, a new Computation is started, either on
+ * the executor, or directly if there is none, in which case computeAsync(...)
+ * is expected to hand the work off itself, for instance to a server request.
+ * The result is applied at the start of the next run-loop, and only then are
+ * the dependents of this model notified.  In the meantime, readers see the
+ * previous value, or PENDING if there is none yet.
+ * 
+ * A computation which is superseded by a newer one is cancelled: it will not
+ * be started if it has not been yet, its result will be ignored, and 
+ * isCancelled() will return true so that it can stop early.
+ */
+public abstract class AsyncComputedModel extends ComputedModel {
+
+	/**
+	 * The value of an asynchronous model which has no result yet
+	 */
+	public static final Object PENDING = new Object() {
+		@Override
+		public String toString() {
+			return "PENDING";
+		}
+	};
+	
+	/**
+	 * A handle on a single computation, used to deliver its result
+	 */
+	public class Computation {
+		
+		private int generation;
+		private boolean finished;
+		
+		private Computation(int generation) {
+			this.generation = generation;
+			this.finished = false;
+		}
+		
+		/**
+		 * @return true if a newer computation has superseded this one
+		 */
+		public boolean isCancelled() {
+			return generation != AsyncComputedModel.this.generation;
+		}
+		
+		/**
+		 * Deliver the result of the computation, to be applied at the start of
+		 * the next run-loop.  Ignored if cancelled, or already finished.
+		 * @param result - the computed value
+		 */
+		public void complete(final Object result) {
+			if(!finish())
+				return;
+			
+			DDMVC.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					if(!isCancelled())
+						applyResult(result);
+				}
+			});
+		}
+		
+		/**
+		 * Deliver the failure of the computation, to be applied at the start of
+		 * the next run-loop.  Ignored if cancelled, or already finished.
+		 * @param exception - the exception encountered
+		 */
+		public void fail(final Exception exception) {
+			if(!finish())
+				return;
+			
+			DDMVC.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					if(!isCancelled())
+						applyFailure(exception);
+				}
+			});
+		}
+		
+		private boolean finish() {
+			if(finished || isCancelled())
+				return false;
+			finished = true;
+			return true;
+		}
+		
+	}
+	
+	private TaskExecutor executor;
+	private int generation;
+	private boolean started;
+	private boolean running;
+	private Object current;
+	private Exception error;
+	
+	/**
+	 * Instantiate a new AsyncComputedModel which starts its computations
+	 * directly
+	 */
+	public AsyncComputedModel() {
+		this(null);
+	}
+	
+	/**
+	 * Instantiate a new AsyncComputedModel which starts its computations on
+	 * an executor
+	 * @param executor - the executor to run computeAsync(...) on, or null to
+	 * 				run it directly
+	 */
+	public AsyncComputedModel(TaskExecutor executor) {
+		this.executor = executor;
+		this.generation = 0;
+		this.started = false;
+		this.running = false;
+		this.current = PENDING;
+		this.error = null;
+	}
+	
+	/**
+	 * Perform the computation, delivering the result through the computation
+	 * handle, now or later.  Dependencies should be read with this model as
+	 * the observer, as with computeValue() in a ComputedModel.
+	 * @param computation - the handle to deliver the result to
+	 */
+	public abstract void computeAsync(Computation computation);
+	
+	/**
+	 * Set if readers should see the previous value while a new one is being
+	 * computed, rather than PENDING.
+	 * @return true by default
+	 */
+	public boolean retainsPreviousValue() {
+		return true;
+	}
+	
+	/**
+	 * @return true if a computation is in progress
+	 */
+	public boolean isComputing() {
+		return running;
+	}
+	
+	/**
+	 * @return the exception delivered by the last computation, or null if it
+	 * 				succeeded
+	 */
+	public Exception getError() {
+		return error;
+	}
+	
+	//
+	// ComputedModel Overriding
+	//
+	
+	/**
+	 * @return the current value, without computing anything
+	 */
+	@Override
+	public final Object computeValue() {
+		return current;
+	}
+	
+	@Override
+	public boolean isLazy() {
+		return false;
+	}
+	
+	@Override
+	public Object myValue() {
+		if(!started)
+			start();
+		return current;
+	}
+	
+	@Override
+	public void modelChanged(Collection<ModelUpdate> updates) {
+		start();
+	}
+	
+	/**
+	 * The dependents of this model are only notified once a result is applied
+	 */
+	@Override
+	public boolean shouldCascade() {
+		return false;
+	}
+	
+	//
+	// Computation
+	//
+	
+	/**
+	 * Start a new computation, cancelling any computation in progress
+	 */
+	private void start() {
+		started = true;
+		running = true;
+		if(!retainsPreviousValue())
+			current = PENDING;
+		
+		final Computation computation = new Computation(++generation);
+		if(executor == null) {
+			run(computation);
+			return;
+		}
+		
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if(!computation.isCancelled())
+					AsyncComputedModel.this.run(computation);
+			}
+		}, 0);
+	}
+	
+	/**
+	 * Run a computation, failing it if it throws
+	 * @param computation - the computation to run
+	 */
+	private void run(Computation computation) {
+		try {
+			computeAsync(computation);
+		} catch(RuntimeException e) {
+			computation.fail(e);
+		}
+	}
+	
+	/**
+	 * Apply the result of the current computation, and notify the dependents
+	 * if it changed
+	 * @param result - the computed value
+	 */
+	private void applyResult(Object result) {
+		running = false;
+		Object previous = current;
+		boolean hadError = error != null;
+		current = result;
+		error = null;
+		
+		if(hadError || previous == PENDING || !isEquivalent(previous, result))
+			notifyObservers(getCascade(), UpdateLevel.VALUE);
+	}
+	
+	/**
+	 * Apply the failure of the current computation, and notify the dependents
+	 * @param exception - the exception encountered
+	 */
+	private void applyFailure(Exception exception) {
+		running = false;
+		error = exception;
+		notifyObservers(new ExceptionComputed(getPath(), exception), 
+				UpdateLevel.VALUE);
+	}
+	
+}
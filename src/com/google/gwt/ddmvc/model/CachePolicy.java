@@ -0,0 +1,78 @@
+package com.google.gwt.ddmvc.model;
+
+/**
+ * A CachePolicy decides when computed models drop their cached values, to
+ * bound the memory held by derived state which is no longer being read.  An
+ * evicted model simply recomputes its value the next time it is read, or the
+ * next time one of its dependencies changes.
+ * 
+ * Each computed model consults the policy returned by getCachePolicy(), which
+ * is the one installed in DDMVC by default.  Only the installed policy is told
+ * when run-loops finish.  By default, the installed policy is UNBOUNDED.
+ */
+public abstract class CachePolicy {
+
+	/**
+	 * The policy which never evicts anything
+	 */
+	public static final CachePolicy UNBOUNDED = new CachePolicy() {
+		@Override
+		protected void cached(ComputedModel model, Object value) {}
+		
+		@Override
+		protected void read(ComputedModel model) {}
+	};
+	
+	private int evictions;
+	
+	/**
+	 * Called whenever a computed model caches a new value
+	 * @param model - the model which cached the value
+	 * @param value - the value cached
+	 */
+	protected abstract void cached(ComputedModel model, Object value);
+	
+	/**
+	 * Called whenever a computed model returns its cached value
+	 * @param model - the model which was read
+	 */
+	protected abstract void read(ComputedModel model);
+	
+	/**
+	 * Called by DDMVC at the end of every completed run-loop, if this is the
+	 * installed policy.  Does nothing by default.
+	 */
+	public void runLoopFinished() {}
+	
+	/**
+	 * Drop the cached value of a model
+	 * @param model - the model to evict
+	 * @return true if a value was dropped, false if it had none, or was in the
+	 * 				middle of computing it
+	 */
+	protected final boolean evict(ComputedModel model) {
+		if(!model.dropCache())
+			return false;
+		evictions++;
+		return true;
+	}
+	
+	//
+	// Metrics
+	//
+	
+	/**
+	 * @return the number of cached values dropped by this policy
+	 */
+	public int getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * Reset the eviction count
+	 */
+	public void resetMetrics() {
+		evictions = 0;
+	}
+	
+}
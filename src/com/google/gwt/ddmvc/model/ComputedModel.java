@@ -1,7 +1,12 @@
 package com.google.gwt.ddmvc.model;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import com.google.gwt.ddmvc.DDMVC;
 import com.google.gwt.ddmvc.event.Observer;
+import com.google.gwt.ddmvc.event.ObserverSet;
+import com.google.gwt.ddmvc.model.update.Cascade;
 import com.google.gwt.ddmvc.model.update.ModelUpdate;
 
 /**
@@ -10,22 +15,66 @@ import com.google.gwt.ddmvc.model.update.ModelUpdate;
  * Note - ModelUpdates which would try to affect this model will have no effect,
  * other than to replace the model with something else.
  * 
+ * A computed model may be lazy, in which case it is only ever recomputed when
+ * its value is read.  When a dependency of a lazy model changes, the model is
+ * marked DIRTY, and any lazy models computed from it are marked CHECK, right
+ * away, without waiting for the run-loop to cascade.  Observers which are not
+ * lazy, such as views, are sent a Cascade, and will recompute the lazy models
+ * they read.  A CHECK model read later first brings the lazy models it was
+ * computed from up to date, and is only recomputed if one of them changed.
+ * 
+ * Whenever a cached value is recomputed, it is compared to the previous value
+ * with isEquivalent(...).  If they are equivalent, the change goes no further:
+ * the run-loop does not cascade to the dependents of an eager model, and the
+ * lazy models computed from a lazy model need not be recomputed.
+ * 
  * @author Kevin Dolan
  */
 public abstract class ComputedModel extends Model implements Observer {
 	
+	/**
+	 * The states of a lazy computed model
+	 */
+	public enum State {
+		CLEAN,
+		CHECK,
+		DIRTY
+	}
+	
+	//The sets of dependents being invalidated, one for each level of recursion,
+	//reused so that invalidation allocates nothing
+	private static List<ObserverSet> invalidating = new ArrayList<ObserverSet>();
+	private static int invalidationDepth = 0;
+	
 	private boolean inSync;
 	private Object cache;
+	private Cascade cascade;
+	
+	//Lazy evaluation, the version is incremented whenever the value changes
+	private State state;
+	private int version;
+	private boolean computed;
+	private boolean evicted;
+	private boolean computing;
+	private List<ComputedModel> dependencies;
+	private int[] dependencyVersions;
+	
+	//Equality cutoff
+	private boolean changed;
+	private int recomputes;
+	private int cutoffs;
 	
 	public ComputedModel() {
 		inSync = false;
 		cache = null;
+		state = State.DIRTY;
 	}
 	
 	public ComputedModel(String key) {
 		super(key);
 		inSync = false;
 		cache = null;
+		state = State.DIRTY;
 	}
 	
 	/**
@@ -34,11 +83,30 @@ public abstract class ComputedModel extends Model implements Observer {
 	 */
 	public abstract Object computeValue();
 	
+	/**
+	 * Compute the new value of this model in response to a change in its
+	 * dependencies.  Override this to apply the updates to the previous value
+	 * rather than computing it from scratch.
+	 * @param updates - the updates which caused the change
+	 * @return the computed value of this model, computeValue() by default
+	 */
+	protected Object computeValue(Collection<ModelUpdate> updates) {
+		return computeValue();
+	}
+	
 	/**
 	 * If necessary, perform any initial dependency-binding or processing
 	 */
 	public void init() {}
 	
+	/**
+	 * Called by DDMVC whenever this model starts observing a path.  Override
+	 * this to keep track of the dependencies of this model.  Does nothing by
+	 * default.
+	 * @param path - the path observed, including any terminal field
+	 */
+	public void observing(Path<?,?,?> path) {}
+	
 	/**
 	 * Set if the value should be cached when computed
 	 * @return true by default
@@ -57,14 +125,114 @@ public abstract class ComputedModel extends Model implements Observer {
 		return true;
 	}
 	
+	/**
+	 * Set if the value should only be computed when it is read, rather than
+	 * when its dependencies change.  Lazy models are always cached, and 
+	 * isCacheable() and isImmediate() are ignored.
+	 * @return false by default
+	 */
+	public boolean isLazy() {
+		return false;
+	}
+	
+	/**
+	 * @return the state of a lazy model, always CLEAN for a model which has
+	 * 				been computed and is not lazy
+	 */
+	public State getState() {
+		if(isLazy())
+			return state;
+		return inSync ? State.CLEAN : State.DIRTY;
+	}
+	
+	/**
+	 * Determine whether or not the dependents of this model should be sent a
+	 * Cascade by the run-loop, after it has been notified of a change.  Lazy
+	 * models invalidate their dependents themselves.
+	 * @return true if the run-loop should cascade
+	 */
+	public boolean shouldCascade() {
+		return !isLazy() && changed;
+	}
+	
+	/**
+	 * Determine whether or not a recomputed value is equivalent to the previous
+	 * value, in which case dependents are not notified.  Override this to use
+	 * a different equivalence, or to return false if computeValue() returns the
+	 * same mutable instance after modifying it.
+	 * @param oldValue - the previous value
+	 * @param newValue - the recomputed value
+	 * @return true if the values are equal, by equals()
+	 */
+	public boolean isEquivalent(Object oldValue, Object newValue) {
+		if(oldValue == null)
+			return newValue == null;
+		return oldValue.equals(newValue);
+	}
+	
+	/**
+	 * Get the policy which decides when the cached value of this model is 
+	 * dropped.  Override this to use a policy other than the one installed in
+	 * DDMVC, such as CachePolicy.UNBOUNDED for a value which must always stay
+	 * cached.
+	 * @return DDMVC.getCachePolicy() by default
+	 */
+	public CachePolicy getCachePolicy() {
+		return DDMVC.getCachePolicy();
+	}
+	
+	/**
+	 * @return the number of times a cached value was recomputed
+	 */
+	public int getRecomputeCount() {
+		return recomputes;
+	}
+	
+	/**
+	 * @return the number of recomputes which produced an equivalent value
+	 */
+	public int getCutoffCount() {
+		return cutoffs;
+	}
+	
+	/**
+	 * Get the Cascade sent to the dependents of this model when it is
+	 * recomputed.  Since a Cascade is complete and immutable, the same instance
+	 * is reused for as long as the path of this model does not change.
+	 * @return the cascade update for this model
+	 */
+	public Cascade getCascade() {
+		if(cascade == null || cascade.getTarget() != getPath())
+			cascade = new Cascade(getPath());
+		return cascade;
+	}
+	
+	@Override
+	public Object getValue(Observer observer) {
+		Object value = super.getValue(observer);
+		if(isLazy() && observer instanceof ComputedModel)
+			((ComputedModel) observer).readDependency(this);
+		return value;
+	}
+	
 	@Override
 	public Object myValue() {
-		if(inSync)
+		if(isLazy())
+			return lazyValue();
+		
+		if(inSync) {
+			getCachePolicy().read(this);
 			return cache;
+		}
 		
-		if(isCacheable()) {
+		//Values computed during a transaction may be rolled back, and values
+		//computed while updates are queued for this model already include
+		//them, so they would be applied twice
+		if(isCacheable() && !UndoLog.isOpen() 
+				&& !DDMVC.hasPendingNotifications(this)) {
 			cache = computeValue();
 			inSync = true;
+			getCachePolicy().cached(this, cache);
 			return cache;
 		}
 		
@@ -73,10 +241,195 @@ public abstract class ComputedModel extends Model implements Observer {
 	
 	@Override
 	public void modelChanged(Collection<ModelUpdate> updates) {
+		boolean hadValue = inSync;
 		inSync = false;
+		changed = true;
+		if(isLazy()) {
+			State previous = state;
+			state = State.DIRTY;
+			if(previous == State.CLEAN || evicted) {
+				evicted = false;
+				invalidateDependents();
+			}
+			return;
+		}
+		
 		if(isCacheable() && isImmediate()) {
+			Object previous = cache;
+			cache = hadValue ? computeValue(updates) : computeValue();
+			inSync = hadValue || !DDMVC.hasPendingNotifications(this);
+			changed = !isUnchanged(hadValue, previous);
+			getCachePolicy().cached(this, cache);
+		}
+	}
+	
+	/**
+	 * Compare the newly cached value to the previous one, and record the
+	 * outcome
+	 * @param hadValue - true if the previous value was in sync
+	 * @param previous - the previous value
+	 * @return true if the value is unchanged
+	 */
+	private boolean isUnchanged(boolean hadValue, Object previous) {
+		recomputes++;
+		if(hadValue && isEquivalent(previous, cache)) {
+			cutoffs++;
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Drop the cached value, so that it will be recomputed from scratch when
+	 * it is next needed.  Called by CachePolicy.
+	 * 
+	 * The dependents of a lazy model dropped while CLEAN may still be CLEAN,
+	 * so it remembers to invalidate them when it next changes, as though it
+	 * had been CLEAN.
+	 * @return true if a value was dropped
+	 */
+	boolean dropCache() {
+		if(computing)
+			return false;
+		
+		boolean dropped = inSync || computed || cache != null;
+		cache = null;
+		inSync = false;
+		computed = false;
+		if(isLazy()) {
+			if(state == State.CLEAN)
+				evicted = true;
+			state = State.DIRTY;
+		}
+		return dropped;
+	}
+	
+	//
+	// Lazy Evaluation
+	//
+	
+	/**
+	 * Get the value of a lazy model, bringing it up to date first
+	 * @return the value of this model
+	 */
+	private Object lazyValue() {
+		//Values computed during a transaction may be rolled back
+		if(UndoLog.isOpen() && state != State.CLEAN)
+			return computeValue();
+		
+		refresh();
+		getCachePolicy().read(this);
+		return cache;
+	}
+	
+	/**
+	 * Bring a lazy model up to date.  A CHECK model refreshes the lazy models
+	 * it was computed from, and is only recomputed if one of them changed.
+	 */
+	private void refresh() {
+		if(state == State.CHECK) {
+			//The model stays CHECK until every dependency has refreshed, so
+			//that one which throws leaves it to be checked again
+			State checked = State.CLEAN;
+			for(int i = 0; i < dependencies.size(); i++) {
+				ComputedModel dependency = dependencies.get(i);
+				dependency.refresh();
+				if(dependency.version != dependencyVersions[i]) {
+					checked = State.DIRTY;
+					break;
+				}
+			}
+			state = checked;
+		}
+		
+		if(state == State.DIRTY)
+			recompute();
+	}
+	
+	/**
+	 * Recompute a lazy model, recording the lazy models it reads
+	 */
+	private void recompute() {
+		if(dependencies == null) {
+			dependencies = new ArrayList<ComputedModel>();
+			dependencyVersions = new int[4];
+		}
+		dependencies.clear();
+		
+		//The cache is kept in sync with the last successful computation, even
+		//once it is dirty, so that the new value can be compared to it
+		boolean hadValue = computed;
+		Object previous = cache;
+		computing = true;
+		try {
 			cache = computeValue();
-			inSync = true;
+		} catch(RuntimeException e) {
+			computed = false;
+			version++;
+			throw e;
+		} finally {
+			computing = false;
+		}
+		
+		computed = true;
+		if(!isUnchanged(hadValue, previous))
+			version++;
+		inSync = true;
+		evicted = false;
+		state = State.CLEAN;
+		getCachePolicy().cached(this, cache);
+	}
+	
+	/**
+	 * Record that a lazy model was read while computing this one
+	 * @param dependency - the lazy model read
+	 */
+	private void readDependency(ComputedModel dependency) {
+		if(!computing)
+			return;
+		
+		int index = dependencies.size();
+		if(index == dependencyVersions.length) {
+			int[] grown = new int[index * 2];
+			System.arraycopy(dependencyVersions, 0, grown, 0, index);
+			dependencyVersions = grown;
+		}
+		dependencies.add(dependency);
+		dependencyVersions[index] = dependency.version;
+	}
+	
+	/**
+	 * Mark the lazy models computed from this one as CHECK, recursively, and
+	 * send a Cascade to every other observer of this one
+	 */
+	private void invalidateDependents() {
+		if(invalidationDepth == invalidating.size())
+			invalidating.add(new ObserverSet());
+		ObserverSet affected = invalidating.get(invalidationDepth++);
+		
+		try {
+			DDMVC.getAllAffected(getPath(), UpdateLevel.VALUE, affected);
+			for(int i = 0; i < affected.size(); i++) {
+				Observer observer = affected.get(i);
+				if(observer instanceof ComputedModel 
+						&& ((ComputedModel) observer).isLazy()) {
+					
+					ComputedModel dependent = (ComputedModel) observer;
+					if(dependent.state == State.CLEAN) {
+						dependent.state = State.CHECK;
+						dependent.invalidateDependents();
+					}
+					else if(dependent.evicted) {
+						dependent.evicted = false;
+						dependent.invalidateDependents();
+					}
+				}
+				else
+					DDMVC.addNotify(observer, getCascade());
+			}
+		} finally {
+			affected.clear();
+			invalidationDepth--;
 		}
 	}
 	
@@ -0,0 +1,69 @@
+package com.google.gwt.ddmvc.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Evicts the values of models which have not been cached or read for a given
+ * number of run-loops.  This stands in for soft references, which GWT does not
+ * provide: values which are in use stay cached, and values nobody has looked
+ * at for a while are given up.
+ * 
+ * Idle values are only evicted at the end of a run-loop, so this policy must 
+ * be installed in DDMVC to have any effect.
+ */
+public class IdleCachePolicy extends CachePolicy {
+
+	private int maxIdleLoops;
+	private int loop;
+	
+	//The run-loop each model was last used in, from least to most recent
+	private LinkedHashMap<ComputedModel, Integer> lastUsed;
+	
+	/**
+	 * @param maxIdleLoops - the number of completed run-loops a value may go
+	 * 				unused before it is evicted
+	 */
+	public IdleCachePolicy(int maxIdleLoops) {
+		if(maxIdleLoops < 1)
+			throw new IllegalArgumentException("Idle run-loops must be positive.");
+		this.maxIdleLoops = maxIdleLoops;
+		this.loop = 0;
+		this.lastUsed = new LinkedHashMap<ComputedModel, Integer>(16, 0.75f, true);
+	}
+	
+	/**
+	 * @return the number of models whose values are currently cached
+	 */
+	public int getSize() {
+		return lastUsed.size();
+	}
+	
+	@Override
+	protected void cached(ComputedModel model, Object value) {
+		lastUsed.put(model, loop);
+	}
+	
+	@Override
+	protected void read(ComputedModel model) {
+		lastUsed.put(model, loop);
+	}
+	
+	@Override
+	public void runLoopFinished() {
+		loop++;
+		
+		Iterator<Map.Entry<ComputedModel, Integer>> it = 
+			lastUsed.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<ComputedModel, Integer> eldest = it.next();
+			if(loop - eldest.getValue() <= maxIdleLoops)
+				break;
+			
+			it.remove();
+			evict(eldest.getKey());
+		}
+	}
+	
+}
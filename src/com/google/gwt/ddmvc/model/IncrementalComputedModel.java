@@ -0,0 +1,221 @@
+package com.google.gwt.ddmvc.model;
+
+import java.util.Collection;
+import java.util.List;
+import com.google.gwt.ddmvc.model.update.ModelDeleted;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.model.update.SetValue;
+import com.google.gwt.ddmvc.model.update.list.Append;
+import com.google.gwt.ddmvc.model.update.list.AppendAll;
+import com.google.gwt.ddmvc.model.update.list.Prepend;
+import com.google.gwt.ddmvc.model.update.list.PrependAll;
+import com.google.gwt.ddmvc.model.update.list.RemoveAllThatMatch;
+import com.google.gwt.ddmvc.model.update.list.RemoveIndex;
+import com.google.gwt.ddmvc.model.update.list.Sort;
+
+/**
+ * Represents a value which depends on some other model(s), and which is kept
+ * up to date by applying the updates to those models one at a time, rather
+ * than by computing it from scratch.
+ * 
+ * Subclasses keep whatever state they need, build it from scratch in 
+ * rebuild(), and derive the value from it in currentValue().  For each update
+ * received, the hook for its type is called with the data it carried.  A hook
+ * which cannot apply its update returns false, as all of them do by default,
+ * and the state is then rebuilt from scratch.  Updates of any other type, such
+ * as SetModel, UnknownUpdate or Cascade, always cause a rebuild.
+ * 
+ * Note - the list updates modify the list in place, and the hooks are called
+ * after they have been applied, so hooks should rely on the data carried by
+ * the update, and not on the contents of the list.
+ * 
+ * Note - the value returned by currentValue() is compared to the previous one
+ * with isEquivalent(...), so currentValue() must return a new object whenever
+ * the value changes.  If it returns the same mutable instance, such as a list
+ * which the hooks modify in place, the two always look equal, and dependents
+ * are never told of the change; such a model must override isEquivalent(...)
+ * to return false.
+ */
+public abstract class IncrementalComputedModel extends ComputedModel {
+
+	/**
+	 * Build the state of this model from scratch.  Dependencies should be
+	 * read with this model as the observer, as with computeValue() in a
+	 * ComputedModel.
+	 */
+	protected abstract void rebuild();
+	
+	/**
+	 * @return the value of this model, derived from its current state
+	 */
+	protected abstract Object currentValue();
+	
+	//
+	// Update Hooks
+	//
+	
+	/**
+	 * @param update - the update, holding the previous value and the new value
+	 * @return true if the update was applied
+	 */
+	protected boolean onSetValue(SetValue update) {
+		return false;
+	}
+	
+	/**
+	 * Note - ModelDeleted is sent before the model is removed, and does not
+	 * carry its value, so a model interested in deletions must keep track of
+	 * the values it has seen.
+	 * @param update - the update
+	 * @return true if the update was applied
+	 */
+	protected boolean onModelDeleted(ModelDeleted update) {
+		return false;
+	}
+	
+	/**
+	 * @param update - the update
+	 * @param element - the element appended
+	 * @return true if the update was applied
+	 */
+	protected boolean onAppend(Append update, Object element) {
+		return false;
+	}
+	
+	/**
+	 * @param update - the update
+	 * @param elements - the elements appended, in order
+	 * @return true if the update was applied
+	 */
+	protected boolean onAppendAll(AppendAll update, 
+			Collection<? extends Object> elements) {
+		return false;
+	}
+	
+	/**
+	 * @param update - the update
+	 * @param element - the element prepended
+	 * @return true if the update was applied
+	 */
+	protected boolean onPrepend(Prepend update, Object element) {
+		return false;
+	}
+	
+	/**
+	 * @param update - the update
+	 * @param elements - the elements prepended, in order
+	 * @return true if the update was applied
+	 */
+	protected boolean onPrependAll(PrependAll update, 
+			Collection<? extends Object> elements) {
+		return false;
+	}
+	
+	/**
+	 * @param update - the update
+	 * @param index - the index the element was removed from
+	 * @param element - the element removed
+	 * @return true if the update was applied
+	 */
+	protected boolean onRemoveIndex(RemoveIndex update, int index, 
+			Object element) {
+		return false;
+	}
+	
+	/**
+	 * Called for RemoveAllThatMatch, and its subclasses RemoveAllEqualTo and 
+	 * KeepAllThatMatch
+	 * @param update - the update
+	 * @param elements - the elements removed, in their original order
+	 * @return true if the update was applied
+	 */
+	protected boolean onRemoveAll(RemoveAllThatMatch update, 
+			List<Object> elements) {
+		return false;
+	}
+	
+	/**
+	 * @param update - the update
+	 * @return true if the update was applied
+	 */
+	protected boolean onSort(Sort update) {
+		return false;
+	}
+	
+	//
+	// ComputedModel Overriding
+	//
+	
+	@Override
+	public final Object computeValue() {
+		rebuild();
+		return currentValue();
+	}
+	
+	@Override
+	protected Object computeValue(Collection<ModelUpdate> updates) {
+		for(ModelUpdate update : updates) {
+			if(update.getException() != null || !apply(update))
+				return computeValue();
+		}
+		return currentValue();
+	}
+	
+	/**
+	 * Incremental models must always be cached
+	 */
+	@Override
+	public final boolean isCacheable() {
+		return true;
+	}
+	
+	/**
+	 * Incremental models must see every update as it happens
+	 */
+	@Override
+	public final boolean isImmediate() {
+		return true;
+	}
+	
+	/**
+	 * Incremental models cannot be lazy, since they would miss updates
+	 */
+	@Override
+	public final boolean isLazy() {
+		return false;
+	}
+	
+	/**
+	 * Pass an update to the hook for its type
+	 * @param update - the update to apply
+	 * @return true if it was applied
+	 */
+	private boolean apply(ModelUpdate update) {
+		if(update instanceof SetValue)
+			return onSetValue((SetValue) update);
+		if(update instanceof ModelDeleted)
+			return onModelDeleted((ModelDeleted) update);
+		if(update instanceof Append)
+			return onAppend((Append) update, ((Append) update).getData());
+		if(update instanceof AppendAll)
+			return onAppendAll((AppendAll) update, 
+					((AppendAll) update).getCollection());
+		if(update instanceof Prepend)
+			return onPrepend((Prepend) update, ((Prepend) update).getData());
+		if(update instanceof PrependAll)
+			return onPrependAll((PrependAll) update, 
+					((PrependAll) update).getCollection());
+		if(update instanceof RemoveIndex) {
+			RemoveIndex removeIndex = (RemoveIndex) update;
+			return onRemoveIndex(removeIndex, removeIndex.getIndex(), 
+					removeIndex.getObjectRemoved());
+		}
+		if(update instanceof RemoveAllThatMatch)
+			return onRemoveAll((RemoveAllThatMatch) update, 
+					((RemoveAllThatMatch) update).getRemoved());
+		if(update instanceof Sort)
+			return onSort((Sort) update);
+		return false;
+	}
+	
+}
@@ -0,0 +1,133 @@
+package com.google.gwt.ddmvc.model;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounds the total weight of all the values cached by the models using this
+ * policy.  Whenever a value is cached and the total exceeds the capacity, the
+ * least recently used models are evicted until it fits again.  The model
+ * which has just cached its value is never evicted, even if it alone exceeds
+ * the capacity.
+ * 
+ * Since GWT provides no means of measuring the size of an object, the weight
+ * of each value is given by a Weigher.  By default, each value weighs 1, so
+ * the capacity is simply the number of cached values.
+ */
+public class LruCachePolicy extends CachePolicy {
+
+	/**
+	 * Determines the weight of a cached value
+	 */
+	public interface Weigher {
+		
+		/**
+		 * @param model - the model caching the value
+		 * @param value - the value cached
+		 * @return the weight of the value, at least 1
+		 */
+		public int weigh(ComputedModel model, Object value);
+		
+	}
+	
+	/**
+	 * Weighs every value as 1
+	 */
+	public static final Weigher UNIT = new Weigher() {
+		@Override
+		public int weigh(ComputedModel model, Object value) {
+			return 1;
+		}
+	};
+	
+	/**
+	 * Weighs collections by their size, and anything else as 1
+	 */
+	public static final Weigher SIZE = new Weigher() {
+		@Override
+		public int weigh(ComputedModel model, Object value) {
+			if(value instanceof Collection<?>)
+				return Math.max(1, ((Collection<?>) value).size());
+			return 1;
+		}
+	};
+	
+	private int capacity;
+	private Weigher weigher;
+	private long weight;
+	
+	//The weight of each model's value, from least to most recently used
+	private LinkedHashMap<ComputedModel, Integer> entries;
+	
+	/**
+	 * @param capacity - the maximum number of cached values
+	 */
+	public LruCachePolicy(int capacity) {
+		this(capacity, UNIT);
+	}
+	
+	/**
+	 * @param capacity - the maximum total weight of cached values
+	 * @param weigher - determines the weight of each value
+	 */
+	public LruCachePolicy(int capacity, Weigher weigher) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive.");
+		this.capacity = capacity;
+		this.weigher = weigher;
+		this.weight = 0;
+		this.entries = new LinkedHashMap<ComputedModel, Integer>(16, 0.75f, true);
+	}
+	
+	/**
+	 * @return the maximum total weight of cached values
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * @return the total weight of the values currently cached
+	 */
+	public long getWeight() {
+		return weight;
+	}
+	
+	/**
+	 * @return the number of models whose values are currently cached
+	 */
+	public int getSize() {
+		return entries.size();
+	}
+	
+	@Override
+	protected void cached(ComputedModel model, Object value) {
+		Integer previous = entries.get(model);
+		if(previous != null)
+			weight -= previous;
+		
+		int valueWeight = weigher.weigh(model, value);
+		entries.put(model, valueWeight);
+		weight += valueWeight;
+		
+		Iterator<Map.Entry<ComputedModel, Integer>> it = 
+			entries.entrySet().iterator();
+		while(weight > capacity) {
+			Map.Entry<ComputedModel, Integer> eldest = it.next();
+			if(eldest.getKey() == model)
+				break;
+			
+			it.remove();
+			weight -= eldest.getValue();
+			evict(eldest.getKey());
+		}
+	}
+	
+	@Override
+	protected void read(ComputedModel model) {
+		entries.get(model);
+	}
+	
+}
@@ -1,6 +1,9 @@
 package com.google.gwt.ddmvc.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 import com.google.gwt.ddmvc.DDMVC;
 import com.google.gwt.ddmvc.Utility;
@@ -156,6 +159,13 @@ public class Model {
 		return childData.containsKey(key); 
 	}
 	
+	/**
+	 * @return the keys of all child models, as a read-only view
+	 */
+	public Set<String> getChildKeys() {
+		return Collections.unmodifiableSet(childData.keySet());
+	}
+	
 	/**
 	 * Determine whether or not a field path exists.
 	 * @param path - the path to check, relative to this model.
@@ -321,6 +331,9 @@ public class Model {
 	 */
 	protected void setChild(String key, Model model) {		
 		if(model != null) {
+			recordChild(key);
+			model.recordAttachment();
+			
 			if(model.getParent() != null)
 				model.getParent().deleteModel(model.getKey());
 			
@@ -331,6 +344,20 @@ public class Model {
 		}
 	}
 	
+	/**
+	 * Remove the child at the given key, if any.
+	 * 
+	 * Note - this will not send any notifications, unlike deleteModel(...)
+	 * 
+	 * @param key - the key of the model to remove
+	 */
+	protected void removeChild(String key) {
+		if(childData.containsKey(key)) {
+			recordChild(key);
+			childData.remove(key);
+		}
+	}
+	
 	//
 	// Parent Models
 	//
@@ -428,7 +455,7 @@ public class Model {
 	 */
 	public void addValueObserver(Observer observer) {
 		if(observer != null)
-			DDMVC.addObserver(observer, path.append("$"));
+			DDMVC.addObserver(observer, path.appendValueField());
 	}
 	
 	/**
@@ -532,6 +559,81 @@ public class Model {
 		return value;
 	}
 	
+	//
+	// Undo Recording
+	//
+	
+	/**
+	 * If a transaction is open, record the value of this model, and the
+	 * contents of the value if it is a list, which updates modify in place.
+	 * Only the first call within a transaction records anything.
+	 */
+	@SuppressWarnings("unchecked")
+	void recordValue() {
+		UndoLog log = UndoLog.recording(this);
+		if(log == null || !log.markValueRecorded(this))
+			return;
+		
+		final Object oldValue = value;
+		final List<Object> contents = oldValue instanceof List 
+			? new ArrayList<Object>((List<Object>) oldValue) : null;
+		
+		log.record(new UndoLog.Entry() {
+			@Override
+			void undo() {
+				if(contents != null) {
+					List<Object> list = (List<Object>) oldValue;
+					list.clear();
+					list.addAll(contents);
+				}
+				value = oldValue;
+			}
+		});
+	}
+	
+	/**
+	 * If a transaction is open, record the child model at a key
+	 * @param key - the key of the child about to be replaced or removed
+	 */
+	private void recordChild(final String key) {
+		UndoLog log = UndoLog.recording(this);
+		if(log == null)
+			return;
+		
+		final Model oldChild = childData.get(key);
+		log.record(new UndoLog.Entry() {
+			@Override
+			void undo() {
+				if(oldChild == null)
+					childData.remove(key);
+				else
+					childData.put(key, oldChild);
+			}
+		});
+	}
+	
+	/**
+	 * If a transaction is open, record the key and parent of this model
+	 * before it is attached elsewhere
+	 */
+	private void recordAttachment() {
+		if(parent == null)
+			return;
+		UndoLog log = UndoLog.recording(parent);
+		if(log == null)
+			return;
+		
+		final String oldKey = key;
+		final Model oldParent = parent;
+		log.record(new UndoLog.Entry() {
+			@Override
+			void undo() {
+				key = oldKey;
+				setParent(oldParent);
+			}
+		});
+	}
+	
 	/**
 	 * Get the associated value.
 	 * @return the value
@@ -900,14 +1002,18 @@ public class Model {
 		}
 		
 		if(path.getImmediate().equals("$")) {
-			if(!Utility.aExtendsB(myValue().getClass(), path.getReferenceType()))
+			//The observer is added before computing the value, so that any
+			//cyclic dependency is found before it can recurse
+			Object value = getValue(observer);
+			if(value != null 
+					&& !Utility.aExtendsB(value.getClass(), path.getReferenceType()))
 				throw new ClassCastException(getPath().append(path) 
 						+ " cannot be cast to " + path.getReferenceType());
-			return (Type) getValue(observer);
+			return (Type) value;
 		}
 		
 		String key = path.getImmediate();
-		if(!hasPath(key))
+		if(!hasChild(key))
 			throw new ModelDoesNotExistException(getPath().append(key));
 		
 		return getChild(key).get(path.advance(), observer);
@@ -932,6 +1038,7 @@ public class Model {
 	 * @param update - the update request being processed
 	 */
 	public void handleUpdate(ModelUpdate update) {
+		DDMVC.recordUpdate(this, update);
 		Path<?,?,?> relative = update.getTarget().resolvePath(getPath());
 		relative = relative.ignoreTerminal();
 		handleUpdateSafe(update, relative);
@@ -962,6 +1069,7 @@ public class Model {
 	 * @param update - the update to apply
 	 */
 	protected void applyUpdate(ModelUpdate update) {
+		recordValue();
 		Object result = update.process(value);
 		
 		if(result.getClass().getName()
@@ -1178,8 +1286,10 @@ public class Model {
 				throw new ModelDoesNotExistException(getPath().append(path));
 			
 			Model model = getChild(path.getImmediate());
-			model.notifyObservers(new ModelDeleted(model.getPath()),
-					UpdateLevel.VALUE);
+			ModelDeleted deleted = new ModelDeleted(model.getPath());
+			DDMVC.recordUpdate(this, deleted);
+			model.notifyObservers(deleted, UpdateLevel.VALUE);
+			recordChild(path.getImmediate());
 			childData.remove(path.getImmediate());
 		}
 		else {
@@ -137,6 +137,7 @@ public class ModelModel<ModelType extends Model> extends Model {
 	
 	@Override
 	protected void resetValue(Object value) {
+		model.recordValue();
 		model.resetValue(value);
 	}
 	
@@ -149,6 +150,17 @@ public class ModelModel<ModelType extends Model> extends Model {
 			throw new ClassCastException(newModel.getClass() 
 					+ " cannot be cast to " + cls);
 		
+		UndoLog log = UndoLog.recording(this);
+		if(log != null) {
+			final ModelType oldModel = model;
+			log.record(new UndoLog.Entry() {
+				@Override
+				void undo() {
+					model = oldModel;
+				}
+			});
+		}
+		
 		model = (ModelType) newModel;
 		model.setKey(getKey());
 		model.setParent(getParent());
@@ -0,0 +1,211 @@
+package com.google.gwt.ddmvc.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.event.Observer;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+
+/**
+ * Represents a family of values which depend on some other model(s) and on an
+ * argument, such as "the orders of a customer".  Each argument is a child key
+ * of this model, so the value for customer X is simply read at the path
+ * "ordersFor.X", and may be observed like any other.
+ *
+ * The value for each argument is memoized by a computed model of its own,
+ * created the first time the argument is read, which observes only the
+ * dependencies read while computing that argument.  A change to one of them
+ * only recomputes the arguments which read it.
+ *
+ * The number of memoized arguments may be bounded, in which case the least
+ * recently used ones are dropped, along with their observation of their
+ * dependencies.  Arguments which are themselves being observed are never
+ * dropped, since their observers rely on them to be notified.
+ */
+public abstract class ParameterizedComputedModel extends Model {
+
+	/**
+	 * Value of the bound on memoized arguments which is not enforced
+	 */
+	public static final int UNLIMITED = -1;
+	
+	/**
+	 * The computed model memoizing the value of a single argument
+	 */
+	private class Entry extends ComputedModel {
+	
+		private String argument;
+		private List<Path<?,?,?>> dependencies;
+		private boolean released;
+		
+		private Entry(String argument) {
+			this.argument = argument;
+			this.dependencies = new ArrayList<Path<?,?,?>>();
+			this.released = false;
+		}
+		
+		@Override
+		public Object computeValue() {
+			computing++;
+			try {
+				return ParameterizedComputedModel.this.computeValue(argument, this);
+			} finally {
+				computing--;
+			}
+		}
+		
+		@Override
+		public boolean isLazy() {
+			return ParameterizedComputedModel.this.isLazy();
+		}
+		
+		@Override
+		public void observing(Path<?,?,?> path) {
+			dependencies.add(path);
+		}
+		
+		@Override
+		public void modelChanged(Collection<ModelUpdate> updates) {
+			if(!released)
+				super.modelChanged(updates);
+		}
+		
+		/**
+		 * Stop observing all dependencies
+		 */
+		private void release() {
+			released = true;
+			for(Path<?,?,?> path : dependencies)
+				DDMVC.removeObserver(this, path);
+			dependencies.clear();
+		}
+	
+	}
+	
+	private int maxEntries;
+	private int evictions;
+	private int computing;
+	
+	//The memoized arguments, from least to most recently used
+	private LinkedHashMap<String, Entry> entries;
+	
+	/**
+	 * Instantiate a new ParameterizedComputedModel, which memoizes every
+	 * argument it is asked for
+	 */
+	public ParameterizedComputedModel() {
+		this(UNLIMITED);
+	}
+	
+	/**
+	 * @param maxEntries - the number of arguments to memoize, must be at least
+	 * 				1, or UNLIMITED
+	 */
+	public ParameterizedComputedModel(int maxEntries) {
+		super();
+		if(maxEntries < 1 && maxEntries != UNLIMITED)
+			throw new IllegalArgumentException("Limit must be positive or " +
+					"UNLIMITED.");
+		this.maxEntries = maxEntries;
+		this.evictions = 0;
+		this.computing = 0;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	}
+	
+	/**
+	 * Perform the computation for a single argument.
+	 * @param argument - the argument, which is the key of the child read
+	 * @param observer - the observer to pass when reading dependencies
+	 * @return the computed value for the argument
+	 */
+	protected abstract Object computeValue(String argument, Observer observer);
+	
+	/**
+	 * Set if the value of each argument should only be computed when it is
+	 * read, rather than when its dependencies change.
+	 * @return false by default
+	 */
+	public boolean isLazy() {
+		return false;
+	}
+	
+	//
+	// Metrics
+	//
+	
+	/**
+	 * @return the number of arguments currently memoized
+	 */
+	public int getEntryCount() {
+		return entries.size();
+	}
+	
+	/**
+	 * @return the number of memoized arguments dropped to stay within the bound
+	 */
+	public int getEvictionCount() {
+		return evictions;
+	}
+	
+	/**
+	 * @return the number of arguments to memoize, or UNLIMITED
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	
+	//
+	// Model Overriding
+	//
+	
+	/**
+	 * Every valid key is an argument, whether or not it has been read yet
+	 */
+	@Override
+	public boolean hasChild(String key) {
+		return true;
+	}
+	
+	@Override
+	protected Model getChild(String key) {
+		Entry entry = entries.get(key);
+		if(entry != null)
+			return entry;
+		
+		Path.validateKey(key);
+		entry = new Entry(key);
+		setChild(key, entry);
+		entries.put(key, entry);
+		evict(entry);
+		return entry;
+	}
+	
+	/**
+	 * Drop the least recently used arguments which are not being observed,
+	 * until the bound is respected.  Nothing is dropped while an argument is
+	 * being computed, since it may be the one computing.
+	 * @param created - the entry just created, which is kept
+	 */
+	private void evict(Entry created) {
+		if(maxEntries == UNLIMITED || computing > 0)
+			return;
+		
+		Iterator<Entry> it = entries.values().iterator();
+		int excess = entries.size() - maxEntries;
+		while(excess > 0 && it.hasNext()) {
+			Entry entry = it.next();
+			if(entry == created || DDMVC.hasObservers(entry.getPath()))
+				continue;
+			
+			it.remove();
+			removeChild(entry.argument);
+			entry.release();
+			evictions++;
+			excess--;
+		}
+	}
+
+}
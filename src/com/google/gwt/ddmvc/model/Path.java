@@ -35,6 +35,14 @@ public class Path<ValueType, ModelType extends Model, ReferenceType> {
 	private Class<ModelType> modelType;
 	private Class<ReferenceType> referenceType;
 	
+	//Paths are immutable, so the string form is computed once
+	private String string;
+	
+	//Likewise the paths derived from this one, once they are needed
+	private Path<ValueType, ModelType, ReferenceType> advanced;
+	private Path<ValueType, ModelType, ModelType> withoutTerminal;
+	private Path<ValueType, ModelType, ValueType> withValueField;
+	
 	//
 	// Factory methods
 	//
@@ -426,15 +434,20 @@ public class Path<ValueType, ModelType extends Model, ReferenceType> {
 	
 	@Override
 	public String toString() {
-		if(path.size() == 0)
-			return "ROOT_PATH";
+		if(string != null)
+			return string;
+		
+		if(path.size() == 0) {
+			string = "ROOT_PATH";
+			return string;
+		}
 		
 		StringBuilder sb = new StringBuilder();
 		for(String field : path)
-			sb.append(field + ".");
-		if(path.size() > 0)
-			sb.replace(sb.length() - 1, sb.length(), "");
-		return sb.toString();
+			sb.append(field).append('.');
+		sb.setLength(sb.length() - 1);
+		string = sb.toString();
+		return string;
 	}
 	
 	//
@@ -448,9 +461,11 @@ public class Path<ValueType, ModelType extends Model, ReferenceType> {
 	public Path<ValueType, ModelType, ReferenceType> advance() {
 		if(path.size() == 0)
 			return null;
-		return new Path<ValueType, ModelType, ReferenceType>(
-			getValueType(), getModelType(), getReferenceType(), 
-			path.subList(1, path.size()));
+		if(advanced == null)
+			advanced = new Path<ValueType, ModelType, ReferenceType>(
+				getValueType(), getModelType(), getReferenceType(), 
+				path.subList(1, path.size()));
+		return advanced;
 	}
 	
 	/**
@@ -505,11 +520,14 @@ public class Path<ValueType, ModelType extends Model, ReferenceType> {
 			throw new InvalidPathException("It is illegal to append a field to " +
 					"a terminated path.");
 		
-		List<String> newPathList = new LinkedList<String>();
-		newPathList.addAll(path);
-		newPathList.add("$");
-		return new Path<ValueType, ModelType, ValueType>
-			(getValueType(), getModelType(), getValueType(), newPathList);
+		if(withValueField == null) {
+			List<String> newPathList = new LinkedList<String>();
+			newPathList.addAll(path);
+			newPathList.add("$");
+			withValueField = new Path<ValueType, ModelType, ValueType>
+				(getValueType(), getModelType(), getValueType(), newPathList);
+		}
+		return withValueField;
 	}
 	
 	/**
@@ -522,12 +540,15 @@ public class Path<ValueType, ModelType extends Model, ReferenceType> {
 		if(!isTerminal())
 			return (Path<ValueType, ModelType, ModelType>) this;
 			
-		List<String> newPathList = new LinkedList<String>();
-		newPathList.addAll(path);
-		newPathList.remove(newPathList.size() - 1);
-		
-		return new Path<ValueType, ModelType, ModelType>
-			(getValueType(), getModelType(), getModelType(), newPathList);
+		if(withoutTerminal == null) {
+			List<String> newPathList = new LinkedList<String>();
+			newPathList.addAll(path);
+			newPathList.remove(newPathList.size() - 1);
+			
+			withoutTerminal = new Path<ValueType, ModelType, ModelType>
+				(getValueType(), getModelType(), getModelType(), newPathList);
+		}
+		return withoutTerminal;
 	}
 	
 	/**
@@ -0,0 +1,135 @@
+package com.google.gwt.ddmvc.model;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An UndoLog records the changes made to the data tree while a transaction
+ * is open, so that they can be reverted if the transaction fails.
+ * 
+ * Changes are recorded where they are made, inside Model, as the smallest
+ * entry which can revert them: the previous value reference, a copy of the
+ * contents of a list which is about to be modified in place, or the previous
+ * child at a key.  Reverting a list restores its contents into the same list,
+ * so references held to it remain valid.  The value of each model is recorded
+ * only the first time it changes, since that is the value a rollback restores,
+ * so repeated updates to a list copy its contents once.
+ * 
+ * Only one log can be active at a time.  It is opened and closed by DDMVC.
+ */
+public class UndoLog {
+
+	/**
+	 * A single change, which knows how to revert itself
+	 */
+	abstract static class Entry {
+		abstract void undo();
+	}
+	
+	private static UndoLog active;
+	
+	private Model root;
+	private List<Entry> entries;
+	
+	//The models whose values have been recorded
+	private Map<Model, Boolean> recorded;
+	
+	/**
+	 * Open a new undo log, recording changes made under the given root
+	 * @param root - the root of the tree to record changes to
+	 * @return the new log
+	 * @throws IllegalStateException if a log is already open
+	 */
+	public static UndoLog open(Model root) {
+		if(active != null)
+			throw new IllegalStateException("An undo log is already open.");
+		active = new UndoLog(root);
+		return active;
+	}
+	
+	/**
+	 * @return true if an undo log is open
+	 */
+	public static boolean isOpen() {
+		return active != null;
+	}
+	
+	/**
+	 * Get the open log, if it records changes to the given model
+	 * @param model - the model about to be changed
+	 * @return the open log, or null if there is none or the model is not
+	 * 				under its root
+	 */
+	static UndoLog recording(Model model) {
+		if(active == null || model.getRoot() != active.root)
+			return null;
+		return active;
+	}
+	
+	private UndoLog(Model root) {
+		this.root = root;
+		this.entries = new ArrayList<Entry>();
+		this.recorded = new IdentityHashMap<Model, Boolean>();
+	}
+	
+	/**
+	 * @return the number of changes recorded
+	 */
+	public int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Keep all of the changes, and close the log
+	 */
+	public void commit() {
+		entries.clear();
+		recorded.clear();
+		close();
+	}
+	
+	/**
+	 * Stop recording changes, and close the log, keeping the changes recorded
+	 * so far so that they may still be committed or rolled back later.  This
+	 * allows another log to be opened in the meantime.
+	 */
+	public void suspend() {
+		close();
+	}
+	
+	/**
+	 * Revert all of the changes, most recent first, and close the log
+	 */
+	public void rollback() {
+		close();
+		for(int i = entries.size() - 1; i >= 0; i--)
+			entries.get(i).undo();
+		entries.clear();
+		recorded.clear();
+	}
+	
+	private void close() {
+		if(active == this)
+			active = null;
+	}
+	
+	/**
+	 * Record a change
+	 * @param entry - the entry which reverts the change
+	 */
+	void record(Entry entry) {
+		entries.add(entry);
+	}
+	
+	/**
+	 * Mark the value of a model as recorded
+	 * @param model - the model about to be changed
+	 * @return true if its value had not been recorded yet, and should be
+	 */
+	boolean markValueRecorded(Model model) {
+		return recorded.put(model, Boolean.TRUE) == null;
+	}
+	
+}
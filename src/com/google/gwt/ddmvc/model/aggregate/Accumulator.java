@@ -0,0 +1,39 @@
+package com.google.gwt.ddmvc.model.aggregate;
+
+/**
+ * An Accumulator holds the running result of an aggregate over a collection
+ * of elements, which may be added and removed one at a time, in any order.
+ * 
+ * Accumulators are driven by an AggregateModel, which never passes them null
+ * elements.
+ */
+public interface Accumulator {
+
+	/**
+	 * Forget all elements
+	 */
+	public void clear();
+	
+	/**
+	 * Add an element to the aggregate
+	 * @param element - the element to add, never null
+	 */
+	public void add(Object element);
+	
+	/**
+	 * Remove an element from the aggregate
+	 * @param element - the element to remove, never null
+	 * @return true if it was removed, false if the aggregate cannot be 
+	 * 				maintained, in which case it will be rebuilt from scratch
+	 */
+	public boolean remove(Object element);
+	
+	/**
+	 * Note - the value is compared with the previous one to decide whether
+	 * observers must be notified, so it must not be modified afterwards by
+	 * the accumulator.
+	 * @return the current result of the aggregate
+	 */
+	public Object getValue();
+	
+}
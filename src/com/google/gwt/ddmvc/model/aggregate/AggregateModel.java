@@ -0,0 +1,239 @@
+package com.google.gwt.ddmvc.model.aggregate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.model.IncrementalComputedModel;
+import com.google.gwt.ddmvc.model.Model;
+import com.google.gwt.ddmvc.model.Path;
+import com.google.gwt.ddmvc.model.update.ModelDeleted;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.model.update.SetValue;
+import com.google.gwt.ddmvc.model.update.list.Append;
+import com.google.gwt.ddmvc.model.update.list.AppendAll;
+import com.google.gwt.ddmvc.model.update.list.Prepend;
+import com.google.gwt.ddmvc.model.update.list.PrependAll;
+import com.google.gwt.ddmvc.model.update.list.RemoveAllThatMatch;
+import com.google.gwt.ddmvc.model.update.list.RemoveIndex;
+import com.google.gwt.ddmvc.model.update.list.Sort;
+
+/**
+ * A computed model whose value is an aggregate, such as a count, sum or
+ * minimum, which is maintained incrementally by an Accumulator.
+ *
+ * The elements aggregated depend on the source path.  If it ends in *, they
+ * are the values of the immediate children of the model at that path, and
+ * are kept up to date as children are set and deleted.  Otherwise, they are
+ * the elements of the Collection held by the model at that path, and are
+ * kept up to date by the list updates.  Null elements are ignored.
+ *
+ * Whenever an update cannot be applied directly, such as a SetModel, an
+ * UnknownUpdate, or a change further down the subtree, the accumulator is
+ * cleared and refilled.
+ */
+public class AggregateModel extends IncrementalComputedModel {
+
+	private Path<?,?,?> source;
+	private Path<?,?,?> fieldPath;
+	private Accumulator accumulator;
+
+	//The last known value of each child, when aggregating over children
+	private HashMap<String, Object> children;
+
+	/**
+	 * @param pathString - the path to aggregate, ending in * to aggregate the
+	 * 				values of the children
+	 * @param accumulator - the accumulator to maintain
+	 */
+	public AggregateModel(String pathString, Accumulator accumulator) {
+		this(Path.make(pathString), accumulator);
+	}
+
+	/**
+	 * @param path - the path to aggregate, ending in * to aggregate the values
+	 * 				of the children
+	 * @param accumulator - the accumulator to maintain
+	 */
+	public AggregateModel(Path<?,?,?> path, Accumulator accumulator) {
+		super();
+		this.source = path.ignoreTerminal();
+		this.accumulator = accumulator;
+
+		if(path.isFieldPath()) {
+			this.fieldPath = path;
+			this.children = new HashMap<String, Object>();
+		}
+	}
+
+	/**
+	 * @return the accumulator maintained by this model
+	 */
+	public Accumulator getAccumulator() {
+		return accumulator;
+	}
+
+	/**
+	 * @return true if this model aggregates the values of children, false if
+	 * 				it aggregates the elements of a collection
+	 */
+	public boolean isOverChildren() {
+		return children != null;
+	}
+
+	//
+	// IncrementalComputedModel Overriding
+	//
+
+	@Override
+	protected void rebuild() {
+		accumulator.clear();
+
+		if(isOverChildren()) {
+			children.clear();
+			Model parent = DDMVC.getDataRoot().getModel(fieldPath, this);
+			for(String key : parent.getChildKeys()) {
+				Object value = parent.getValue(key);
+				children.put(key, value);
+				add(value);
+			}
+		}
+		else {
+			Object value = DDMVC.getDataRoot().getValue(source, this);
+			if(value != null)
+				addAll((Collection<?>) value);
+		}
+	}
+
+	@Override
+	protected Object currentValue() {
+		return accumulator.getValue();
+	}
+
+	@Override
+	protected boolean onSetValue(SetValue update) {
+		String key = childKey(update);
+		if(key == null)
+			return false;
+
+		if(children.containsKey(key) && !remove(children.get(key)))
+			return false;
+
+		children.put(key, update.getData());
+		add(update.getData());
+		return true;
+	}
+
+	@Override
+	protected boolean onModelDeleted(ModelDeleted update) {
+		String key = childKey(update);
+		if(key == null || !children.containsKey(key))
+			return false;
+
+		return remove(children.remove(key));
+	}
+
+	@Override
+	protected boolean onAppend(Append update, Object element) {
+		if(isOverChildren())
+			return false;
+
+		add(element);
+		return true;
+	}
+
+	@Override
+	protected boolean onAppendAll(AppendAll update,
+			Collection<? extends Object> elements) {
+		if(isOverChildren())
+			return false;
+
+		addAll(elements);
+		return true;
+	}
+
+	@Override
+	protected boolean onPrepend(Prepend update, Object element) {
+		if(isOverChildren())
+			return false;
+
+		add(element);
+		return true;
+	}
+
+	@Override
+	protected boolean onPrependAll(PrependAll update,
+			Collection<? extends Object> elements) {
+		if(isOverChildren())
+			return false;
+
+		addAll(elements);
+		return true;
+	}
+
+	@Override
+	protected boolean onRemoveIndex(RemoveIndex update, int index,
+			Object element) {
+		if(isOverChildren())
+			return false;
+
+		return remove(element);
+	}
+
+	@Override
+	protected boolean onRemoveAll(RemoveAllThatMatch update,
+			List<Object> elements) {
+		if(isOverChildren())
+			return false;
+
+		for(Object element : elements) {
+			if(!remove(element))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Aggregates do not depend on the order of the elements
+	 */
+	@Override
+	protected boolean onSort(Sort update) {
+		return !isOverChildren();
+	}
+
+	//
+	// Helpers
+	//
+
+	/**
+	 * @param update - the update to look at
+	 * @return the key of the child targeted by the update, or null if this
+	 * 				model does not aggregate children, or the update does not
+	 * 				target an immediate child
+	 */
+	private String childKey(ModelUpdate update) {
+		if(!isOverChildren())
+			return null;
+
+		Path<?,?,?> target = update.getTarget().ignoreTerminal();
+		if(target.size() != source.size() + 1 || !target.startsWith(source))
+			return null;
+
+		return target.rightMost();
+	}
+
+	private void add(Object element) {
+		if(element != null)
+			accumulator.add(element);
+	}
+
+	private void addAll(Collection<?> elements) {
+		for(Object element : elements)
+			add(element);
+	}
+
+	private boolean remove(Object element) {
+		return element == null || accumulator.remove(element);
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.google.gwt.ddmvc.model.aggregate;
+
+/**
+ * Counts the elements, as an Integer
+ */
+public class Count implements Accumulator {
+
+	private int count;
+	
+	@Override
+	public void clear() {
+		count = 0;
+	}
+	
+	@Override
+	public void add(Object element) {
+		count++;
+	}
+	
+	@Override
+	public boolean remove(Object element) {
+		count--;
+		return true;
+	}
+	
+	@Override
+	public Object getValue() {
+		return count;
+	}
+	
+}
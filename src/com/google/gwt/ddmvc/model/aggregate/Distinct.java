@@ -0,0 +1,61 @@
+package com.google.gwt.ddmvc.model.aggregate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Counts the distinct elements, as an Integer, by keeping a count of each 
+ * element.  The distinct elements themselves are available through 
+ * getElements().
+ */
+public class Distinct implements Accumulator {
+
+	private HashMap<Object, Integer> counts;
+	
+	/**
+	 * Instantiate a new Distinct
+	 */
+	public Distinct() {
+		counts = new HashMap<Object, Integer>();
+	}
+	
+	/**
+	 * Note - this is a live view, so it should not be held onto by observers
+	 * expecting to see the value they were notified of.
+	 * @return a read-only view of the distinct elements
+	 */
+	public Set<Object> getElements() {
+		return Collections.unmodifiableSet(counts.keySet());
+	}
+	
+	@Override
+	public void clear() {
+		counts.clear();
+	}
+	
+	@Override
+	public void add(Object element) {
+		Integer count = counts.get(element);
+		counts.put(element, count == null ? 1 : count + 1);
+	}
+	
+	@Override
+	public boolean remove(Object element) {
+		Integer count = counts.get(element);
+		if(count == null)
+			return false;
+		
+		if(count == 1)
+			counts.remove(element);
+		else
+			counts.put(element, count - 1);
+		return true;
+	}
+	
+	@Override
+	public Object getValue() {
+		return counts.size();
+	}
+	
+}
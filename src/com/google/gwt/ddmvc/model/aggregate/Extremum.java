@@ -0,0 +1,48 @@
+package com.google.gwt.ddmvc.model.aggregate;
+
+import java.util.Comparator;
+import java.util.TreeMap;
+
+/**
+ * Base for Min and Max, which keep a count of each element in a sorted map,
+ * so that removing the current extreme finds the next one in log(n) time.
+ * Elements are compared with the supplied Comparator, or by their natural
+ * ordering if there is none.
+ */
+abstract class Extremum implements Accumulator {
+
+	protected TreeMap<Object, Integer> counts;
+	
+	/**
+	 * @param comparator - the comparator to order elements by, or null for the
+	 * 				natural ordering
+	 */
+	protected Extremum(Comparator<Object> comparator) {
+		counts = new TreeMap<Object, Integer>(comparator);
+	}
+	
+	@Override
+	public void clear() {
+		counts.clear();
+	}
+	
+	@Override
+	public void add(Object element) {
+		Integer count = counts.get(element);
+		counts.put(element, count == null ? 1 : count + 1);
+	}
+	
+	@Override
+	public boolean remove(Object element) {
+		Integer count = counts.get(element);
+		if(count == null)
+			return false;
+		
+		if(count == 1)
+			counts.remove(element);
+		else
+			counts.put(element, count - 1);
+		return true;
+	}
+	
+}
@@ -0,0 +1,105 @@
+package com.google.gwt.ddmvc.model.aggregate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Partitions the elements into groups, and keeps a separate accumulator for
+ * each group.  The value is a read-only Map from each non-empty group to the 
+ * value of its accumulator.  Empty groups are dropped.
+ * 
+ * Note - the value map is copied whenever it is requested, which costs time
+ * in the number of groups, rather than in the number of elements.
+ */
+public class GroupBy implements Accumulator {
+
+	/**
+	 * Determines the group of an element
+	 */
+	public interface Grouping {
+		
+		/**
+		 * @param element - the element to group, never null
+		 * @return the group it belongs to
+		 */
+		public Object groupOf(Object element);
+		
+	}
+	
+	/**
+	 * Creates the accumulator of each new group
+	 */
+	public interface Factory {
+		
+		/**
+		 * @return a new, empty accumulator
+		 */
+		public Accumulator create();
+		
+	}
+	
+	private static class Group {
+		
+		private Accumulator accumulator;
+		private int size;
+		
+		private Group(Accumulator accumulator) {
+			this.accumulator = accumulator;
+			this.size = 0;
+		}
+		
+	}
+	
+	private Grouping grouping;
+	private Factory factory;
+	private HashMap<Object, Group> groups;
+	
+	/**
+	 * @param grouping - determines the group of each element
+	 * @param factory - creates the accumulator of each group
+	 */
+	public GroupBy(Grouping grouping, Factory factory) {
+		this.grouping = grouping;
+		this.factory = factory;
+		this.groups = new HashMap<Object, Group>();
+	}
+	
+	@Override
+	public void clear() {
+		groups.clear();
+	}
+	
+	@Override
+	public void add(Object element) {
+		Object key = grouping.groupOf(element);
+		Group group = groups.get(key);
+		if(group == null) {
+			group = new Group(factory.create());
+			groups.put(key, group);
+		}
+		group.accumulator.add(element);
+		group.size++;
+	}
+	
+	@Override
+	public boolean remove(Object element) {
+		Object key = grouping.groupOf(element);
+		Group group = groups.get(key);
+		if(group == null || !group.accumulator.remove(element))
+			return false;
+		
+		if(--group.size == 0)
+			groups.remove(key);
+		return true;
+	}
+	
+	@Override
+	public Object getValue() {
+		Map<Object, Object> value = new HashMap<Object, Object>();
+		for(Map.Entry<Object, Group> entry : groups.entrySet())
+			value.put(entry.getKey(), entry.getValue().accumulator.getValue());
+		return Collections.unmodifiableMap(value);
+	}
+	
+}
@@ -0,0 +1,29 @@
+package com.google.gwt.ddmvc.model.aggregate;
+
+import java.util.Comparator;
+
+/**
+ * The largest element, or null if there are none
+ */
+public class Max extends Extremum {
+
+	/**
+	 * Instantiate a new Max, ordering elements by their natural ordering
+	 */
+	public Max() {
+		super(null);
+	}
+	
+	/**
+	 * @param comparator - the comparator to order elements by
+	 */
+	public Max(Comparator<Object> comparator) {
+		super(comparator);
+	}
+	
+	@Override
+	public Object getValue() {
+		return counts.isEmpty() ? null : counts.lastKey();
+	}
+	
+}
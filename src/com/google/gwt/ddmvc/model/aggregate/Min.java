@@ -0,0 +1,29 @@
+package com.google.gwt.ddmvc.model.aggregate;
+
+import java.util.Comparator;
+
+/**
+ * The smallest element, or null if there are none
+ */
+public class Min extends Extremum {
+
+	/**
+	 * Instantiate a new Min, ordering elements by their natural ordering
+	 */
+	public Min() {
+		super(null);
+	}
+	
+	/**
+	 * @param comparator - the comparator to order elements by
+	 */
+	public Min(Comparator<Object> comparator) {
+		super(comparator);
+	}
+	
+	@Override
+	public Object getValue() {
+		return counts.isEmpty() ? null : counts.firstKey();
+	}
+	
+}
@@ -0,0 +1,59 @@
+package com.google.gwt.ddmvc.model.aggregate;
+
+/**
+ * Sums Number elements.  Integral elements are added exactly, as a long.  
+ * The value is a Long if every element is integral, and a Double otherwise.
+ */
+public class Sum implements Accumulator {
+
+	private long integral;
+	private double floating;
+	private int floatingCount;
+	
+	@Override
+	public void clear() {
+		integral = 0;
+		floating = 0;
+		floatingCount = 0;
+	}
+	
+	@Override
+	public void add(Object element) {
+		Number number = (Number) element;
+		if(isIntegral(number))
+			integral += number.longValue();
+		else {
+			floating += number.doubleValue();
+			floatingCount++;
+		}
+	}
+	
+	@Override
+	public boolean remove(Object element) {
+		Number number = (Number) element;
+		if(isIntegral(number))
+			integral -= number.longValue();
+		else {
+			floating -= number.doubleValue();
+			floatingCount--;
+			
+			//Don't let rounding errors linger once the last one is gone
+			if(floatingCount == 0)
+				floating = 0;
+		}
+		return true;
+	}
+	
+	@Override
+	public Object getValue() {
+		if(floatingCount == 0)
+			return integral;
+		return integral + floating;
+	}
+	
+	private static boolean isIntegral(Number number) {
+		return number instanceof Integer || number instanceof Long
+				|| number instanceof Short || number instanceof Byte;
+	}
+	
+}
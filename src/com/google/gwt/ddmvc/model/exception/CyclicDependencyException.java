@@ -0,0 +1,52 @@
+package com.google.gwt.ddmvc.model.exception;
+
+import java.util.List;
+import com.google.gwt.ddmvc.event.Observer;
+
+/**
+ * Thrown when observing a model would make an observer depend on itself, and
+ * reported when a run-loop fails to converge because its notifications keep
+ * cycling.
+ */
+public class CyclicDependencyException extends RuntimeException {
+
+	private static final long serialVersionUID = 3358216245871329043L;
+
+	private List<Observer> cycle;
+	
+	/**
+	 * @param message - the description of the problem
+	 * @param cycle - the observers involved, in order of notification
+	 */
+	public CyclicDependencyException(String message, List<Observer> cycle) {
+		super(message + " " + describe(cycle));
+		this.cycle = cycle;
+	}
+	
+	/**
+	 * @return the observers involved, in order of notification.  For a cycle,
+	 * 				the first observer is repeated at the end.
+	 */
+	public List<Observer> getCycle() {
+		return cycle;
+	}
+	
+	/**
+	 * Describe a list of observers by their paths
+	 * @param observers - the observers to describe
+	 * @return the observers, separated by arrows
+	 */
+	private static String describe(List<Observer> observers) {
+		StringBuilder sb = new StringBuilder();
+		for(Observer observer : observers) {
+			if(sb.length() > 0)
+				sb.append(" -> ");
+			if(observer.getPath() != null)
+				sb.append(observer.getPath());
+			else
+				sb.append(observer);
+		}
+		return sb.toString();
+	}
+	
+}
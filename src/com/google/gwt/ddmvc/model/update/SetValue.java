@@ -14,6 +14,7 @@ public class SetValue extends ModelUpdate {
 	public static final SetValue DEFAULT = new SetValue("", null);
 	
 	private Object data;
+	private Object previous;
 	
 	/**
 	 * @param target
@@ -33,8 +34,25 @@ public class SetValue extends ModelUpdate {
 		this.data = data;
 	}
 
+	/**
+	 * @return the value to set
+	 */
+	public Object getData() {
+		return data;
+	}
+	
+	/**
+	 * If this update has been performed, this will return the value it 
+	 * replaced.  If this has not been performed yet, it will return null.
+	 * @return the previous value of the model
+	 */
+	public Object getPreviousValue() {
+		return previous;
+	}
+
 	@Override
 	protected Object performUpdate(Object value) {
+		previous = value;
 		return data;
 	}
 }
\ No newline at end of file
@@ -104,4 +104,11 @@ public class Append extends ModelUpdate {
 		}
 		return list;
 	}
+	
+	/**
+	 * @return the element appended to the list
+	 */
+	public Object getData() {
+		return data;
+	}
 }
\ No newline at end of file
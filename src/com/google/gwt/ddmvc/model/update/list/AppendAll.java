@@ -91,4 +91,11 @@ public class AppendAll extends ModelUpdate {
 		list.addAll(collection);
 		return list;
 	}
+	
+	/**
+	 * @return the elements appended to the list
+	 */
+	public Collection<? extends Object> getCollection() {
+		return collection;
+	}
 }
\ No newline at end of file
@@ -85,4 +85,11 @@ public class Prepend extends ModelUpdate {
 		list.add(0, data);		
 		return list;
 	}
+	
+	/**
+	 * @return the element prepended to the list
+	 */
+	public Object getData() {
+		return data;
+	}
 }
\ No newline at end of file
@@ -99,4 +99,11 @@ public class PrependAll extends ModelUpdate {
 		
 		return list;
 	}
+	
+	/**
+	 * @return the elements prepended to the list
+	 */
+	public Collection<? extends Object> getCollection() {
+		return collection;
+	}
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.google.gwt.ddmvc.model.update.list;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.google.gwt.ddmvc.model.Path;
@@ -16,6 +17,7 @@ import com.google.gwt.ddmvc.model.update.ModelUpdate;
 public class RemoveAllThatMatch extends ModelUpdate {
 	
 	protected Integer numRemoved;
+	protected List<Object> removed;
 	protected boolean removeMatches;
 	
 	/**
@@ -51,12 +53,13 @@ public class RemoveAllThatMatch extends ModelUpdate {
 	protected Object performUpdate(Object value) {
 		List<Object> list = (List<Object>) value;
 		numRemoved = 0;
+		removed = new ArrayList<Object>();
 
 		//The original index, before deletes.
 		int oi = 0;
 		for(int i = 0; i < list.size(); i++) {
 			if(removeMatches == filter.accept(oi, list.get(i))) {
-				list.remove(i);
+				removed.add(list.remove(i));
 				numRemoved++;
 				i--;
 			}
@@ -75,4 +78,14 @@ public class RemoveAllThatMatch extends ModelUpdate {
 		return numRemoved;
 	}
 	
+	/**
+	 * If this update has been performed, this will return the items removed,
+	 * in their original order.  If this has not been performed yet, it will 
+	 * return null.
+	 * @return the values removed from the list
+	 */
+	public List<Object> getRemoved() {
+		return removed;
+	}
+	
 }
\ No newline at end of file
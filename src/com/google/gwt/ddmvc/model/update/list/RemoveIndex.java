@@ -65,4 +65,11 @@ public class RemoveIndex extends ModelUpdate {
 		return objectRemoved;
 	}
 	
+	/**
+	 * @return the index to remove
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
 }
\ No newline at end of file
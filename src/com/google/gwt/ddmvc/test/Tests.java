@@ -11,6 +11,7 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses( {
 	com.google.gwt.ddmvc.test.controller.Tests.class,
 	com.google.gwt.ddmvc.test.model.Tests.class,
+	com.google.gwt.ddmvc.test.runloop.Tests.class,
 	com.google.gwt.ddmvc.test.view.Tests.class,
 })
 public class Tests {}
@@ -0,0 +1,201 @@
+package com.google.gwt.ddmvc.test.controller;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.TaskExecutor;
+import com.google.gwt.ddmvc.controller.AsyncStandardController;
+import com.google.gwt.ddmvc.controller.RequestTransport;
+import com.google.gwt.ddmvc.controller.ServerRequest;
+import com.google.gwt.ddmvc.controller.ValidationError;
+import com.google.gwt.ddmvc.event.AppEvent;
+
+/**
+ * Tests that events are executed in a later run-loop, once their asynchronous
+ * validation has passed.
+ */
+public class AsyncValidationTest {
+
+	private class QueueExecutor implements TaskExecutor {
+		
+		private List<Runnable> tasks = new ArrayList<Runnable>();
+		
+		@Override
+		public void schedule(Runnable task, int delayMillis) {
+			tasks.add(task);
+		}
+		
+		@Override
+		public long currentTimeMillis() {
+			return 0;
+		}
+		
+		public void runAll() {
+			List<Runnable> running = tasks;
+			tasks = new ArrayList<Runnable>();
+			for(Runnable task : running)
+				task.run();
+		}
+		
+	}
+	
+	private class Rename extends AppEvent {
+		
+		private String name;
+		
+		public Rename(String name) {
+			this.name = name;
+		}
+		
+	}
+	
+	private class Renamer extends AsyncStandardController {
+		
+		public List<Validation> validating;
+		public List<String> executed;
+		public List<String> rejected;
+		
+		public Renamer(TaskExecutor executor) {
+			super(executor);
+			validating = new ArrayList<Validation>();
+			executed = new ArrayList<String>();
+			rejected = new ArrayList<String>();
+		}
+		
+		@Override
+		protected List<ValidationError> validate(AppEvent event) {
+			List<ValidationError> errors = new ArrayList<ValidationError>();
+			if(((Rename) event).name.length() == 0)
+				errors.add(new ValidationError());
+			return errors;
+		}
+		
+		@Override
+		protected void validateAsync(Validation validation) {
+			if(((Rename) validation.getEvent()).name.equals("boom"))
+				throw new IllegalStateException();
+			validating.add(validation);
+		}
+		
+		@Override
+		protected void onValidationFailure(AppEvent event,
+				List<ValidationError> errors) {
+			rejected.add(((Rename) event).name);
+		}
+		
+		@Override
+		protected ServerRequest execute(AppEvent event) {
+			executed.add(((Rename) event).name);
+			return new ServerRequest();
+		}
+		
+	}
+	
+	private QueueExecutor executor;
+	private Renamer renamer;
+	private List<List<ServerRequest>> batches;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		executor = new QueueExecutor();
+		renamer = new Renamer(executor);
+		DDMVC.subscribeToEvent(Rename.class, renamer);
+		
+		batches = new ArrayList<List<ServerRequest>>();
+		DDMVC.setRequestTransport(new RequestTransport() {
+			@Override
+			public void send(List<ServerRequest> batch) {
+				batches.add(batch);
+			}
+		});
+	}
+	
+	private List<ValidationError> error() {
+		List<ValidationError> errors = new ArrayList<ValidationError>();
+		errors.add(new ValidationError());
+		return errors;
+	}
+	
+	@Test
+	public void executedLater() {
+		DDMVC.fireEvent(new Rename("a"));
+		DDMVC.runLoop();
+		assertTrue(renamer.getPendingValidations() == 1);
+		assertTrue(renamer.validating.size() == 0);
+		
+		executor.runAll();
+		renamer.validating.get(0).complete(null);
+		assertTrue(renamer.executed.size() == 0);
+		
+		DDMVC.runLoop();
+		assertTrue(renamer.executed.size() == 1);
+		assertTrue(renamer.getPendingValidations() == 0);
+		assertTrue(batches.size() == 1);
+		assertTrue(batches.get(0).get(0).getController() == renamer);
+		assertTrue(DDMVC.getRunLoopStats().getServerRequests() == 1);
+	}
+	
+	@Test
+	public void rejectedLater() {
+		DDMVC.fireEvent(new Rename("taken"));
+		DDMVC.runLoop();
+		executor.runAll();
+		renamer.validating.get(0).complete(error());
+		DDMVC.runLoop();
+		
+		assertTrue(renamer.rejected.size() == 1);
+		assertTrue(renamer.executed.size() == 0);
+		assertTrue(batches.size() == 0);
+	}
+	
+	@Test
+	public void rejectedSynchronously() {
+		DDMVC.fireEvent(new Rename(""));
+		DDMVC.runLoop();
+		
+		assertTrue(renamer.rejected.size() == 1);
+		assertTrue(renamer.getPendingValidations() == 0);
+		executor.runAll();
+		assertTrue(renamer.validating.size() == 0);
+	}
+	
+	@Test
+	public void independentValidations() {
+		DDMVC.fireEvent(new Rename("a"));
+		DDMVC.fireEvent(new Rename("b"));
+		DDMVC.fireEvent(new Rename("c"));
+		DDMVC.runLoop();
+		executor.runAll();
+		assertTrue(renamer.getPendingValidations() == 3);
+		
+		//Executed in the order the validations complete
+		renamer.validating.get(2).complete(null);
+		renamer.validating.get(0).complete(null);
+		renamer.validating.get(0).complete(error());
+		DDMVC.runLoop();
+		assertTrue(renamer.executed.size() == 2);
+		assertTrue(renamer.executed.get(0).equals("c"));
+		assertTrue(batches.size() == 1 && batches.get(0).size() == 2);
+		
+		renamer.validating.get(1).complete(error());
+		DDMVC.runLoop();
+		assertTrue(renamer.rejected.size() == 1);
+		assertTrue(renamer.getPendingValidations() == 0);
+	}
+	
+	@Test
+	public void validationThrows() {
+		DDMVC.fireEvent(new Rename("boom"));
+		DDMVC.runLoop();
+		executor.runAll();
+		
+		assertTrue(DDMVC.runLoop().size() == 1);
+		assertTrue(renamer.executed.size() == 0);
+		assertTrue(renamer.getPendingValidations() == 0);
+	}
+	
+}
@@ -0,0 +1,321 @@
+package com.google.gwt.ddmvc.test.controller;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.TaskExecutor;
+import com.google.gwt.ddmvc.controller.CachingTransport;
+import com.google.gwt.ddmvc.controller.Controller;
+import com.google.gwt.ddmvc.controller.InProcessTransport;
+import com.google.gwt.ddmvc.controller.RequestTransport;
+import com.google.gwt.ddmvc.controller.ServerRequest;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.model.update.SetValue;
+import com.google.gwt.ddmvc.model.update.list.Append;
+
+/**
+ * Tests that identical requests are coalesced while in flight, and answered
+ * from the cache afterwards.
+ */
+public class CachingTransportTest {
+
+	private class VirtualExecutor implements TaskExecutor {
+		
+		private List<Runnable> tasks = new ArrayList<Runnable>();
+		public long now = 0;
+		
+		@Override
+		public void schedule(Runnable task, int delayMillis) {
+			tasks.add(task);
+		}
+		
+		@Override
+		public long currentTimeMillis() {
+			return now;
+		}
+		
+		public void runAll() {
+			List<Runnable> running = tasks;
+			tasks = new ArrayList<Runnable>();
+			for(Runnable task : running)
+				task.run();
+		}
+		
+	}
+	
+	private class Lookup extends AppEvent {
+		
+		private String key;
+		
+		public Lookup(String key) {
+			this.key = key;
+		}
+		
+	}
+	
+	private class LookupRequest extends ServerRequest {
+		
+		private String key;
+		
+		public LookupRequest(String key) {
+			this.key = key;
+		}
+		
+		@Override
+		public Object getSignature() {
+			return key;
+		}
+		
+	}
+	
+	private class Looker extends Controller {
+		
+		public int succeeded = 0;
+		public int failed = 0;
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			return new LookupRequest(((Lookup) event).key);
+		}
+		
+		@Override
+		protected void onRequestSuccess(AppEvent event) {
+			succeeded++;
+		}
+		
+		@Override
+		protected void onRequestFailure(AppEvent event) {
+			failed++;
+		}
+		
+	}
+	
+	private class Ping extends AppEvent {}
+	
+	private class Pinger extends Controller {
+		
+		public int failed = 0;
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			return new ServerRequest();
+		}
+		
+		@Override
+		protected void onRequestFailure(AppEvent event) {
+			failed++;
+		}
+		
+	}
+	
+	private class Flaky implements RequestTransport {
+		
+		private RequestTransport delegate;
+		public boolean broken = false;
+		
+		public Flaky(RequestTransport delegate) {
+			this.delegate = delegate;
+		}
+		
+		@Override
+		public void send(List<ServerRequest> batch) {
+			if(broken)
+				throw new IllegalStateException();
+			delegate.send(batch);
+		}
+		
+	}
+	
+	private class Backend implements InProcessTransport.RequestHandler {
+		
+		public int calls = 0;
+		
+		@Override
+		public List<ModelUpdate> handle(ServerRequest request) {
+			calls++;
+			String key = ((LookupRequest) request).key;
+			if(key.equals("bad"))
+				throw new IllegalArgumentException();
+			
+			List<ModelUpdate> updates = new ArrayList<ModelUpdate>();
+			if(key.equals("list"))
+				updates.add(new Append("items", calls));
+			else
+				updates.add(new SetValue(key, calls));
+			return updates;
+		}
+		
+	}
+	
+	private VirtualExecutor executor;
+	private Backend backend;
+	private Flaky flaky;
+	private CachingTransport transport;
+	private Looker first;
+	private Looker second;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		executor = new VirtualExecutor();
+		backend = new Backend();
+		InProcessTransport server = new InProcessTransport(executor, 100);
+		server.setHandler(LookupRequest.class, backend);
+		flaky = new Flaky(server);
+		transport = new CachingTransport(flaky, 2, 1000, executor);
+		DDMVC.setRequestTransport(transport);
+		
+		first = new Looker();
+		second = new Looker();
+		DDMVC.subscribeToEvent(Lookup.class, first);
+		DDMVC.subscribeToEvent(Lookup.class, second);
+	}
+	
+	@Test
+	public void coalesced() {
+		DDMVC.fireEvent(new Lookup("a"));
+		DDMVC.runLoop();
+		assertTrue(transport.getInFlight() == 1);
+		
+		//An identical request in a later loop joins the one in flight
+		DDMVC.fireEvent(new Lookup("a"));
+		DDMVC.runLoop();
+		executor.runAll();
+		DDMVC.runLoop();
+		
+		assertTrue(backend.calls == 1);
+		assertTrue(transport.getMisses() == 1);
+		assertTrue(transport.getCoalesced() == 3);
+		assertTrue(transport.getInFlight() == 0);
+		assertTrue(first.succeeded == 2 && second.succeeded == 2);
+		assertTrue(DDMVC.getValue("a").equals(1));
+	}
+	
+	@Test
+	public void cached() {
+		DDMVC.fireEvent(new Lookup("a"));
+		DDMVC.runLoop();
+		executor.runAll();
+		DDMVC.runLoop();
+		DDMVC.setValue("a", 0);
+		DDMVC.runLoop();
+		
+		//A cached request succeeds in the same run-loop, applying the answer
+		//again without asking the server
+		DDMVC.fireEvent(new Lookup("a"));
+		DDMVC.runLoop();
+		assertTrue(backend.calls == 1);
+		assertTrue(transport.getHits() == 2);
+		assertTrue(DDMVC.getValue("a").equals(1));
+		assertTrue(first.succeeded == 2 && second.succeeded == 2);
+	}
+	
+	@Test
+	public void expired() {
+		DDMVC.fireEvent(new Lookup("a"));
+		DDMVC.runLoop();
+		executor.runAll();
+		DDMVC.runLoop();
+		
+		executor.now = 1000;
+		DDMVC.fireEvent(new Lookup("a"));
+		DDMVC.runLoop();
+		executor.runAll();
+		DDMVC.runLoop();
+		
+		assertTrue(backend.calls == 2);
+		assertTrue(transport.getEvictions() == 1);
+		assertTrue(DDMVC.getValue("a").equals(2));
+	}
+	
+	@Test
+	public void leastRecentlyUsedDropped() {
+		for(String key : new String[] {"a", "b", "c"}) {
+			DDMVC.fireEvent(new Lookup(key));
+			DDMVC.runLoop();
+			executor.runAll();
+			DDMVC.runLoop();
+		}
+		
+		assertTrue(transport.size() == 2);
+		assertTrue(transport.getEvictions() == 1);
+		
+		DDMVC.fireEvent(new Lookup("a"));
+		DDMVC.runLoop();
+		assertTrue(transport.getInFlight() == 1);
+	}
+	
+	@Test
+	public void failuresShared() {
+		DDMVC.fireEvent(new Lookup("bad"));
+		DDMVC.runLoop();
+		executor.runAll();
+		DDMVC.runLoop();
+		
+		assertTrue(backend.calls == 1);
+		assertTrue(first.failed == 1 && second.failed == 1);
+		assertTrue(transport.size() == 0);
+		assertTrue(transport.getInFlight() == 0);
+	}
+	
+	@Test
+	public void invalidated() {
+		DDMVC.fireEvent(new Lookup("a"));
+		DDMVC.runLoop();
+		executor.runAll();
+		DDMVC.runLoop();
+		
+		transport.invalidate(new LookupRequest("a"));
+		DDMVC.fireEvent(new Lookup("a"));
+		DDMVC.runLoop();
+		assertTrue(transport.getHits() == 0);
+		assertTrue(transport.getInFlight() == 1);
+	}
+	
+	@Test
+	public void sharedAnswerAppliedOnce() {
+		DDMVC.setValue("items", new ArrayList<Integer>());
+		DDMVC.fireEvent(new Lookup("list"));
+		DDMVC.runLoop();
+		executor.runAll();
+		DDMVC.runLoop();
+		
+		//The cached answer restores the list, rather than appending again
+		DDMVC.setValue("items", new ArrayList<Integer>());
+		DDMVC.runLoop();
+		DDMVC.fireEvent(new Lookup("list"));
+		DDMVC.runLoop();
+		
+		assertTrue(backend.calls == 1);
+		assertTrue(DDMVC.getValue("items").toString().equals("[1]"));
+		assertTrue(first.succeeded == 2 && second.succeeded == 2);
+	}
+	
+	@Test
+	public void followerFailedElsewhere() {
+		Pinger pinger = new Pinger();
+		DDMVC.subscribeToEvent(Ping.class, pinger);
+		DDMVC.fireEvent(new Lookup("a"));
+		DDMVC.runLoop();
+		
+		//The followers are failed along with the batch they arrived in
+		flaky.broken = true;
+		DDMVC.fireEvent(new Lookup("a"));
+		DDMVC.fireEvent(new Ping());
+		DDMVC.runLoop();
+		DDMVC.runLoop();
+		assertTrue(pinger.failed == 1);
+		assertTrue(first.failed == 1 && second.failed == 1);
+		
+		executor.runAll();
+		DDMVC.runLoop();
+		assertTrue(first.succeeded == 1 && second.succeeded == 1);
+		assertTrue(DDMVC.getValue("a").equals(1));
+		assertTrue(transport.getInFlight() == 0);
+	}
+	
+}
@@ -0,0 +1,149 @@
+package com.google.gwt.ddmvc.test.controller;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.controller.Controller;
+import com.google.gwt.ddmvc.controller.ServerRequest;
+import com.google.gwt.ddmvc.event.AppEvent;
+
+/**
+ * Tests that events with conflation keys are combined before they are
+ * dispatched.
+ */
+public class EventConflationTest {
+
+	private class Moved extends AppEvent {
+		
+		private String id;
+		private int position;
+		
+		public Moved(String id, int position) {
+			this.id = id;
+			this.position = position;
+		}
+		
+		@Override
+		public Object getConflationKey() {
+			return id;
+		}
+		
+	}
+	
+	private class Scrolled extends AppEvent {
+		
+		private int delta;
+		
+		public Scrolled(int delta) {
+			this.delta = delta;
+		}
+		
+		@Override
+		public Object getConflationKey() {
+			return "scroll";
+		}
+		
+		@Override
+		public AppEvent merge(AppEvent later) {
+			return new Scrolled(delta + ((Scrolled) later).delta);
+		}
+		
+	}
+	
+	private class Clicked extends AppEvent {}
+	
+	private class Recorder extends Controller {
+		
+		public List<AppEvent> received = new ArrayList<AppEvent>();
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			received.add(event);
+			if(event instanceof Clicked && received.size() == 1)
+				DDMVC.fireEvent(new Moved("a", 100));
+			return null;
+		}
+		
+	}
+	
+	private Recorder recorder;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		recorder = new Recorder();
+		DDMVC.subscribeToEvent(AppEvent.class, recorder);
+	}
+	
+	@Test
+	public void lastWins() {
+		DDMVC.fireEvent(new Moved("a", 1));
+		DDMVC.fireEvent(new Moved("b", 1));
+		DDMVC.fireEvent(new Moved("a", 2));
+		DDMVC.fireEvent(new Moved("a", 3));
+		DDMVC.runLoop();
+		
+		assertTrue(recorder.received.size() == 2);
+		Moved first = (Moved) recorder.received.get(0);
+		Moved second = (Moved) recorder.received.get(1);
+		assertTrue(first.id.equals("a") && first.position == 3);
+		assertTrue(second.id.equals("b"));
+		assertTrue(DDMVC.getRunLoopStats().getEventsConflated() == 2);
+	}
+	
+	@Test
+	public void merged() {
+		for(int i = 1; i <= 200; i++)
+			DDMVC.fireEvent(new Scrolled(i));
+		DDMVC.runLoop();
+		
+		assertTrue(recorder.received.size() == 1);
+		assertTrue(((Scrolled) recorder.received.get(0)).delta == 20100);
+		assertTrue(DDMVC.getRunLoopStats().getEventsConflated() == 199);
+	}
+	
+	@Test
+	public void unkeyedNotConflated() {
+		DDMVC.fireEvent(new Clicked());
+		DDMVC.fireEvent(new Clicked());
+		DDMVC.runLoop();
+		
+		assertTrue(recorder.received.size() == 3);
+		assertTrue(DDMVC.getRunLoopStats().getEventsConflated() == 0);
+	}
+	
+	@Test
+	public void onlyWaitingEventsConflated() {
+		DDMVC.fireEvent(new Clicked());
+		DDMVC.fireEvent(new Moved("a", 1));
+		DDMVC.runLoop();
+		
+		//The event fired by the controller arrives after "a" was dispatched
+		assertTrue(recorder.received.size() == 3);
+		assertTrue(((Moved) recorder.received.get(2)).position == 100);
+	}
+	
+	@Test
+	public void manyKeys() {
+		for(int position = 1; position <= 2; position++)
+			for(int i = 0; i < 100; i++)
+				DDMVC.fireEvent(new Moved("m" + i, position));
+		
+		//Events of different classes are not conflated, even with equal keys
+		DDMVC.fireEvent(new Moved("scroll", 1));
+		DDMVC.fireEvent(new Scrolled(1));
+		DDMVC.runLoop();
+		
+		assertTrue(recorder.received.size() == 102);
+		for(int i = 0; i < 100; i++) {
+			Moved moved = (Moved) recorder.received.get(i);
+			assertTrue(moved.id.equals("m" + i) && moved.position == 2);
+		}
+		assertTrue(recorder.received.get(101) instanceof Scrolled);
+		assertTrue(DDMVC.getRunLoopStats().getEventsConflated() == 100);
+	}
+	
+}
@@ -0,0 +1,185 @@
+package com.google.gwt.ddmvc.test.controller;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.controller.Controller;
+import com.google.gwt.ddmvc.controller.RequestTransport;
+import com.google.gwt.ddmvc.controller.ServerRequest;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.event.EventPool;
+
+/**
+ * Tests that pooled events are returned to their pool once dispatched, unless
+ * something holds on to them.
+ */
+public class EventPoolTest {
+
+	private static class Tick extends AppEvent {
+		
+		private int value;
+		private String key;
+		
+		@Override
+		public Object getConflationKey() {
+			return key;
+		}
+		
+		@Override
+		protected void reset() {
+			super.reset();
+			value = 0;
+			key = null;
+		}
+		
+	}
+	
+	private class TickPool extends EventPool<Tick> {
+		
+		public TickPool(int maxFree) {
+			super(maxFree);
+		}
+		
+		@Override
+		protected Tick create() {
+			return new Tick();
+		}
+		
+	}
+	
+	private class Summer extends Controller {
+		
+		public int sum = 0;
+		public boolean request = false;
+		public List<AppEvent> kept = new ArrayList<AppEvent>();
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			sum += ((Tick) event).value;
+			if(((Tick) event).value < 0) {
+				event.retain();
+				kept.add(event);
+			}
+			return request ? new ServerRequest() : null;
+		}
+		
+	}
+	
+	private TickPool pool;
+	private Summer summer;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		pool = new TickPool(16);
+		summer = new Summer();
+		DDMVC.subscribeToEvent(Tick.class, summer);
+	}
+	
+	private Tick tick(int value) {
+		Tick tick = pool.obtain();
+		tick.value = value;
+		return tick;
+	}
+	
+	@Test
+	public void reusedAfterDispatch() {
+		for(int loop = 0; loop < 100; loop++) {
+			for(int i = 0; i < 10; i++)
+				DDMVC.fireEvent(tick(1));
+			DDMVC.runLoop();
+		}
+		
+		assertTrue(summer.sum == 1000);
+		assertTrue(pool.getCreated() == 10);
+		assertTrue(pool.getReused() == 990);
+		assertTrue(pool.getFree() == 10);
+	}
+	
+	@Test
+	public void resetWhenReturned() {
+		Tick tick = tick(5);
+		DDMVC.fireEvent(tick);
+		DDMVC.runLoop();
+		
+		assertTrue(tick.value == 0);
+		assertTrue(pool.obtain() == tick);
+	}
+	
+	@Test
+	public void retainedUntilReleased() {
+		Tick tick = tick(-1);
+		DDMVC.fireEvent(tick);
+		DDMVC.runLoop();
+		assertTrue(pool.getFree() == 0);
+		assertTrue(tick.value == -1);
+		
+		summer.kept.get(0).release();
+		assertTrue(pool.getFree() == 1);
+		try {
+			tick.release();
+			fail();
+		} catch(IllegalStateException e) {}
+	}
+	
+	@Test
+	public void heldByRequests() {
+		final List<ServerRequest> sent = new ArrayList<ServerRequest>();
+		DDMVC.setRequestTransport(new RequestTransport() {
+			@Override
+			public void send(List<ServerRequest> batch) {
+				sent.addAll(batch);
+			}
+		});
+		summer.request = true;
+		
+		DDMVC.fireEvent(tick(3));
+		DDMVC.runLoop();
+		assertTrue(pool.getFree() == 0);
+		assertTrue(((Tick) sent.get(0).getEvent()).value == 3);
+		
+		sent.get(0).getResponse().onSuccess(null);
+		DDMVC.runLoop();
+		assertTrue(pool.getFree() == 1);
+	}
+	
+	@Test
+	public void conflatedReturned() {
+		for(int i = 0; i < 5; i++) {
+			Tick tick = tick(i);
+			tick.key = "a";
+			DDMVC.fireEvent(tick);
+		}
+		DDMVC.runLoop();
+		
+		assertTrue(summer.sum == 4);
+		assertTrue(pool.getRecycled() == 5);
+	}
+	
+	@Test
+	public void boundedFreeList() {
+		for(int i = 0; i < 20; i++)
+			DDMVC.fireEvent(tick(1));
+		DDMVC.runLoop();
+		
+		assertTrue(pool.getRecycled() == 20);
+		assertTrue(pool.getFree() == 16);
+	}
+	
+	@Test
+	public void unpooledUnaffected() {
+		Tick tick = new Tick();
+		tick.value = 2;
+		tick.retain();
+		DDMVC.fireEvent(tick);
+		DDMVC.runLoop();
+		tick.release();
+		
+		assertTrue(!tick.isPooled());
+		assertTrue(tick.value == 2);
+	}
+	
+}
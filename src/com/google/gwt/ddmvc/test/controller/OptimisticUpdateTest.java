@@ -0,0 +1,270 @@
+package com.google.gwt.ddmvc.test.controller;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.controller.RequestTransport;
+import com.google.gwt.ddmvc.controller.ServerRequest;
+import com.google.gwt.ddmvc.controller.StandardController;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.model.aggregate.AggregateModel;
+import com.google.gwt.ddmvc.model.aggregate.Sum;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.model.update.SetValue;
+import com.google.gwt.ddmvc.model.update.list.Append;
+import com.google.gwt.ddmvc.view.View;
+
+/**
+ * Tests that predicted updates are shown immediately, and are reconciled with
+ * the answer or rolled back.
+ */
+public class OptimisticUpdateTest {
+
+	private class Display extends View {
+		
+		private String path;
+		public int render;
+		
+		public Display(String path) {
+			super();
+			this.path = path;
+			initialize();
+		}
+		
+		@Override
+		protected void initialize() {
+			if(path != null)
+				observe(path);
+		}
+		
+		@Override
+		protected void render() {
+			render++;
+		}
+		
+	}
+	
+	private class Like extends AppEvent {}
+	
+	private class LikeRequest extends ServerRequest {}
+	
+	private class LikeController extends StandardController {
+		
+		public int failed = 0;
+		
+		@Override
+		protected ServerRequest execute(AppEvent event) {
+			LikeRequest request = new LikeRequest();
+			request.predict(new SetValue("likes", 
+					(Integer) DDMVC.getValue("likes") + 1));
+			request.predict(new SetValue("pending", true));
+			request.predict(new Append("likers", "me"));
+			return request;
+		}
+		
+		@Override
+		protected void onRequestFailure(AppEvent event) {
+			failed++;
+		}
+		
+	}
+	
+	private class Add extends AppEvent {}
+	
+	private class AddController extends StandardController {
+		
+		@Override
+		protected ServerRequest execute(AppEvent event) {
+			ServerRequest request = new LikeRequest();
+			request.predict(new Append("numbers", 5));
+			return request;
+		}
+		
+	}
+	
+	private class Item extends AppEvent {
+		
+		public String name;
+		
+		public Item(String name) {
+			this.name = name;
+		}
+		
+	}
+	
+	private class ItemController extends StandardController {
+		
+		@Override
+		protected ServerRequest execute(AppEvent event) {
+			ServerRequest request = new LikeRequest();
+			request.predict(new Append("items", ((Item) event).name));
+			return request;
+		}
+		
+	}
+	
+	private List<ServerRequest> sent;
+	private LikeController controller;
+	private Display likes;
+	private Display pending;
+	private Display other;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		DDMVC.setValue("likes", 0);
+		DDMVC.setValue("pending", false);
+		DDMVC.setValue("likers", new ArrayList<String>());
+		DDMVC.setValue("other", "x");
+		
+		sent = new ArrayList<ServerRequest>();
+		DDMVC.setRequestTransport(new RequestTransport() {
+			@Override
+			public void send(List<ServerRequest> batch) {
+				sent.addAll(batch);
+			}
+		});
+		controller = new LikeController();
+		DDMVC.subscribeToEvent(Like.class, controller);
+		
+		likes = new Display("likes.$");
+		pending = new Display("pending.$");
+		other = new Display("other.$");
+		DDMVC.runLoop();
+		likes.render = 0;
+		pending.render = 0;
+		other.render = 0;
+	}
+	
+	@Test
+	public void predictedImmediately() {
+		DDMVC.fireEvent(new Like());
+		DDMVC.runLoop();
+		
+		assertTrue(DDMVC.getValue("likes").equals(1));
+		assertTrue(DDMVC.getValue("pending").equals(true));
+		assertTrue(likes.render == 1 && pending.render == 1);
+		assertTrue(other.render == 0);
+		assertTrue(sent.get(0).getResponse().isPredicting());
+	}
+	
+	@Test
+	public void reconciled() {
+		DDMVC.fireEvent(new Like());
+		DDMVC.runLoop();
+		
+		//The server counted someone else's like too
+		List<ModelUpdate> answer = new ArrayList<ModelUpdate>();
+		answer.add(new SetValue("likes", 2));
+		answer.add(new Append("likers", "me"));
+		sent.get(0).getResponse().onSuccess(answer);
+		DDMVC.runLoop();
+		
+		assertTrue(DDMVC.getValue("likes").equals(2));
+		assertTrue(((List<?>) DDMVC.getValue("likers")).size() == 1);
+		assertTrue(!sent.get(0).getResponse().isPredicting());
+		
+		//The server did not set pending, so the prediction is reverted
+		assertTrue(DDMVC.getValue("pending").equals(false));
+		assertTrue(likes.render == 2 && pending.render == 2);
+		assertTrue(other.render == 0);
+	}
+	
+	@Test
+	public void rolledBack() {
+		DDMVC.fireEvent(new Like());
+		DDMVC.runLoop();
+		
+		sent.get(0).getResponse().onFailure(new RuntimeException());
+		DDMVC.runLoop();
+		
+		assertTrue(DDMVC.getValue("likes").equals(0));
+		assertTrue(DDMVC.getValue("pending").equals(false));
+		assertTrue(((List<?>) DDMVC.getValue("likers")).size() == 0);
+		assertTrue(likes.render == 2 && pending.render == 2);
+		assertTrue(other.render == 0);
+		assertTrue(controller.failed == 1);
+	}
+	
+	@Test
+	public void withoutPredictions() {
+		ServerRequest request = new LikeRequest();
+		request.setOrigin(controller, new Like());
+		request.getResponse().applyPredictions();
+		assertTrue(!request.getResponse().isPredicting());
+	}
+	
+	@Test
+	public void incrementalObserversRebuilt() {
+		List<Integer> numbers = new ArrayList<Integer>();
+		numbers.add(1);
+		numbers.add(2);
+		numbers.add(3);
+		DDMVC.setValue("numbers", numbers);
+		DDMVC.setModel("sum", new AggregateModel("numbers", new Sum()));
+		DDMVC.subscribeToEvent(Add.class, new AddController());
+		DDMVC.runLoop();
+		
+		DDMVC.fireEvent(new Add());
+		DDMVC.runLoop();
+		assertTrue(((Number) DDMVC.getValue("sum")).intValue() == 11);
+		
+		//The confirmation must not be counted on top of the prediction
+		List<ModelUpdate> answer = new ArrayList<ModelUpdate>();
+		answer.add(new Append("numbers", 5));
+		sent.get(0).getResponse().onSuccess(answer);
+		DDMVC.runLoop();
+		assertTrue(((List<?>) DDMVC.getValue("numbers")).size() == 4);
+		assertTrue(((Number) DDMVC.getValue("sum")).intValue() == 11);
+		
+		//Nor must a rejection leave the prediction counted
+		DDMVC.fireEvent(new Add());
+		DDMVC.runLoop();
+		sent.get(1).getResponse().onFailure(new RuntimeException());
+		DDMVC.runLoop();
+		assertTrue(((List<?>) DDMVC.getValue("numbers")).size() == 4);
+		assertTrue(((Number) DDMVC.getValue("sum")).intValue() == 11);
+	}
+	
+	@Test
+	public void overlappingPredictions() {
+		DDMVC.setValue("items", new ArrayList<String>());
+		DDMVC.subscribeToEvent(Item.class, new ItemController());
+		Display items = new Display("items.$");
+		DDMVC.runLoop();
+		items.render = 0;
+		
+		DDMVC.fireEvent(new Item("a"));
+		DDMVC.runLoop();
+		DDMVC.fireEvent(new Item("b"));
+		DDMVC.fireEvent(new Item("c"));
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("items").toString().equals("[a, b, c]"));
+		
+		//Each answer replaces its own prediction, beneath those outstanding
+		List<ModelUpdate> answer = new ArrayList<ModelUpdate>();
+		answer.add(new Append("items", "A"));
+		sent.get(0).getResponse().onSuccess(answer);
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("items").toString().equals("[A, b, c]"));
+		
+		sent.get(2).getResponse().onFailure(new RuntimeException());
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("items").toString().equals("[A, b]"));
+		
+		answer = new ArrayList<ModelUpdate>();
+		answer.add(new Append("items", "B"));
+		sent.get(1).getResponse().onSuccess(answer);
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("items").toString().equals("[A, B]"));
+		assertTrue(!sent.get(1).getResponse().isPredicting());
+		assertTrue(items.render == 5);
+		
+		//Unrelated predictions are left alone
+		assertTrue(DDMVC.getValue("likes").equals(0));
+	}
+	
+}
@@ -0,0 +1,227 @@
+package com.google.gwt.ddmvc.test.controller;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.TaskExecutor;
+import com.google.gwt.ddmvc.controller.Controller;
+import com.google.gwt.ddmvc.controller.InProcessTransport;
+import com.google.gwt.ddmvc.controller.RequestTransport;
+import com.google.gwt.ddmvc.controller.ServerRequest;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.model.update.SetValue;
+
+/**
+ * Tests that the server requests returned during a run-loop are sent in one
+ * batch, and that their responses are applied in a later run-loop.
+ */
+public class RequestPipelineTest {
+
+	private class QueueExecutor implements TaskExecutor {
+		
+		private List<Runnable> tasks = new ArrayList<Runnable>();
+		
+		@Override
+		public void schedule(Runnable task, int delayMillis) {
+			tasks.add(task);
+		}
+		
+		@Override
+		public long currentTimeMillis() {
+			return 0;
+		}
+		
+		public void runAll() {
+			List<Runnable> running = tasks;
+			tasks = new ArrayList<Runnable>();
+			for(Runnable task : running)
+				task.run();
+		}
+		
+	}
+	
+	private class Load extends AppEvent {
+		
+		private String key;
+		
+		public Load(String key) {
+			this.key = key;
+		}
+		
+	}
+	
+	private class LoadRequest extends ServerRequest {
+		
+		private String key;
+		
+		public LoadRequest(String key) {
+			this.key = key;
+		}
+		
+	}
+	
+	private class Loader extends Controller {
+		
+		public List<Object> succeeded = new ArrayList<Object>();
+		public List<Throwable> failed = new ArrayList<Throwable>();
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			return new LoadRequest(((Load) event).key);
+		}
+		
+		@Override
+		protected void onRequestSuccess(AppEvent event) {
+			//The updates have already been applied
+			succeeded.add(DDMVC.getValue(((Load) event).key));
+		}
+		
+		@Override
+		protected void onRequestFailure(AppEvent event, Throwable caught) {
+			failed.add(caught);
+		}
+		
+	}
+	
+	private class Echo implements InProcessTransport.RequestHandler {
+		
+		@Override
+		public List<ModelUpdate> handle(ServerRequest request) {
+			String key = ((LoadRequest) request).key;
+			if(key.equals("bad"))
+				throw new IllegalArgumentException();
+			
+			List<ModelUpdate> updates = new ArrayList<ModelUpdate>();
+			updates.add(new SetValue(key, "loaded " + key));
+			return updates;
+		}
+		
+	}
+	
+	private Loader loader;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		loader = new Loader();
+		DDMVC.subscribeToEvent(Load.class, loader);
+	}
+	
+	@Test
+	public void oneRoundTripPerLoop() {
+		InProcessTransport transport = new InProcessTransport();
+		transport.setHandler(LoadRequest.class, new Echo());
+		DDMVC.setRequestTransport(transport);
+		
+		DDMVC.fireEvent(new Load("a"));
+		DDMVC.fireEvent(new Load("b"));
+		DDMVC.fireEvent(new Load("c"));
+		DDMVC.runLoop();
+		
+		assertTrue(transport.getRoundTrips() == 1);
+		assertTrue(transport.getRequestsHandled() == 3);
+		assertTrue(DDMVC.getRunLoopStats().getServerRequests() == 3);
+		assertTrue(DDMVC.getRunLoopStats().getRoundTrips() == 1);
+		assertTrue(DDMVC.getRunLoopStats().getRoundTripsSaved() == 2);
+		
+		//The responses are applied in the next run-loop
+		assertTrue(loader.succeeded.size() == 0);
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("a").equals("loaded a"));
+		assertTrue(DDMVC.getValue("c").equals("loaded c"));
+		assertTrue(loader.succeeded.size() == 3);
+		assertTrue(loader.succeeded.get(1).equals("loaded b"));
+		assertTrue(DDMVC.getRunLoopStats().getRoundTrips() == 0);
+	}
+	
+	@Test
+	public void delayedResponse() {
+		QueueExecutor executor = new QueueExecutor();
+		InProcessTransport transport = new InProcessTransport(executor, 50);
+		transport.setHandler(ServerRequest.class, new Echo());
+		DDMVC.setRequestTransport(transport);
+		
+		DDMVC.fireEvent(new Load("a"));
+		DDMVC.runLoop();
+		DDMVC.runLoop();
+		assertTrue(transport.getRequestsHandled() == 0);
+		assertTrue(loader.succeeded.size() == 0);
+		
+		executor.runAll();
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("a").equals("loaded a"));
+		assertTrue(loader.succeeded.size() == 1);
+	}
+	
+	@Test
+	public void failures() {
+		InProcessTransport transport = new InProcessTransport();
+		transport.setHandler(LoadRequest.class, new Echo());
+		DDMVC.setRequestTransport(transport);
+		
+		DDMVC.fireEvent(new Load("bad"));
+		DDMVC.fireEvent(new Load("good"));
+		DDMVC.runLoop();
+		DDMVC.runLoop();
+		
+		assertTrue(loader.failed.size() == 1);
+		assertTrue(loader.failed.get(0) instanceof IllegalArgumentException);
+		assertTrue(loader.succeeded.size() == 1);
+		assertTrue(DDMVC.getValue("good").equals("loaded good"));
+	}
+	
+	@Test
+	public void noTransport() {
+		DDMVC.fireEvent(new Load("a"));
+		DDMVC.runLoop();
+		DDMVC.runLoop();
+		
+		assertTrue(loader.failed.size() == 1);
+		assertTrue(loader.failed.get(0) instanceof IllegalStateException);
+	}
+	
+	@Test
+	public void throwingTransport() {
+		DDMVC.setRequestTransport(new RequestTransport() {
+			@Override
+			public void send(List<ServerRequest> batch) {
+				throw new RuntimeException();
+			}
+		});
+		
+		DDMVC.fireEvent(new Load("a"));
+		assertTrue(DDMVC.runLoop().size() == 1);
+		DDMVC.runLoop();
+		assertTrue(loader.failed.size() == 1);
+	}
+	
+	@Test
+	public void completedOnce() {
+		final List<ServerRequest> sent = new ArrayList<ServerRequest>();
+		DDMVC.setRequestTransport(new RequestTransport() {
+			@Override
+			public void send(List<ServerRequest> batch) {
+				sent.addAll(batch);
+			}
+		});
+		
+		DDMVC.fireEvent(new Load("a"));
+		DDMVC.runLoop();
+		assertTrue(sent.size() == 1);
+		assertTrue(sent.get(0).getController() == loader);
+		
+		sent.get(0).getResponse().onFailure(new RuntimeException());
+		try {
+			sent.get(0).getResponse().onSuccess(null);
+			fail();
+		} catch(IllegalStateException e) {}
+		
+		DDMVC.runLoop();
+		assertTrue(loader.failed.size() == 1 && loader.succeeded.size() == 0);
+	}
+	
+}
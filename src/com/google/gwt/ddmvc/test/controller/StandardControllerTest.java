@@ -105,6 +105,7 @@ public class StandardControllerTest {
 	private class Event1 extends AppEvent {}
 	private class Event2 extends AppEvent {}
 	private class Event3 extends AppEvent {}
+	private class Event4 extends Event1 {}
 	
 	private class NotValidError extends ValidationError {}
 	
@@ -176,4 +177,49 @@ public class StandardControllerTest {
 		assertTrue(controller.executionCount == 0);
 		assertTrue(controller.lastEvent.getClass().equals(Event1.class));
 	}
+	
+	@Test
+	public void duplicateSubscription() {
+		DDMVC.setValue("isValid", true);
+		DDMVC.subscribeToEvent(Event1.class, controller);
+		view.proxyEvent(new Event1());
+		DDMVC.runLoop();
+		
+		assertTrue(controller.executionCount == 1);
+	}
+	
+	@Test
+	public void superclassSubscription() {
+		DDMVC.setValue("isValid", true);
+		view.proxyEvent(new Event4());
+		DDMVC.runLoop();
+		
+		assertTrue(controller.executionCount == 1);
+		assertTrue(controller.lastEvent instanceof Event4);
+	}
+	
+	@Test
+	public void superclassSubscriptionOnce() {
+		DDMVC.setValue("isValid", true);
+		DDMVC.subscribeToEvent(AppEvent.class, controller);
+		view.proxyEvent(new Event4());
+		view.proxyEvent(new Event3());
+		DDMVC.runLoop();
+		
+		assertTrue(controller.executionCount == 2);
+		assertTrue(controller.event3Count == 1);
+	}
+	
+	@Test
+	public void subscriptionAfterDispatch() {
+		DDMVC.setValue("isValid", true);
+		view.proxyEvent(new Event3());
+		DDMVC.runLoop();
+		assertTrue(controller.executionCount == 0);
+		
+		DDMVC.subscribeToEvent(Event3.class, controller);
+		view.proxyEvent(new Event3());
+		DDMVC.runLoop();
+		assertTrue(controller.event3Count == 1);
+	}
 }
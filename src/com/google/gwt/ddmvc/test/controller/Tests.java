@@ -7,6 +7,12 @@ import com.google.gwt.ddmvc.test.controller.StandardControllerTest;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses( {
+	AsyncValidationTest.class,
+	CachingTransportTest.class,
+	EventConflationTest.class,
+	EventPoolTest.class,
+	OptimisticUpdateTest.class,
+	RequestPipelineTest.class,
 	StandardControllerTest.class
 })
 public class Tests {}
@@ -0,0 +1,237 @@
+package com.google.gwt.ddmvc.test.model;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.model.aggregate.Accumulator;
+import com.google.gwt.ddmvc.model.aggregate.AggregateModel;
+import com.google.gwt.ddmvc.model.aggregate.Count;
+import com.google.gwt.ddmvc.model.aggregate.Distinct;
+import com.google.gwt.ddmvc.model.aggregate.GroupBy;
+import com.google.gwt.ddmvc.model.aggregate.Max;
+import com.google.gwt.ddmvc.model.aggregate.Min;
+import com.google.gwt.ddmvc.model.aggregate.Sum;
+import com.google.gwt.ddmvc.model.update.list.Append;
+import com.google.gwt.ddmvc.model.update.list.AppendAll;
+import com.google.gwt.ddmvc.model.update.list.Prepend;
+import com.google.gwt.ddmvc.model.update.list.RemoveAllEqualTo;
+import com.google.gwt.ddmvc.model.update.list.RemoveIndex;
+import com.google.gwt.ddmvc.model.update.list.Sort;
+
+/**
+ * Tests the aggregate models against naive recomputation.
+ */
+public class AggregateModelTest {
+
+	/**
+	 * Wraps an accumulator, counting how often it is rebuilt
+	 */
+	private class Counted implements Accumulator {
+		
+		private Accumulator inner;
+		public int clears;
+		
+		public Counted(Accumulator inner) {
+			this.inner = inner;
+		}
+		
+		@Override
+		public void clear() {
+			clears++;
+			inner.clear();
+		}
+		
+		@Override
+		public void add(Object element) {
+			inner.add(element);
+		}
+		
+		@Override
+		public boolean remove(Object element) {
+			return inner.remove(element);
+		}
+		
+		@Override
+		public Object getValue() {
+			return inner.getValue();
+		}
+		
+	}
+	
+	private GroupBy.Grouping parity = new GroupBy.Grouping() {
+		@Override
+		public Object groupOf(Object element) {
+			return ((Integer) element) % 2 == 0 ? "even" : "odd";
+		}
+	};
+	
+	private GroupBy.Factory counts = new GroupBy.Factory() {
+		@Override
+		public Accumulator create() {
+			return new Count();
+		}
+	};
+	
+	private Counted count, sum, min, max, distinct, groups;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		count = new Counted(new Count());
+		sum = new Counted(new Sum());
+		min = new Counted(new Min());
+		max = new Counted(new Max());
+		distinct = new Counted(new Distinct());
+		groups = new Counted(new GroupBy(parity, counts));
+	}
+	
+	private void setModels(String pathString) {
+		DDMVC.setModel("count", new AggregateModel(pathString, count));
+		DDMVC.setModel("sum", new AggregateModel(pathString, sum));
+		DDMVC.setModel("min", new AggregateModel(pathString, min));
+		DDMVC.setModel("max", new AggregateModel(pathString, max));
+		DDMVC.setModel("distinct", new AggregateModel(pathString, distinct));
+		DDMVC.setModel("groups", new AggregateModel(pathString, groups));
+	}
+	
+	private void checkAgainst(List<Integer> elements) {
+		long naiveSum = 0;
+		Map<Object, Object> naiveGroups = new HashMap<Object, Object>();
+		for(Integer element : elements) {
+			naiveSum += element;
+			Object group = parity.groupOf(element);
+			Integer size = (Integer) naiveGroups.get(group);
+			naiveGroups.put(group, size == null ? 1 : size + 1);
+		}
+		
+		assertTrue(DDMVC.getValue("count").equals(elements.size()));
+		assertTrue(DDMVC.getValue("sum").equals(naiveSum));
+		assertTrue(DDMVC.getValue("distinct").equals(
+				new HashSet<Integer>(elements).size()));
+		assertTrue(DDMVC.getValue("groups").equals(naiveGroups));
+		
+		if(elements.isEmpty()) {
+			assertTrue(DDMVC.getValue("min") == null);
+			assertTrue(DDMVC.getValue("max") == null);
+		}
+		else {
+			assertTrue(DDMVC.getValue("min").equals(Collections.min(elements)));
+			assertTrue(DDMVC.getValue("max").equals(Collections.max(elements)));
+		}
+	}
+	
+	private void assertNoRebuilds() {
+		assertTrue(count.clears == 1);
+		assertTrue(sum.clears == 1);
+		assertTrue(min.clears == 1);
+		assertTrue(max.clears == 1);
+		assertTrue(distinct.clears == 1);
+		assertTrue(groups.clears == 1);
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void listAgainstNaive() {
+		DDMVC.setValue("list", new ArrayList<Integer>());
+		setModels("list");
+		checkAgainst(new ArrayList<Integer>());
+		
+		Random random = new Random(42);
+		for(int i = 0; i < 500; i++) {
+			List<Integer> list = (List<Integer>) DDMVC.getValue("list");
+			int op = random.nextInt(6);
+			
+			if(op == 0 || list.isEmpty())
+				DDMVC.handleUpdate(new Append("list", random.nextInt(20)));
+			else if(op == 1)
+				DDMVC.handleUpdate(new Prepend("list", random.nextInt(20)));
+			else if(op == 2) {
+				List<Integer> more = new ArrayList<Integer>();
+				more.add(random.nextInt(20));
+				more.add(random.nextInt(20));
+				DDMVC.handleUpdate(new AppendAll("list", more));
+			}
+			else if(op == 3)
+				DDMVC.handleUpdate(new RemoveIndex("list", 
+						random.nextInt(list.size())));
+			else if(op == 4)
+				DDMVC.handleUpdate(new RemoveAllEqualTo("list", 
+						random.nextInt(20)));
+			else
+				DDMVC.handleUpdate(new Sort("list"));
+			
+			DDMVC.runLoop();
+			checkAgainst((List<Integer>) DDMVC.getValue("list"));
+		}
+		
+		assertNoRebuilds();
+	}
+	
+	@Test
+	public void childrenAgainstNaive() {
+		setModels("scores.*");
+		
+		Map<String, Integer> naive = new HashMap<String, Integer>();
+		Random random = new Random(7);
+		for(int i = 0; i < 300; i++) {
+			String key = "k" + random.nextInt(10);
+			if(random.nextInt(3) == 0) {
+				if(naive.containsKey(key)) {
+					DDMVC.deleteModel("scores." + key);
+					naive.remove(key);
+				}
+			}
+			else {
+				int value = random.nextInt(20);
+				DDMVC.setValue("scores." + key, value);
+				naive.put(key, value);
+			}
+			
+			DDMVC.runLoop();
+			checkAgainst(new ArrayList<Integer>(naive.values()));
+		}
+		
+		assertNoRebuilds();
+	}
+	
+	@Test
+	public void fallback() {
+		DDMVC.setValue("scores.a", 1);
+		DDMVC.setValue("scores.b", 2);
+		DDMVC.setModel("sum", new AggregateModel("scores.*", sum));
+		assertTrue(DDMVC.getValue("sum").equals(3L));
+		
+		//Changes deeper in the subtree are not understood
+		DDMVC.setValue("scores.a.note", "ignored");
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("sum").equals(3L));
+		assertTrue(sum.clears == 2);
+		
+		DDMVC.update("scores.b");
+		DDMVC.runLoop();
+		assertTrue(sum.clears == 3);
+	}
+	
+	@Test
+	public void floatingSum() {
+		List<Number> list = new ArrayList<Number>();
+		list.add(1);
+		list.add(0.5);
+		DDMVC.setValue("list", list);
+		DDMVC.setModel("sum", new AggregateModel("list", new Sum()));
+		assertTrue(DDMVC.getValue("sum").equals(1.5));
+		
+		DDMVC.handleUpdate(new RemoveIndex("list", 1));
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("sum").equals(1L));
+	}
+	
+}
@@ -0,0 +1,217 @@
+package com.google.gwt.ddmvc.test.model;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.TaskExecutor;
+import com.google.gwt.ddmvc.model.AsyncComputedModel;
+import com.google.gwt.ddmvc.model.update.ExceptionComputed;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.view.View;
+
+/**
+ * Tests that asynchronous computed models apply their results in a later
+ * run-loop, and cancel superseded computations.
+ */
+public class AsyncComputedModelTest {
+
+	/**
+	 * Queues tasks until the test runs them
+	 */
+	private class QueueExecutor implements TaskExecutor {
+
+		private List<Runnable> tasks = new ArrayList<Runnable>();
+		
+		@Override
+		public void schedule(Runnable task, int delayMillis) {
+			tasks.add(task);
+		}
+		
+		@Override
+		public long currentTimeMillis() {
+			return 0;
+		}
+		
+		public void runAll() {
+			List<Runnable> running = tasks;
+			tasks = new ArrayList<Runnable>();
+			for(Runnable task : running)
+				task.run();
+		}
+		
+	}
+	
+	private class Times10 extends AsyncComputedModel {
+
+		public int started;
+		public boolean retain = true;
+		public Computation held;
+		
+		public Times10(TaskExecutor executor) {
+			super(executor);
+		}
+		
+		@Override
+		public boolean retainsPreviousValue() {
+			return retain;
+		}
+		
+		@Override
+		public void computeAsync(Computation computation) {
+			started++;
+			int a = (Integer) DDMVC.getDataRoot().getValue("A", this);
+			if(a < 0)
+				throw new IllegalArgumentException();
+			if(executor == null)
+				held = computation;
+			else
+				computation.complete(a * 10);
+		}
+		
+	}
+	
+	private class Display extends View {
+
+		public List<Object> seen;
+		public int exceptions;
+		
+		@Override
+		protected void initialize() {
+			seen = new ArrayList<Object>();
+			observe("S.$");
+		}
+		
+		@Override
+		public void modelChanged(Collection<ModelUpdate> updates) {
+			for(ModelUpdate update : updates)
+				if(update instanceof ExceptionComputed)
+					exceptions++;
+			super.modelChanged(updates);
+		}
+
+		@Override
+		protected void render() {
+			if(DDMVC.hasPath("S"))
+				seen.add(DDMVC.getValue("S"));
+		}
+		
+	}
+	
+	private QueueExecutor executor;
+	private Times10 model;
+	private Display display;
+	
+	private void build(QueueExecutor executor) {
+		this.executor = executor;
+		model = new Times10(executor);
+		DDMVC.setModel("S", model);
+		display = new Display();
+	}
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		DDMVC.setValue("A", 1);
+	}
+	
+	@Test
+	public void pendingUntilApplied() {
+		build(new QueueExecutor());
+		assertTrue(DDMVC.getValue("S") == AsyncComputedModel.PENDING);
+		assertTrue(model.isComputing());
+		
+		executor.runAll();
+		assertTrue(DDMVC.getValue("S") == AsyncComputedModel.PENDING);
+		
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("S").equals(10));
+		assertFalse(model.isComputing());
+		assertTrue(display.seen.get(display.seen.size() - 1).equals(10));
+	}
+	
+	@Test
+	public void previousValueRetained() {
+		build(new QueueExecutor());
+		executor.runAll();
+		DDMVC.runLoop();
+		
+		DDMVC.setValue("A", 2);
+		DDMVC.runLoop();
+		assertTrue(model.isComputing());
+		assertTrue(DDMVC.getValue("S").equals(10));
+		
+		executor.runAll();
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("S").equals(20));
+	}
+	
+	@Test
+	public void pendingMarker() {
+		build(new QueueExecutor());
+		model.retain = false;
+		executor.runAll();
+		DDMVC.runLoop();
+		
+		DDMVC.setValue("A", 2);
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("S") == AsyncComputedModel.PENDING);
+	}
+	
+	@Test
+	public void supersededNotStarted() {
+		build(new QueueExecutor());
+		executor.runAll();
+		DDMVC.runLoop();
+		model.started = 0;
+		
+		DDMVC.setValue("A", 2);
+		DDMVC.runLoop();
+		DDMVC.setValue("A", 3);
+		DDMVC.runLoop();
+		executor.runAll();
+		DDMVC.runLoop();
+		
+		assertTrue(model.started == 1);
+		assertTrue(DDMVC.getValue("S").equals(30));
+	}
+	
+	@Test
+	public void supersededIgnored() {
+		build(null);
+		DDMVC.getValue("S");
+		AsyncComputedModel.Computation first = model.held;
+		
+		DDMVC.setValue("A", 2);
+		DDMVC.runLoop();
+		AsyncComputedModel.Computation second = model.held;
+		
+		assertTrue(first.isCancelled());
+		assertFalse(second.isCancelled());
+		
+		second.complete(20);
+		first.complete(10);
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("S").equals(20));
+	}
+	
+	@Test
+	public void failure() {
+		build(new QueueExecutor());
+		executor.runAll();
+		DDMVC.runLoop();
+		
+		DDMVC.setValue("A", -1);
+		DDMVC.runLoop();
+		executor.runAll();
+		DDMVC.runLoop();
+		
+		assertTrue(model.getError() instanceof IllegalArgumentException);
+		assertTrue(display.exceptions == 1);
+		assertTrue(DDMVC.getValue("S").equals(10));
+	}
+	
+}
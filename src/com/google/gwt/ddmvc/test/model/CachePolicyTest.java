@@ -0,0 +1,244 @@
+package com.google.gwt.ddmvc.test.model;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.model.CachePolicy;
+import com.google.gwt.ddmvc.model.ComputedModel;
+import com.google.gwt.ddmvc.model.IdleCachePolicy;
+import com.google.gwt.ddmvc.model.LruCachePolicy;
+import com.google.gwt.ddmvc.model.aggregate.AggregateModel;
+import com.google.gwt.ddmvc.model.aggregate.Sum;
+import com.google.gwt.ddmvc.model.update.list.Append;
+
+/**
+ * Tests that cache policies evict computed values, and that evicted models
+ * recompute correctly.
+ */
+public class CachePolicyTest {
+
+	private class Range extends ComputedModel {
+		
+		private String dependent;
+		public int computes;
+		private boolean lazy;
+		
+		public Range(String dependent, boolean lazy) {
+			this.dependent = dependent;
+			this.lazy = lazy;
+		}
+		
+		@Override
+		public boolean isLazy() {
+			return lazy;
+		}
+		
+		@Override
+		public Object computeValue() {
+			computes++;
+			int size = (Integer) DDMVC.getDataRoot().getValue(dependent, this);
+			List<Integer> list = new ArrayList<Integer>();
+			for(int i = 0; i < size; i++)
+				list.add(i);
+			return list;
+		}
+		
+	}
+	
+	private class Increment extends ComputedModel {
+		
+		private String dependent;
+		
+		public Increment(String dependent) {
+			this.dependent = dependent;
+		}
+		
+		@Override
+		public boolean isLazy() {
+			return true;
+		}
+		
+		@Override
+		public Object computeValue() {
+			return (Integer) DDMVC.getDataRoot().getValue(dependent, this) + 1;
+		}
+		
+	}
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+	}
+	
+	@Test
+	public void unboundedByDefault() {
+		assertTrue(DDMVC.getCachePolicy() == CachePolicy.UNBOUNDED);
+		
+		DDMVC.setValue("n", 3);
+		Range range = new Range("n", false);
+		DDMVC.setModel("range", range);
+		DDMVC.getValue("range");
+		DDMVC.getValue("range");
+		assertTrue(range.computes == 1);
+	}
+	
+	@Test
+	public void leastRecentlyUsed() {
+		LruCachePolicy policy = new LruCachePolicy(2);
+		DDMVC.setCachePolicy(policy);
+		
+		DDMVC.setValue("n", 3);
+		Range a = new Range("n", false);
+		Range b = new Range("n", false);
+		Range c = new Range("n", false);
+		DDMVC.setModel("a", a);
+		DDMVC.setModel("b", b);
+		DDMVC.setModel("c", c);
+		
+		DDMVC.getValue("a");
+		DDMVC.getValue("b");
+		DDMVC.getValue("a");
+		DDMVC.getValue("c");
+		assertTrue(policy.getEvictions() == 1);
+		assertTrue(policy.getSize() == 2);
+		
+		//b was least recently used
+		DDMVC.getValue("a");
+		assertTrue(a.computes == 1);
+		assertTrue(((List<?>) DDMVC.getValue("b")).size() == 3);
+		assertTrue(b.computes == 2);
+		assertTrue(policy.getEvictions() == 2);
+	}
+	
+	@Test
+	public void weighed() {
+		LruCachePolicy policy = new LruCachePolicy(10, LruCachePolicy.SIZE);
+		DDMVC.setCachePolicy(policy);
+		
+		DDMVC.setValue("smallSize", 2);
+		DDMVC.setValue("largeSize", 9);
+		Range small = new Range("smallSize", false);
+		Range large = new Range("largeSize", false);
+		DDMVC.setModel("small", small);
+		DDMVC.setModel("large", large);
+		
+		DDMVC.getValue("small");
+		assertTrue(policy.getWeight() == 2);
+		DDMVC.getValue("large");
+		assertTrue(policy.getWeight() == 9);
+		assertTrue(policy.getEvictions() == 1);
+		
+		//An evicted model recomputes when its dependency changes
+		DDMVC.setValue("smallSize", 1);
+		DDMVC.runLoop();
+		assertTrue(small.computes == 2);
+		assertTrue(((List<?>) DDMVC.getValue("small")).size() == 1);
+		assertTrue(policy.getWeight() == 10);
+	}
+	
+	@Test
+	public void lazyEviction() {
+		LruCachePolicy policy = new LruCachePolicy(1);
+		DDMVC.setCachePolicy(policy);
+		
+		DDMVC.setValue("n", 2);
+		Range a = new Range("n", true);
+		Range b = new Range("n", true);
+		DDMVC.setModel("a", a);
+		DDMVC.setModel("b", b);
+		
+		DDMVC.getValue("a");
+		DDMVC.getValue("b");
+		assertTrue(a.getState() == ComputedModel.State.DIRTY);
+		assertTrue(((List<?>) DDMVC.getValue("a")).size() == 2);
+		assertTrue(a.computes == 2);
+	}
+	
+	@Test
+	public void lazyEvictionInvalidatesDependents() {
+		DDMVC.setCachePolicy(new LruCachePolicy(1));
+		
+		//Caching C evicts B while C is CLEAN
+		DDMVC.setValue("A", 0);
+		DDMVC.setModel("B", new Increment("A"));
+		DDMVC.setModel("C", new Increment("B"));
+		assertTrue(DDMVC.getValue("C").equals(2));
+		
+		DDMVC.setValue("A", 5);
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("C").equals(7));
+	}
+	
+	@Test
+	public void incrementalEvictionWithPendingUpdate() {
+		DDMVC.setCachePolicy(new LruCachePolicy(1));
+		
+		List<Integer> list = new ArrayList<Integer>();
+		list.add(1);
+		list.add(2);
+		DDMVC.setValue("list", list);
+		DDMVC.setModel("sum", new AggregateModel("list", new Sum()));
+		DDMVC.setValue("n", 2);
+		DDMVC.setModel("range", new Range("n", false));
+		assertTrue(DDMVC.getValue("sum").equals(3L));
+		
+		//The sum is evicted, then read before it is told of the append
+		DDMVC.handleUpdate(new Append("list", 10));
+		DDMVC.getValue("range");
+		assertTrue(DDMVC.getValue("sum").equals(13L));
+		
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("sum").equals(13L));
+	}
+	
+	@Test
+	public void idle() {
+		IdleCachePolicy policy = new IdleCachePolicy(2);
+		DDMVC.setCachePolicy(policy);
+		
+		DDMVC.setValue("n", 2);
+		Range used = new Range("n", false);
+		Range unused = new Range("n", false);
+		DDMVC.setModel("used", used);
+		DDMVC.setModel("unused", unused);
+		DDMVC.getValue("used");
+		DDMVC.getValue("unused");
+		
+		for(int i = 0; i < 3; i++) {
+			DDMVC.getValue("used");
+			DDMVC.runLoop();
+		}
+		
+		assertTrue(policy.getEvictions() == 1);
+		assertTrue(policy.getSize() == 1);
+		DDMVC.getValue("used");
+		DDMVC.getValue("unused");
+		assertTrue(used.computes == 1);
+		assertTrue(unused.computes == 2);
+	}
+	
+	@Test
+	public void optOut() {
+		DDMVC.setCachePolicy(new LruCachePolicy(1));
+		
+		DDMVC.setValue("n", 2);
+		Range pinned = new Range("n", false) {
+			@Override
+			public CachePolicy getCachePolicy() {
+				return CachePolicy.UNBOUNDED;
+			}
+		};
+		Range other = new Range("n", false);
+		DDMVC.setModel("pinned", pinned);
+		DDMVC.setModel("other", other);
+		
+		DDMVC.getValue("pinned");
+		DDMVC.getValue("other");
+		DDMVC.getValue("pinned");
+		assertTrue(pinned.computes == 1);
+	}
+	
+}
@@ -0,0 +1,173 @@
+package com.google.gwt.ddmvc.test.model;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.model.ComputedModel;
+import com.google.gwt.ddmvc.model.ComputedModel.State;
+import com.google.gwt.ddmvc.view.View;
+
+/**
+ * Tests that computed models whose recomputed value is unchanged do not
+ * propagate the change to their dependents.
+ */
+public class EqualityCutoffTest {
+
+	private class Tens extends ComputedModel {
+
+		private boolean lazy;
+		private boolean alwaysChanged;
+		
+		public Tens(boolean lazy, boolean alwaysChanged) {
+			this.lazy = lazy;
+			this.alwaysChanged = alwaysChanged;
+		}
+		
+		@Override
+		public boolean isLazy() {
+			return lazy;
+		}
+		
+		@Override
+		public boolean isEquivalent(Object oldValue, Object newValue) {
+			return !alwaysChanged && super.isEquivalent(oldValue, newValue);
+		}
+		
+		@Override
+		public Object computeValue() {
+			return (Integer) DDMVC.getDataRoot().getValue("A", this) / 10;
+		}
+		
+	}
+	
+	private class Increment extends ComputedModel {
+
+		private boolean lazy;
+		public int computed;
+		
+		public Increment(boolean lazy) {
+			this.lazy = lazy;
+		}
+		
+		@Override
+		public boolean isLazy() {
+			return lazy;
+		}
+		
+		@Override
+		public Object computeValue() {
+			computed++;
+			return (Integer) DDMVC.getDataRoot().getValue("B", this) + 1;
+		}
+		
+	}
+	
+	private class Display extends View {
+
+		public int render;
+		
+		@Override
+		protected void initialize() {
+			observe("C.$");
+		}
+
+		@Override
+		protected void render() {
+			render++;
+		}
+		
+	}
+	
+	private Tens b;
+	private Increment c;
+	private Display display;
+	
+	private void build(boolean lazy, boolean alwaysChanged) {
+		b = new Tens(lazy, alwaysChanged);
+		c = new Increment(lazy);
+		DDMVC.setModel("B", b);
+		DDMVC.setModel("C", c);
+		assertTrue(DDMVC.getValue("C").equals(2));
+		display = new Display();
+		DDMVC.runLoop();
+		c.computed = 0;
+		display.render = 0;
+	}
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		DDMVC.setValue("A", 12);
+	}
+	
+	@Test
+	public void eagerCutoff() {
+		build(false, false);
+		
+		DDMVC.setValue("A", 15);
+		DDMVC.runLoop();
+		
+		assertTrue(c.computed == 0);
+		assertTrue(display.render == 0);
+		assertTrue(b.getRecomputeCount() == 1);
+		assertTrue(b.getCutoffCount() == 1);
+		assertTrue(DDMVC.getRunLoopStats().getCutoffs() == 1);
+	}
+	
+	@Test
+	public void eagerChange() {
+		build(false, false);
+		
+		DDMVC.setValue("A", 25);
+		DDMVC.runLoop();
+		
+		assertTrue(c.computed == 1);
+		assertTrue(display.render == 1);
+		assertTrue(DDMVC.getValue("C").equals(3));
+		assertTrue(b.getCutoffCount() == 0);
+		assertTrue(DDMVC.getRunLoopStats().getCutoffs() == 0);
+	}
+	
+	@Test
+	public void customEquivalence() {
+		build(false, true);
+		
+		DDMVC.setValue("A", 15);
+		DDMVC.runLoop();
+		
+		//C is recomputed, but its own value is unchanged
+		assertTrue(c.computed == 1);
+		assertTrue(c.getCutoffCount() == 1);
+		assertTrue(display.render == 0);
+		assertTrue(b.getCutoffCount() == 0);
+	}
+	
+	@Test
+	public void lazyCutoff() {
+		build(true, false);
+		
+		DDMVC.setValue("A", 15);
+		DDMVC.runLoop();
+		
+		//The view is told to check, but the value it reads is not recomputed
+		assertTrue(c.getState() == State.CHECK);
+		assertTrue(DDMVC.getValue("C").equals(2));
+		assertTrue(c.computed == 0);
+		assertTrue(c.getState() == State.CLEAN);
+		assertTrue(b.getCutoffCount() == 1);
+	}
+	
+	@Test
+	public void lazyChange() {
+		build(true, false);
+		
+		DDMVC.setValue("A", 25);
+		DDMVC.runLoop();
+		
+		assertTrue(DDMVC.getValue("C").equals(3));
+		assertTrue(c.computed == 1);
+		assertTrue(b.getCutoffCount() == 0);
+	}
+	
+}
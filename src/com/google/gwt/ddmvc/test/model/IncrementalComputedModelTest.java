@@ -0,0 +1,165 @@
+package com.google.gwt.ddmvc.test.model;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.model.IncrementalComputedModel;
+import com.google.gwt.ddmvc.model.update.SetValue;
+import com.google.gwt.ddmvc.model.update.list.Append;
+import com.google.gwt.ddmvc.model.update.list.AppendAll;
+import com.google.gwt.ddmvc.model.update.list.Prepend;
+import com.google.gwt.ddmvc.model.update.list.RemoveAllEqualTo;
+import com.google.gwt.ddmvc.model.update.list.RemoveAllThatMatch;
+import com.google.gwt.ddmvc.model.update.list.RemoveIndex;
+import com.google.gwt.ddmvc.model.update.list.Sort;
+
+/**
+ * Tests that incremental computed models apply updates through their hooks,
+ * and fall back to rebuilding when they cannot.
+ */
+public class IncrementalComputedModelTest {
+
+	private class Sum extends IncrementalComputedModel {
+
+		private int sum;
+		public int rebuilds;
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		protected void rebuild() {
+			rebuilds++;
+			sum = 0;
+			for(Integer i : (List<Integer>) DDMVC.getDataRoot().getValue("list", 
+					this))
+				sum += i;
+		}
+		
+		@Override
+		protected Object currentValue() {
+			return sum;
+		}
+		
+		@Override
+		protected boolean onAppend(Append update, Object element) {
+			sum += (Integer) element;
+			return true;
+		}
+		
+		@Override
+		protected boolean onAppendAll(AppendAll update,
+				Collection<? extends Object> elements) {
+			for(Object element : elements)
+				sum += (Integer) element;
+			return true;
+		}
+		
+		@Override
+		protected boolean onPrepend(Prepend update, Object element) {
+			sum += (Integer) element;
+			return true;
+		}
+		
+		@Override
+		protected boolean onRemoveIndex(RemoveIndex update, int index,
+				Object element) {
+			sum -= (Integer) element;
+			return true;
+		}
+		
+		@Override
+		protected boolean onRemoveAll(RemoveAllThatMatch update,
+				List<Object> elements) {
+			for(Object element : elements)
+				sum -= (Integer) element;
+			return true;
+		}
+		
+		@Override
+		protected boolean onSort(Sort update) {
+			return true;
+		}
+		
+	}
+	
+	private Sum sum;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		DDMVC.setValue("list", new ArrayList<Integer>(Arrays.asList(1, 2, 3)));
+		sum = new Sum();
+		DDMVC.setModel("sum", sum);
+		assertTrue(DDMVC.getValue("sum").equals(6));
+		sum.rebuilds = 0;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private int naiveSum() {
+		int naive = 0;
+		for(Integer i : (List<Integer>) DDMVC.getValue("list"))
+			naive += i;
+		return naive;
+	}
+	
+	@Test
+	public void deltas() {
+		DDMVC.handleUpdate(new Append("list", 4));
+		DDMVC.handleUpdate(new AppendAll("list", Arrays.asList(5, 6)));
+		DDMVC.handleUpdate(new Prepend("list", 7));
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("sum").equals(naiveSum()));
+		
+		DDMVC.handleUpdate(new RemoveIndex("list", 0));
+		DDMVC.handleUpdate(new RemoveAllEqualTo("list", 2));
+		DDMVC.handleUpdate(new Sort("list"));
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("sum").equals(naiveSum()));
+		assertTrue(DDMVC.getValue("sum").equals(19));
+		
+		assertTrue(sum.rebuilds == 0);
+	}
+	
+	@Test
+	public void manyAppends() {
+		for(int i = 0; i < 1000; i++) {
+			DDMVC.handleUpdate(new Append("list", i));
+			DDMVC.runLoop();
+		}
+		
+		assertTrue(DDMVC.getValue("sum").equals(naiveSum()));
+		assertTrue(sum.rebuilds == 0);
+		assertTrue(sum.getRecomputeCount() == 1000);
+	}
+	
+	@Test
+	public void fallback() {
+		DDMVC.setValue("list", new ArrayList<Integer>(Arrays.asList(10, 20)));
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("sum").equals(30));
+		assertTrue(sum.rebuilds == 1);
+		
+		DDMVC.update("list");
+		DDMVC.runLoop();
+		assertTrue(sum.rebuilds == 2);
+	}
+	
+	@Test
+	public void updateGetters() {
+		SetValue set = new SetValue("list", new ArrayList<Integer>());
+		Object previous = DDMVC.getValue("list");
+		DDMVC.handleUpdate(set);
+		assertTrue(set.getPreviousValue() == previous);
+		
+		RemoveAllEqualTo remove = new RemoveAllEqualTo("other", 1);
+		DDMVC.setValue("other", new ArrayList<Integer>(Arrays.asList(1, 2, 1)));
+		DDMVC.handleUpdate(remove);
+		assertTrue(remove.getRemoved().size() == 2);
+		assertTrue(remove.getNumRemoved() == 2);
+	}
+	
+}
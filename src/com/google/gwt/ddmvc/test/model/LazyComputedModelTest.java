@@ -0,0 +1,165 @@
+package com.google.gwt.ddmvc.test.model;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.model.ComputedModel;
+import com.google.gwt.ddmvc.model.ComputedModel.State;
+import com.google.gwt.ddmvc.view.View;
+
+/**
+ * Tests that lazy computed models are only recomputed when read, and that
+ * invalidation marks their dependents without recomputing them.
+ */
+public class LazyComputedModelTest {
+
+	private class Increment extends ComputedModel {
+
+		private String dependent;
+		private boolean lazy;
+		public int computed;
+		
+		public Increment(String dependent, boolean lazy) {
+			this.dependent = dependent;
+			this.lazy = lazy;
+		}
+		
+		@Override
+		public boolean isLazy() {
+			return lazy;
+		}
+
+		@Override
+		public Object computeValue() {
+			computed++;
+			return (Integer) DDMVC.getDataRoot().getValue(dependent, this) + 1;
+		}
+		
+	}
+	
+	private class Display extends View {
+
+		public int render;
+		public Object last;
+		
+		@Override
+		protected void initialize() {
+			observe("C.$");
+		}
+
+		@Override
+		protected void render() {
+			render++;
+			if(DDMVC.hasPath("C"))
+				last = DDMVC.getValue("C");
+		}
+		
+	}
+	
+	private Increment b;
+	private Increment c;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		DDMVC.setValue("A", 0);
+		b = new Increment("A", true);
+		c = new Increment("B", true);
+		DDMVC.setModel("B", b);
+		DDMVC.setModel("C", c);
+		assertTrue(DDMVC.getValue("C").equals(2));
+		DDMVC.runLoop();
+		b.computed = 0;
+		c.computed = 0;
+	}
+	
+	@Test
+	public void invalidationDoesNotRecompute() {
+		for(int i = 1; i <= 10; i++) {
+			DDMVC.setValue("A", i);
+			DDMVC.runLoop();
+		}
+		
+		assertTrue(b.computed == 0);
+		assertTrue(c.computed == 0);
+		assertTrue(b.getState() == State.DIRTY);
+		assertTrue(c.getState() == State.CHECK);
+	}
+	
+	@Test
+	public void readRecomputesOnce() {
+		DDMVC.setValue("A", 5);
+		DDMVC.runLoop();
+		
+		assertTrue(DDMVC.getValue("C").equals(7));
+		assertTrue(DDMVC.getValue("C").equals(7));
+		assertTrue(b.computed == 1);
+		assertTrue(c.computed == 1);
+		assertTrue(b.getState() == State.CLEAN);
+		assertTrue(c.getState() == State.CLEAN);
+	}
+	
+	@Test
+	public void readIntermediate() {
+		DDMVC.setValue("A", 5);
+		DDMVC.runLoop();
+		
+		assertTrue(DDMVC.getValue("B").equals(6));
+		assertTrue(c.getState() == State.CHECK);
+		assertTrue(DDMVC.getValue("C").equals(7));
+		assertTrue(b.computed == 1);
+		assertTrue(c.computed == 1);
+	}
+	
+	@Test
+	public void viewPullsValue() {
+		Display display = new Display();
+		display.render = 0;
+		
+		DDMVC.setValue("A", 5);
+		DDMVC.runLoop();
+		
+		assertTrue(display.render == 1);
+		assertTrue(display.last.equals(7));
+		assertTrue(c.computed == 1);
+	}
+	
+	@Test
+	public void eagerDependent() {
+		Increment d = new Increment("C", false);
+		DDMVC.setModel("D", d);
+		assertTrue(DDMVC.getValue("D").equals(3));
+		d.computed = 0;
+		
+		DDMVC.setValue("A", 5);
+		DDMVC.runLoop();
+		
+		assertTrue(d.computed == 1);
+		assertTrue(b.computed == 1);
+		assertTrue(c.computed == 1);
+		assertTrue(DDMVC.getValue("D").equals(8));
+	}
+	
+	@Test
+	public void dependencyThrows() {
+		//B cannot add one to a String
+		DDMVC.setValue("A", "x");
+		DDMVC.runLoop();
+		
+		for(int i = 0; i < 2; i++) {
+			try {
+				DDMVC.getValue("C");
+				fail();
+			}
+			catch(ClassCastException e) {}
+			assertTrue(c.getState() == State.CHECK);
+		}
+		
+		DDMVC.setValue("A", 5);
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("C").equals(7));
+		assertTrue(c.getState() == State.CLEAN);
+	}
+	
+}
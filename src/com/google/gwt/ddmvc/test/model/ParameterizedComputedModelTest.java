@@ -0,0 +1,153 @@
+package com.google.gwt.ddmvc.test.model;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.event.Observer;
+import com.google.gwt.ddmvc.model.ParameterizedComputedModel;
+import com.google.gwt.ddmvc.view.View;
+
+/**
+ * Tests that parameterized computed models memoize each argument with its
+ * own dependencies, and drop unused arguments.
+ */
+public class ParameterizedComputedModelTest {
+
+	/**
+	 * The orders of a customer, where the orders of customer X are stored at
+	 * orders.X
+	 */
+	private class OrdersFor extends ParameterizedComputedModel {
+		
+		public int computes;
+		
+		public OrdersFor() {
+			super();
+		}
+		
+		public OrdersFor(int maxEntries) {
+			super(maxEntries);
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		protected Object computeValue(String argument, Observer observer) {
+			computes++;
+			List<String> orders = (List<String>) DDMVC.getDataRoot()
+				.getValue("orders." + argument, observer);
+			return orders.size();
+		}
+		
+	}
+	
+	private class CountView extends View {
+		
+		public int renders;
+		
+		public CountView(String path) {
+			super();
+			observe(path);
+		}
+		
+		@Override
+		protected void initialize() {
+			renders = 0;
+		}
+		
+		@Override
+		protected void render() {
+			renders++;
+		}
+		
+	}
+	
+	private List<String> orders(String... ids) {
+		List<String> list = new ArrayList<String>();
+		for(String id : ids)
+			list.add(id);
+		return list;
+	}
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		DDMVC.setValue("orders.alice", orders("a1", "a2"));
+		DDMVC.setValue("orders.bob", orders("b1"));
+		DDMVC.setValue("orders.carol", orders());
+	}
+	
+	@Test
+	public void memoized() {
+		OrdersFor ordersFor = new OrdersFor();
+		DDMVC.setModel("ordersFor", ordersFor);
+		
+		assertTrue(DDMVC.getValue("ordersFor.alice").equals(2));
+		assertTrue(DDMVC.getValue("ordersFor.bob").equals(1));
+		assertTrue(DDMVC.getValue("ordersFor.alice").equals(2));
+		assertTrue(ordersFor.computes == 2);
+		assertTrue(ordersFor.getEntryCount() == 2);
+	}
+	
+	@Test
+	public void perArgumentInvalidation() {
+		OrdersFor ordersFor = new OrdersFor();
+		DDMVC.setModel("ordersFor", ordersFor);
+		CountView aliceView = new CountView("ordersFor.alice.$");
+		CountView bobView = new CountView("ordersFor.bob.$");
+		DDMVC.getValue("ordersFor.alice");
+		DDMVC.getValue("ordersFor.bob");
+		
+		DDMVC.setValue("orders.alice", orders("a1", "a2", "a3"));
+		DDMVC.runLoop();
+		
+		assertTrue(ordersFor.computes == 3);
+		assertTrue(DDMVC.getValue("ordersFor.alice").equals(3));
+		assertTrue(aliceView.renders == 2);
+		assertTrue(bobView.renders == 1);
+	}
+	
+	@Test
+	public void leastRecentlyUsed() {
+		OrdersFor ordersFor = new OrdersFor(2);
+		DDMVC.setModel("ordersFor", ordersFor);
+		
+		DDMVC.getValue("ordersFor.alice");
+		DDMVC.getValue("ordersFor.bob");
+		DDMVC.getValue("ordersFor.alice");
+		DDMVC.getValue("ordersFor.carol");
+		
+		assertTrue(ordersFor.getEntryCount() == 2);
+		assertTrue(ordersFor.getEvictionCount() == 1);
+		assertFalse(ordersFor.getChildKeys().contains("bob"));
+		
+		//The dropped argument no longer observes its dependencies
+		assertTrue(DDMVC.getObservers("orders.bob.$").isEmpty());
+		DDMVC.setValue("orders.bob", orders("b1", "b2"));
+		DDMVC.runLoop();
+		assertTrue(ordersFor.computes == 3);
+		
+		assertTrue(DDMVC.getValue("ordersFor.bob").equals(2));
+		assertTrue(ordersFor.computes == 4);
+	}
+	
+	@Test
+	public void observedArgumentsKept() {
+		OrdersFor ordersFor = new OrdersFor(1);
+		DDMVC.setModel("ordersFor", ordersFor);
+		CountView aliceView = new CountView("ordersFor.alice.$");
+		
+		DDMVC.getValue("ordersFor.alice");
+		DDMVC.getValue("ordersFor.bob");
+		DDMVC.getValue("ordersFor.carol");
+		assertTrue(ordersFor.getChildKeys().contains("alice"));
+		
+		DDMVC.setValue("orders.alice", orders());
+		DDMVC.runLoop();
+		assertTrue(aliceView.renders == 2);
+		assertTrue(DDMVC.getValue("ordersFor.alice").equals(0));
+	}
+	
+}
@@ -6,11 +6,19 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses( {
 	com.google.gwt.ddmvc.test.model.update.Tests.class,
+	AggregateModelTest.class,
+	AsyncComputedModelTest.class,
+	CachePolicyTest.class,
 	ComputedModelTest.class,
+	EqualityCutoffTest.class,
+	IncrementalComputedModelTest.class,
+	LazyComputedModelTest.class,
 	ModelModelTest.class,
 	ModelTest.class,
 	ObjectModelTest.class,
+	ParameterizedComputedModelTest.class,
 	PathTest.class,
+	TransactionTest.class,
 	ValueModelTest.class
 	
 })
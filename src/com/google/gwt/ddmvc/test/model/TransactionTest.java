@@ -0,0 +1,242 @@
+package com.google.gwt.ddmvc.test.model;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.Transaction;
+import com.google.gwt.ddmvc.model.ComputedModel;
+import com.google.gwt.ddmvc.model.Model;
+import com.google.gwt.ddmvc.model.UndoLog;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.model.update.list.Append;
+import com.google.gwt.ddmvc.view.View;
+
+/**
+ * Tests that transactions notify observers once when they complete, and
+ * revert all of their changes when they fail.
+ */
+public class TransactionTest {
+
+	private class Form extends View {
+
+		public int render;
+		public int updates;
+		
+		@Override
+		protected void initialize() {
+			observe("form.*");
+		}
+		
+		@Override
+		public void modelChanged(Collection<ModelUpdate> updates) {
+			this.updates += updates.size();
+			super.modelChanged(updates);
+		}
+
+		@Override
+		protected void render() {
+			render++;
+		}
+		
+	}
+	
+	private class Increment extends ComputedModel {
+
+		@Override
+		public Object computeValue() {
+			return (Integer) DDMVC.getDataRoot().getValue("form.a", this) + 1;
+		}
+		
+	}
+	
+	private class Failure extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+	
+	private Form form;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		DDMVC.setValue("form.a", 1);
+		DDMVC.setValue("form.b", 2);
+		DDMVC.setValue("form.list", new ArrayList<Integer>());
+		form = new Form();
+		DDMVC.runLoop();
+		form.render = 0;
+		form.updates = 0;
+	}
+	
+	private void failing(final Transaction transaction) {
+		try {
+			DDMVC.transaction(new Transaction() {
+				@Override
+				public void run() {
+					transaction.run();
+					throw new Failure();
+				}
+			});
+			fail();
+		} catch(Failure e) {}
+		
+		assertFalse(DDMVC.isInTransaction());
+	}
+	
+	@Test
+	public void commit() {
+		DDMVC.transaction(new Transaction() {
+			@Override
+			public void run() {
+				DDMVC.setValue("form.a", 10);
+				DDMVC.setValue("form.b", 20);
+				DDMVC.setValue("form.c", 30);
+				assertTrue(DDMVC.isInTransaction());
+				assertTrue(DDMVC.getValue("form.a").equals(10));
+			}
+		});
+		
+		assertFalse(DDMVC.isInTransaction());
+		DDMVC.runLoop();
+		
+		assertTrue(form.render == 1);
+		assertTrue(form.updates == 3);
+		assertTrue(DDMVC.getValue("form.c").equals(30));
+	}
+	
+	@Test
+	public void rollbackValues() {
+		failing(new Transaction() {
+			@Override
+			public void run() {
+				DDMVC.setValue("form.a", 10);
+				DDMVC.setValue("form.b", 20);
+			}
+		});
+		DDMVC.runLoop();
+		
+		assertTrue(DDMVC.getValue("form.a").equals(1));
+		assertTrue(DDMVC.getValue("form.b").equals(2));
+		assertTrue(form.render == 0);
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void rollbackList() {
+		List<Integer> list = (List<Integer>) DDMVC.getValue("form.list");
+		list.add(1);
+		
+		failing(new Transaction() {
+			@Override
+			public void run() {
+				DDMVC.handleUpdate(new Append("form.list", 2));
+				DDMVC.handleUpdate(new Append("form.list", 3));
+			}
+		});
+		
+		assertTrue(DDMVC.getValue("form.list") == list);
+		assertTrue(list.size() == 1);
+		assertTrue(list.get(0) == 1);
+	}
+	
+	@Test
+	public void rollbackCreatedModels() {
+		failing(new Transaction() {
+			@Override
+			public void run() {
+				DDMVC.setValue("form.c.d", 3);
+			}
+		});
+		
+		assertFalse(DDMVC.hasPath("form.c"));
+	}
+	
+	@Test
+	public void rollbackDeletion() {
+		final Model b = DDMVC.getModel("form.b");
+		
+		failing(new Transaction() {
+			@Override
+			public void run() {
+				DDMVC.deleteModel("form.b");
+				assertFalse(DDMVC.hasPath("form.b"));
+			}
+		});
+		
+		assertTrue(DDMVC.getModel("form.b") == b);
+		assertTrue(DDMVC.getValue("form.b").equals(2));
+	}
+	
+	@Test
+	public void rollbackSetModel() {
+		final Model a = DDMVC.getModel("form.a");
+		final Model moved = DDMVC.getModel("form.b");
+		
+		failing(new Transaction() {
+			@Override
+			public void run() {
+				DDMVC.setModel("form.a", moved);
+			}
+		});
+		
+		assertTrue(DDMVC.getModel("form.a") == a);
+		assertTrue(DDMVC.getModel("form.b") == moved);
+		assertTrue(moved.getKey().equals("b"));
+		assertTrue(moved.getPath().equals("form.b"));
+	}
+	
+	@Test
+	public void nested() {
+		failing(new Transaction() {
+			@Override
+			public void run() {
+				DDMVC.transaction(new Transaction() {
+					@Override
+					public void run() {
+						DDMVC.setValue("form.a", 10);
+					}
+				});
+				assertTrue(DDMVC.isInTransaction());
+			}
+		});
+		
+		assertTrue(DDMVC.getValue("form.a").equals(1));
+	}
+	
+	@Test
+	public void computedNotCachedInTransaction() {
+		DDMVC.setModel("inc", new Increment());
+		
+		failing(new Transaction() {
+			@Override
+			public void run() {
+				DDMVC.setValue("form.a", 10);
+				assertTrue(DDMVC.getValue("inc").equals(11));
+			}
+		});
+		
+		assertTrue(DDMVC.getValue("inc").equals(2));
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void valueRecordedOnce() {
+		List<Integer> list = (List<Integer>) DDMVC.getValue("form.list");
+		list.add(1);
+		
+		UndoLog log = UndoLog.open(DDMVC.getDataRoot());
+		for(int i = 2; i < 10; i++)
+			DDMVC.handleUpdate(new Append("form.list", i));
+		DDMVC.setValue("form.a", 10);
+		DDMVC.setValue("form.a", 20);
+		assertTrue(log.size() == 2);
+		
+		log.rollback();
+		assertTrue(list.size() == 1);
+		assertTrue(DDMVC.getValue("form.a").equals(1));
+	}
+	
+}
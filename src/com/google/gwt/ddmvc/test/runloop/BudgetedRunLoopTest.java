@@ -0,0 +1,218 @@
+package com.google.gwt.ddmvc.test.runloop;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.RunLoopBudget;
+import com.google.gwt.ddmvc.RunLoopProgress;
+import com.google.gwt.ddmvc.controller.Controller;
+import com.google.gwt.ddmvc.controller.ServerRequest;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.model.ComputedModel;
+import com.google.gwt.ddmvc.view.View;
+
+/**
+ * Tests that a budgeted run-loop stops early, and resumes where it left off
+ * with the same outcome as an unbudgeted run-loop.
+ */
+public class BudgetedRunLoopTest {
+
+	private class Increment extends ComputedModel {
+
+		private String dependent;
+		
+		public Increment(String dependent) {
+			this.dependent = dependent;
+		}
+
+		@Override
+		public Object computeValue() {
+			return (Integer) DDMVC.getDataRoot().getValue(dependent, this) + 1;
+		}
+		
+	}
+	
+	private class Display extends View {
+
+		public int render;
+		
+		@Override
+		protected void initialize() {
+			observe("E.$");
+		}
+
+		@Override
+		protected void render() {
+			render++;
+		}
+		
+	}
+	
+	private class Tick extends AppEvent {}
+	
+	private class Chain extends AppEvent {}
+	
+	private class Chainer extends Controller {
+		
+		public int tasks;
+		
+		public Chainer() {
+			subscribeToEvent(Chain.class);
+		}
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			DDMVC.fireEvent(new Tick());
+			DDMVC.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					tasks++;
+				}
+			});
+			return null;
+		}
+		
+	}
+	
+	private class TickCounter extends Controller {
+
+		public int ticks;
+		
+		public TickCounter() {
+			subscribeToEvent(Tick.class);
+		}
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			ticks++;
+			return null;
+		}
+		
+	}
+	
+	private Display display;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		DDMVC.setValue("A", 0);
+		DDMVC.setModel("B", new Increment("A"));
+		DDMVC.setModel("C", new Increment("B"));
+		DDMVC.setModel("D", new Increment("C"));
+		DDMVC.setModel("E", new Increment("D"));
+		DDMVC.getValue("E");
+		display = new Display();
+	}
+	
+	@Test
+	public void unlimitedBudgetCompletes() {
+		DDMVC.setValue("A", 1);
+		RunLoopProgress progress = DDMVC.runLoop(RunLoopBudget.UNLIMITED);
+		
+		assertTrue(progress.isComplete());
+		assertTrue(progress.getIteration() == 5);
+		assertTrue(progress.getPendingNotifications() == 0);
+		assertTrue(DDMVC.getValue("E").equals(5));
+		assertTrue(display.render == 2);
+	}
+	
+	@Test
+	public void iterationBudget() {
+		DDMVC.setValue("A", 1);
+		
+		int calls = 0;
+		RunLoopProgress progress;
+		do {
+			progress = DDMVC.runLoop(RunLoopBudget.iterations(1));
+			calls++;
+			if(!progress.isComplete()) {
+				assertTrue(progress.getPendingNotifications() > 0);
+				assertTrue(display.render == 1);
+			}
+		} while(!progress.isComplete());
+		
+		//B, C, D and E are recomputed, then the display is notified
+		assertTrue(calls == 5);
+		assertTrue(progress.getIteration() == 5);
+		assertTrue(DDMVC.getValue("E").equals(5));
+		assertTrue(display.render == 2);
+	}
+	
+	@Test
+	public void timeBudgetTakesOneStepAtLeast() {
+		DDMVC.setValue("A", 1);
+		
+		//A zero allowance is exhausted at once, so every call takes one step
+		int calls = 0;
+		while(!DDMVC.runLoop(RunLoopBudget.millis(0)).isComplete())
+			calls++;
+		
+		assertTrue(calls == 5);
+		assertTrue(DDMVC.getValue("E").equals(5));
+		assertTrue(display.render == 2);
+	}
+	
+	@Test
+	public void unbudgetedLoopFinishesStoppedLoop() {
+		DDMVC.setValue("A", 1);
+		assertFalse(DDMVC.runLoop(RunLoopBudget.iterations(2)).isComplete());
+		assertTrue(display.render == 1);
+		
+		assertTrue(DDMVC.runLoop().isEmpty());
+		assertTrue(DDMVC.getValue("E").equals(5));
+		assertTrue(display.render == 2);
+	}
+	
+	@Test
+	public void eventsResumeWithoutRedispatch() {
+		TickCounter counter = new TickCounter();
+		for(int i = 0; i < 3; i++)
+			DDMVC.fireEvent(new Tick());
+		
+		RunLoopProgress progress = DDMVC.runLoop(RunLoopBudget.millis(0));
+		assertFalse(progress.isComplete());
+		assertTrue(progress.getPendingEvents() == 2);
+		assertTrue(counter.ticks == 1);
+		
+		DDMVC.runLoop();
+		assertTrue(counter.ticks == 3);
+	}
+	
+	@Test
+	public void tasksNotRunWhenResumingAtBatchStart() {
+		TickCounter counter = new TickCounter();
+		Chainer chainer = new Chainer();
+		DDMVC.fireEvent(new Chain());
+		
+		//Stops after the chain, before the first event of the next batch
+		RunLoopProgress progress = DDMVC.runLoop(RunLoopBudget.millis(0));
+		assertFalse(progress.isComplete());
+		assertTrue(progress.getPendingEvents() == 1);
+		assertTrue(counter.ticks == 0);
+		
+		//The task was added during this run-loop, so it waits for the next
+		DDMVC.runLoop();
+		assertTrue(counter.ticks == 1);
+		assertTrue(chainer.tasks == 0);
+		
+		DDMVC.runLoop();
+		assertTrue(chainer.tasks == 1);
+	}
+	
+	@Test
+	public void invalidBudget() {
+		try {
+			RunLoopBudget.make(-1, -1);
+			fail();
+		}
+		catch(IllegalArgumentException e) {}
+		
+		try {
+			RunLoopBudget.iterations(0);
+			fail();
+		}
+		catch(IllegalArgumentException e) {}
+	}
+	
+}
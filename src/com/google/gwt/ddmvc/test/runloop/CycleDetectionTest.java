@@ -0,0 +1,161 @@
+package com.google.gwt.ddmvc.test.runloop;
+
+import static org.junit.Assert.*;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.RunLoopException;
+import com.google.gwt.ddmvc.event.Observer;
+import com.google.gwt.ddmvc.model.ComputedModel;
+import com.google.gwt.ddmvc.model.Path;
+import com.google.gwt.ddmvc.model.Model.UpdateLevel;
+import com.google.gwt.ddmvc.model.exception.CyclicDependencyException;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+
+/**
+ * Tests the detection of cyclic dependencies, both when observers are added
+ * and when a run-loop fails to converge.
+ */
+public class CycleDetectionTest {
+
+	private class Increment extends ComputedModel {
+
+		private String dependent;
+		
+		public Increment(String dependent) {
+			this.dependent = dependent;
+		}
+
+		@Override
+		public Object computeValue() {
+			return (Integer) DDMVC.getDataRoot().getValue(dependent, this) + 1;
+		}
+		
+	}
+	
+	private class FieldCount extends ComputedModel {
+
+		private String parent;
+		
+		public FieldCount(String parent) {
+			this.parent = parent;
+		}
+		
+		@Override
+		public Object computeValue() {
+			DDMVC.getDataRoot().getModel(parent + ".*", this);
+			return 0;
+		}
+		
+	}
+	
+	/**
+	 * Touches the model it observes whenever it is notified, which can not be 
+	 * detected when the observer is added, since it has no path.
+	 */
+	private class Toucher implements Observer {
+
+		public int notified;
+		
+		@Override
+		public void modelChanged(Collection<ModelUpdate> updates) {
+			notified++;
+			DDMVC.update("A");
+		}
+
+		@Override
+		public void notifyObservers(ModelUpdate update, UpdateLevel level) {}
+
+		@Override
+		public Path<?,?,?> getPath() {
+			return null;
+		}
+
+		@Override
+		public boolean hasObservers() {
+			return true;
+		}
+		
+	}
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+	}
+	
+	@Test
+	public void acyclicChain() {
+		DDMVC.setValue("A", 0);
+		DDMVC.setModel("B", new Increment("A"));
+		DDMVC.setModel("C", new Increment("B"));
+		assertTrue(DDMVC.getValue("C").equals(2));
+	}
+	
+	@Test
+	public void mutualDependency() {
+		DDMVC.setModel("B", new Increment("C"));
+		DDMVC.setModel("C", new Increment("B"));
+		
+		try {
+			DDMVC.getValue("B");
+			fail();
+		}
+		catch(CyclicDependencyException e) {
+			List<Observer> cycle = e.getCycle();
+			assertTrue(cycle.size() == 3);
+			assertTrue(cycle.get(0) == cycle.get(2));
+			assertTrue(e.getMessage().endsWith("C -> B -> C"));
+		}
+		
+		//The offending observer is not left behind
+		assertTrue(DDMVC.getObservers("B.$").isEmpty());
+	}
+	
+	@Test
+	public void observingOwnParentFields() {
+		DDMVC.setValue("parent.child", 0);
+		DDMVC.setModel("parent.count", new FieldCount("parent"));
+		
+		try {
+			DDMVC.getValue("parent.count");
+			fail();
+		}
+		catch(CyclicDependencyException e) {
+			assertTrue(e.getMessage().endsWith("parent.count -> parent.count"));
+		}
+	}
+	
+	@Test
+	public void divergenceGuard() {
+		DDMVC.setValue("A", 0);
+		Toucher toucher = new Toucher();
+		DDMVC.addObserver(toucher, "A.$");
+		DDMVC.setMaxIterations(50);
+		
+		DDMVC.update("A");
+		List<RunLoopException> exceptions = DDMVC.runLoop();
+		
+		assertTrue(toucher.notified == 50);
+		assertTrue(exceptions.size() == 1);
+		assertTrue(exceptions.get(0).getIteration() == 50);
+		assertTrue(exceptions.get(0).getObserver() == toucher);
+		assertTrue(exceptions.get(0).getException() 
+				instanceof CyclicDependencyException);
+		
+		//The abandoned notifications do not carry over to the next run-loop
+		assertTrue(DDMVC.runLoop().isEmpty());
+		assertTrue(toucher.notified == 50);
+	}
+	
+	@Test
+	public void invalidMaxIterations() {
+		try {
+			DDMVC.setMaxIterations(0);
+			fail();
+		}
+		catch(IllegalArgumentException e) {}
+	}
+	
+}
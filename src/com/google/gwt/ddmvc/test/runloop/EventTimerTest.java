@@ -0,0 +1,251 @@
+package com.google.gwt.ddmvc.test.runloop;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.EventTimer;
+import com.google.gwt.ddmvc.TaskExecutor;
+import com.google.gwt.ddmvc.controller.Controller;
+import com.google.gwt.ddmvc.controller.ServerRequest;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.event.EventPool;
+
+/**
+ * Tests that the event timer fires delayed and repeating events at the start
+ * of the run-loop once they come due.
+ */
+public class EventTimerTest {
+
+	/**
+	 * Runs tasks on a virtual clock, advanced explicitly by the test
+	 */
+	private class VirtualExecutor implements TaskExecutor {
+		
+		private long now;
+		private List<Runnable> tasks = new ArrayList<Runnable>();
+		private List<Long> due = new ArrayList<Long>();
+		
+		@Override
+		public void schedule(Runnable task, int delayMillis) {
+			tasks.add(task);
+			due.add(now + delayMillis);
+		}
+		
+		@Override
+		public long currentTimeMillis() {
+			return now;
+		}
+		
+		public void advance(long millis) {
+			long until = now + millis;
+			while(true) {
+				int next = -1;
+				for(int i = 0; i < tasks.size(); i++)
+					if(due.get(i) <= until && (next < 0 || due.get(i) < due.get(next)))
+						next = i;
+				if(next < 0)
+					break;
+				
+				now = Math.max(now, due.remove(next));
+				tasks.remove(next).run();
+			}
+			now = until;
+		}
+		
+		/**
+		 * Move the clock without running any task, as though the application 
+		 * was busy
+		 */
+		public void jump(long millis) {
+			now += millis;
+		}
+		
+	}
+	
+	private static class Tick extends AppEvent {
+		
+		private int id;
+		
+		public Tick(int id) {
+			this.id = id;
+		}
+		
+	}
+	
+	private class Recorder extends Controller {
+		
+		public List<Integer> received = new ArrayList<Integer>();
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			received.add(((Tick) event).id);
+			return null;
+		}
+		
+	}
+	
+	private VirtualExecutor executor;
+	private EventTimer timer;
+	private Recorder recorder;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		executor = new VirtualExecutor();
+		timer = new EventTimer(executor, 10, 64);
+		DDMVC.setEventTimer(timer);
+		recorder = new Recorder();
+		DDMVC.subscribeToEvent(Tick.class, recorder);
+	}
+	
+	@Test
+	public void firedWhenDue() {
+		timer.schedule(new Tick(1), 25);
+		executor.advance(20);
+		assertTrue(recorder.received.size() == 0);
+		
+		executor.advance(10);
+		assertTrue(recorder.received.size() == 1);
+		assertTrue(timer.getPending() == 0);
+		assertTrue(timer.getFired() == 1);
+	}
+	
+	@Test
+	public void neverEarly() {
+		timer.schedule(new Tick(1), 1);
+		DDMVC.runLoop();
+		executor.jump(9);
+		DDMVC.runLoop();
+		assertTrue(recorder.received.size() == 0);
+		
+		executor.jump(1);
+		DDMVC.runLoop();
+		assertTrue(recorder.received.size() == 1);
+	}
+	
+	@Test
+	public void firedInOrder() {
+		timer.schedule(new Tick(3), 30);
+		timer.schedule(new Tick(1), 10);
+		timer.schedule(new Tick(2), 20);
+		executor.jump(50);
+		DDMVC.runLoop();
+		
+		assertTrue(recorder.received.size() == 3);
+		assertTrue(recorder.received.get(0) == 1);
+		assertTrue(recorder.received.get(2) == 3);
+	}
+	
+	@Test
+	public void firedInOrderAcrossRotations() {
+		//Ticks of 10ms in 4 slots, so 12, 15 and 55 share a slot
+		timer = new EventTimer(executor, 10, 4);
+		DDMVC.setEventTimer(timer);
+		timer.schedule(new Tick(55), 55);
+		timer.schedule(new Tick(30), 30);
+		timer.schedule(new Tick(12), 12);
+		timer.schedule(new Tick(15), 15);
+		
+		//Due at the same time as 15, so fired after it
+		timer.schedule(new Tick(13), 15);
+		executor.jump(60);
+		DDMVC.runLoop();
+		
+		assertTrue(recorder.received.toString().equals("[12, 15, 13, 30, 55]"));
+	}
+	
+	@Test
+	public void beyondOneRotation() {
+		//The wheel covers 640ms
+		timer.schedule(new Tick(1), 5000);
+		executor.advance(4990);
+		assertTrue(recorder.received.size() == 0);
+		
+		executor.advance(10);
+		assertTrue(recorder.received.size() == 1);
+	}
+	
+	@Test
+	public void repeating() {
+		EventTimer.Timeout timeout = timer.scheduleRepeating(new Tick(1), 100, 100);
+		executor.advance(1000);
+		assertTrue(recorder.received.size() == 10);
+		
+		assertTrue(timeout.cancel());
+		executor.advance(1000);
+		assertTrue(recorder.received.size() == 10);
+		assertTrue(timeout.isFinished());
+		assertTrue(!timeout.cancel());
+	}
+	
+	@Test
+	public void missedPeriodsSkipped() {
+		timer.scheduleRepeating(new Tick(1), 100, 100);
+		executor.jump(1050);
+		DDMVC.runLoop();
+		assertTrue(recorder.received.size() == 1);
+		
+		executor.advance(100);
+		assertTrue(recorder.received.size() == 2);
+	}
+	
+	@Test
+	public void cancelled() {
+		EventTimer.Timeout timeout = timer.schedule(new Tick(1), 50);
+		assertTrue(timeout.cancel());
+		assertTrue(timer.getPending() == 0);
+		executor.advance(100);
+		
+		assertTrue(recorder.received.size() == 0);
+		assertTrue(timer.getCancelled() == 1);
+	}
+	
+	@Test
+	public void pooledRepeatingEvent() {
+		EventPool<Tick> pool = new EventPool<Tick>() {
+			@Override
+			protected Tick create() {
+				return new Tick(7);
+			}
+		};
+		
+		EventTimer.Timeout timeout = 
+			timer.scheduleRepeating(pool.obtain(), 10, 10);
+		executor.advance(100);
+		assertTrue(recorder.received.size() == 10);
+		assertTrue(pool.getFree() == 0);
+		
+		timeout.cancel();
+		assertTrue(pool.getFree() == 1);
+		assertTrue(pool.getCreated() == 1);
+	}
+	
+	@Test
+	public void manyPending() {
+		int count = 200000;
+		Random random = new Random(42);
+		List<EventTimer.Timeout> timeouts = new ArrayList<EventTimer.Timeout>();
+		for(int i = 0; i < count; i++)
+			timeouts.add(timer.schedule(new Tick(i), random.nextInt(60000)));
+		for(int i = 0; i < count; i += 2)
+			timeouts.get(i).cancel();
+		assertTrue(timer.getPending() == count / 2);
+		
+		executor.jump(30000);
+		DDMVC.runLoop();
+		int halfway = recorder.received.size();
+		assertTrue(halfway > 0 && halfway < count / 2);
+		
+		executor.jump(30000);
+		DDMVC.runLoop();
+		assertTrue(recorder.received.size() == count / 2);
+		assertTrue(timer.getPending() == 0);
+		for(int id : recorder.received)
+			assertTrue(id % 2 == 1);
+	}
+	
+}
@@ -0,0 +1,144 @@
+package com.google.gwt.ddmvc.test.runloop;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.Ingress;
+import com.google.gwt.ddmvc.controller.Controller;
+import com.google.gwt.ddmvc.controller.ServerRequest;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.model.update.SetValue;
+import com.google.gwt.ddmvc.model.update.list.Append;
+
+/**
+ * Tests that events and updates submitted through the ingress are applied by
+ * the run-loop, in order, in batches, and that a full ring refuses them.
+ */
+public class IngressTest {
+
+	private class Ping extends AppEvent {
+		
+		private int number;
+		
+		public Ping(int number) {
+			this.number = number;
+		}
+		
+	}
+	
+	private class Recorder extends Controller {
+		
+		public List<Integer> received = new ArrayList<Integer>();
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			received.add(((Ping) event).number);
+			return null;
+		}
+		
+	}
+	
+	private Recorder recorder;
+	private Ingress ingress;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		recorder = new Recorder();
+		DDMVC.subscribeToEvent(Ping.class, recorder);
+		ingress = DDMVC.getIngress();
+	}
+	
+	@Test
+	public void appliedInOrder() {
+		DDMVC.setValue("list", new ArrayList<Integer>());
+		ingress.offer(new Ping(1));
+		ingress.offer(new Append("list", 1));
+		ingress.offer(new Ping(2));
+		ingress.offer(new SetValue("name", "ingress"));
+		
+		assertFalse(DDMVC.hasPath("name"));
+		DDMVC.runLoop();
+		
+		assertTrue(recorder.received.size() == 2);
+		assertTrue(recorder.received.get(0) == 1);
+		assertTrue(recorder.received.get(1) == 2);
+		assertTrue(((List<?>) DDMVC.getValue("list")).size() == 1);
+		assertTrue(DDMVC.getValue("name").equals("ingress"));
+		assertTrue(ingress.size() == 0);
+	}
+	
+	@Test
+	public void batches() {
+		ingress.setBatchSize(3);
+		for(int i = 0; i < 7; i++)
+			ingress.offer(new Ping(i));
+		
+		DDMVC.runLoop();
+		assertTrue(recorder.received.size() == 3);
+		DDMVC.runLoop();
+		assertTrue(recorder.received.size() == 6);
+		DDMVC.runLoop();
+		assertTrue(recorder.received.size() == 7);
+		assertTrue(recorder.received.get(6) == 6);
+	}
+	
+	@Test
+	public void backpressure() {
+		Ingress small = new Ingress(2);
+		assertTrue(small.offer(new Ping(1)));
+		assertTrue(small.offer(new Ping(2)));
+		assertFalse(small.offer(new Ping(3)));
+		
+		assertTrue(small.getAccepted() == 2);
+		assertTrue(small.getRefused() == 1);
+		assertTrue(small.getPeakSize() == 2);
+	}
+	
+	@Test
+	public void concurrentProducers() throws InterruptedException {
+		final int producers = 4;
+		final int each = 2000;
+		Thread[] threads = new Thread[producers];
+		for(int p = 0; p < producers; p++) {
+			final int base = p * each;
+			threads[p] = new Thread() {
+				@Override
+				public void run() {
+					for(int i = 0; i < each; i++) {
+						while(!ingress.offer(new Ping(base + i)))
+							Thread.yield();
+					}
+				}
+			};
+			threads[p].start();
+		}
+		
+		boolean alive = true;
+		while(alive) {
+			DDMVC.runLoop();
+			alive = false;
+			for(Thread thread : threads)
+				alive |= thread.isAlive();
+		}
+		for(Thread thread : threads)
+			thread.join();
+		DDMVC.runLoop();
+		
+		assertTrue(recorder.received.size() == producers * each);
+		
+		//Each producer's submissions arrive in the order they were made
+		int[] last = new int[producers];
+		for(int p = 0; p < producers; p++)
+			last[p] = p * each - 1;
+		for(int number : recorder.received) {
+			int p = number / each;
+			assertTrue(number == last[p] + 1);
+			last[p] = number;
+		}
+	}
+	
+}
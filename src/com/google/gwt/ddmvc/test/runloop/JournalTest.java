@@ -0,0 +1,267 @@
+package com.google.gwt.ddmvc.test.runloop;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.Journal;
+import com.google.gwt.ddmvc.Replayer;
+import com.google.gwt.ddmvc.Transaction;
+import com.google.gwt.ddmvc.controller.Controller;
+import com.google.gwt.ddmvc.controller.RequestTransport;
+import com.google.gwt.ddmvc.controller.ServerRequest;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.model.update.SetValue;
+
+/**
+ * Tests that a journal records what drove DDMVC, and that replaying it does
+ * the same work.
+ */
+public class JournalTest {
+
+	private class Tick extends AppEvent {}
+	
+	private class Counter extends Controller {
+		
+		public int invocations = 0;
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			invocations++;
+			DDMVC.setValue("count", (Integer) DDMVC.getValue("count") + 1);
+			return null;
+		}
+		
+	}
+	
+	private class Like extends AppEvent {}
+	
+	private class Liker extends Controller {
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			ServerRequest request = new ServerRequest();
+			request.predict(new SetValue("likes", 
+					(Integer) DDMVC.getValue("likes") + 1));
+			return request;
+		}
+		
+	}
+	
+	private class Holder implements RequestTransport {
+		
+		public List<ServerRequest> sent = new ArrayList<ServerRequest>();
+		
+		@Override
+		public void send(List<ServerRequest> batch) {
+			sent.addAll(batch);
+		}
+		
+	}
+	
+	private class Tally implements Journal.Visitor {
+		
+		public int events = 0;
+		public int updates = 0;
+		public int caused = 0;
+		public int loops = 0;
+		
+		@Override
+		public void event(AppEvent event) {
+			events++;
+		}
+		
+		@Override
+		public void update(ModelUpdate update, boolean wasCaused) {
+			updates++;
+			if(wasCaused)
+				caused++;
+		}
+		
+		@Override
+		public void loopFinished() {
+			loops++;
+		}
+		
+	}
+	
+	private Journal journal;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		journal = new Journal();
+		DDMVC.setJournal(journal);
+	}
+	
+	/**
+	 * Record a short session, and reset DDMVC so it can be replayed
+	 */
+	private void recordSession() {
+		DDMVC.subscribeToEvent(Tick.class, new Counter());
+		DDMVC.setValue("count", 0);
+		DDMVC.setValue("name", "a");
+		DDMVC.runLoop();
+		
+		for(int i = 0; i < 3; i++) {
+			DDMVC.fireEvent(new Tick());
+			DDMVC.fireEvent(new Tick());
+			DDMVC.runLoop();
+		}
+		DDMVC.deleteModel("name");
+		DDMVC.runLoop();
+		DDMVC.reset();
+	}
+	
+	@Test
+	public void recorded() {
+		recordSession();
+		
+		Tally tally = new Tally();
+		journal.accept(tally);
+		assertTrue(tally.events == 6);
+		assertTrue(tally.updates == 9);
+		assertTrue(tally.caused == 6);
+		assertTrue(tally.loops == 5);
+		assertTrue(journal.getLoops() == 5);
+		assertTrue(journal.size() == 20);
+	}
+	
+	@Test
+	public void replayUpdates() {
+		recordSession();
+		
+		Replayer replayer = new Replayer();
+		replayer.replay(journal);
+		assertTrue(DDMVC.getValue("count").equals(6));
+		assertTrue(!DDMVC.hasPath("name"));
+		assertTrue(replayer.getLoops() == 5);
+		assertTrue(replayer.getEvents() == 0);
+		assertTrue(replayer.getUpdates() == 9);
+	}
+	
+	@Test
+	public void replayEvents() {
+		recordSession();
+		
+		Counter counter = new Counter();
+		DDMVC.subscribeToEvent(Tick.class, counter);
+		Replayer replayer = new Replayer(true);
+		replayer.replay(journal);
+		assertTrue(DDMVC.getValue("count").equals(6));
+		assertTrue(counter.invocations == 6);
+		assertTrue(replayer.getUpdates() == 3);
+		
+		//The journal is not recording while it is replayed
+		assertTrue(journal.size() == 20);
+	}
+	
+	@Test
+	public void replayIngressEvents() {
+		DDMVC.subscribeToEvent(Tick.class, new Counter());
+		DDMVC.setValue("count", 0);
+		DDMVC.runLoop();
+		
+		DDMVC.getIngress().offer(new Tick());
+		DDMVC.getIngress().offer(new Tick());
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("count").equals(2));
+		DDMVC.reset();
+		
+		Counter counter = new Counter();
+		DDMVC.subscribeToEvent(Tick.class, counter);
+		new Replayer(true).replay(journal);
+		assertTrue(counter.invocations == 2);
+		assertTrue(DDMVC.getValue("count").equals(2));
+	}
+	
+	@Test
+	public void deterministic() {
+		recordSession();
+		new Replayer().replay(journal);
+		int first = DDMVC.getRunLoopStats().getNotificationsDelivered();
+		
+		DDMVC.reset();
+		new Replayer().replay(journal);
+		assertTrue(DDMVC.getValue("count").equals(6));
+		assertTrue(DDMVC.getRunLoopStats().getNotificationsDelivered() == first);
+	}
+	
+	@Test
+	public void flushedToSink() {
+		Tally sink = new Tally();
+		journal = new Journal(sink, 4);
+		DDMVC.setJournal(journal);
+		
+		DDMVC.setValue("a", 1);
+		DDMVC.runLoop();
+		assertTrue(sink.loops == 0 && journal.size() == 2);
+		
+		DDMVC.setValue("a", 2);
+		DDMVC.runLoop();
+		assertTrue(sink.loops == 2 && sink.updates == 2);
+		assertTrue(journal.size() == 0);
+		assertTrue(journal.getRecorded() == 4);
+	}
+	
+	@Test
+	public void rolledBackNotRecorded() {
+		DDMVC.setValue("count", 0);
+		DDMVC.transaction(new Transaction() {
+			@Override
+			public void run() {
+				DDMVC.setValue("count", 1);
+			}
+		});
+		try {
+			DDMVC.transaction(new Transaction() {
+				@Override
+				public void run() {
+					DDMVC.setValue("count", 2);
+					throw new IllegalStateException();
+				}
+			});
+			fail();
+		} catch(IllegalStateException e) {}
+		DDMVC.runLoop();
+		DDMVC.reset();
+		
+		Replayer replayer = new Replayer();
+		replayer.replay(journal);
+		assertTrue(DDMVC.getValue("count").equals(1));
+		assertTrue(replayer.getUpdates() == 2);
+	}
+	
+	@Test
+	public void predictionsNotRecorded() {
+		Holder holder = new Holder();
+		DDMVC.setRequestTransport(holder);
+		DDMVC.subscribeToEvent(Like.class, new Liker());
+		DDMVC.setValue("likes", 0);
+		
+		DDMVC.fireEvent(new Like());
+		DDMVC.fireEvent(new Like());
+		DDMVC.runLoop();
+		assertTrue(DDMVC.getValue("likes").equals(2));
+		
+		//One answer fails, the other sets a value of its own
+		holder.sent.get(0).getResponse().onFailure(new IllegalStateException());
+		List<ModelUpdate> answer = new ArrayList<ModelUpdate>();
+		answer.add(new SetValue("likes", 5));
+		holder.sent.get(1).getResponse().onSuccess(answer);
+		DDMVC.runLoop();
+		DDMVC.reset();
+		
+		Tally tally = new Tally();
+		journal.accept(tally);
+		assertTrue(tally.updates == 2);
+		
+		Replayer replayer = new Replayer();
+		replayer.replay(journal);
+		assertTrue(DDMVC.getValue("likes").equals(5));
+	}
+	
+}
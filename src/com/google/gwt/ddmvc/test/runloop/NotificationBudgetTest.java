@@ -0,0 +1,135 @@
+package com.google.gwt.ddmvc.test.runloop;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.NotificationBudget;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.model.update.UnknownUpdate;
+import com.google.gwt.ddmvc.model.update.list.Append;
+import com.google.gwt.ddmvc.view.View;
+
+/**
+ * Tests the bounding of pending notifications by the NotificationBudget
+ */
+public class NotificationBudgetTest {
+
+	private class AppendCounter extends View {
+
+		public int render;
+		public int append;
+		public int unknown;
+		
+		@Override
+		protected void initialize() {
+			observe("list.$");
+			observe("other.$");
+			subscribeToModelUpdate("list", Append.class);
+		}
+
+		@Override
+		protected void render() {
+			render++;
+		}
+		
+		@Override
+		protected void respondToModelUpdate(ModelUpdate update) {
+			if(update.isSame(Append.DEFAULT))
+				append++;
+			else if(update.isSame(UnknownUpdate.DEFAULT))
+				unknown++;
+		}
+		
+	}
+	
+	private AppendCounter view;
+	private NotificationBudget budget;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		DDMVC.setValue("list", new ArrayList<Integer>());
+		DDMVC.setValue("other", 0);
+		view = new AppendCounter();
+		budget = DDMVC.getNotificationBudget();
+	}
+	
+	private void append(int count) {
+		for(int i = 0; i < count; i++)
+			DDMVC.handleUpdate(new Append("list", i));
+	}
+	
+	@Test
+	public void unlimitedByDefault() {
+		append(50);
+		assertTrue(budget.getQueuedUpdates() == 50);
+		
+		DDMVC.runLoop();
+		assertTrue(view.append == 50);
+		assertTrue(view.render == 1);
+		assertTrue(budget.getCollapsedQueues() == 0);
+		assertTrue(budget.getQueuedUpdates() == 0);
+		assertTrue(budget.getPeakQueuedUpdates() == 50);
+	}
+	
+	@Test
+	public void perObserverCap() {
+		budget.setMaxUpdatesPerObserver(10);
+		append(10);
+		DDMVC.runLoop();
+		assertTrue(view.append == 10);
+		assertTrue(view.render == 1);
+		
+		append(11);
+		assertTrue(budget.getQueuedUpdates() == 1);
+		DDMVC.runLoop();
+		assertTrue(view.append == 10);
+		assertTrue(view.render == 2);
+		assertTrue(budget.getCollapsedQueues() == 1);
+		assertTrue(budget.getDroppedUpdates() == 10);
+	}
+	
+	@Test
+	public void collapsedQueueDiscardsFurtherUpdates() {
+		budget.setMaxUpdatesPerObserver(5);
+		append(100);
+		
+		assertTrue(budget.getQueuedUpdates() == 1);
+		assertTrue(budget.getCollapsedQueues() == 1);
+		assertTrue(budget.getDroppedUpdates() == 99);
+		assertTrue(budget.getPeakQueuedUpdates() == 6);
+		
+		DDMVC.runLoop();
+		assertTrue(view.render == 2);
+		assertTrue(view.append == 0);
+		assertTrue(view.unknown == 0);
+		assertTrue(budget.getQueuedUpdates() == 0);
+	}
+	
+	@Test
+	public void globalBudget() {
+		budget.setMaxQueuedUpdates(20);
+		append(20);
+		assertTrue(budget.getCollapsedQueues() == 0);
+		
+		append(1);
+		assertTrue(budget.getCollapsedQueues() == 1);
+		assertTrue(budget.getQueuedUpdates() == 1);
+		
+		DDMVC.runLoop();
+		assertTrue(view.render == 2);
+		assertTrue(view.append == 0);
+	}
+	
+	@Test
+	public void invalidLimit() {
+		try {
+			budget.setMaxUpdatesPerObserver(0);
+			fail();
+		}
+		catch(IllegalArgumentException e) {}
+	}
+	
+}
@@ -0,0 +1,74 @@
+package com.google.gwt.ddmvc.test.runloop;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Test;
+import com.google.gwt.ddmvc.event.Observer;
+import com.google.gwt.ddmvc.event.ObserverSet;
+import com.google.gwt.ddmvc.model.Path;
+import com.google.gwt.ddmvc.model.Model.UpdateLevel;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+
+/**
+ * Tests that an ObserverSet holds distinct observers in the order they were
+ * added, and can be cleared and refilled.
+ */
+public class ObserverSetTest {
+
+	private class Dummy implements Observer {
+	
+		@Override
+		public void modelChanged(Collection<ModelUpdate> updates) {}
+		
+		@Override
+		public void notifyObservers(ModelUpdate update, UpdateLevel level) {}
+		
+		@Override
+		public Path<?,?,?> getPath() {
+			return null;
+		}
+		
+		@Override
+		public boolean hasObservers() {
+			return false;
+		}
+	
+	}
+	
+	@Test
+	public void distinctInOrder() {
+		ObserverSet set = new ObserverSet();
+		Dummy a = new Dummy();
+		Dummy b = new Dummy();
+		
+		assertTrue(set.add(a));
+		assertTrue(set.add(b));
+		assertFalse(set.add(a));
+		assertTrue(set.size() == 2);
+		assertTrue(set.get(0) == a && set.get(1) == b);
+		assertTrue(set.contains(b));
+	}
+	
+	@Test
+	public void clearedAndGrown() {
+		ObserverSet set = new ObserverSet();
+		List<Observer> observers = new ArrayList<Observer>();
+		for(int i = 0; i < 3000; i++)
+			observers.add(new Dummy());
+		
+		for(int round = 0; round < 3; round++) {
+			set.addAll(observers);
+			set.addAll(observers);
+			assertTrue(set.size() == 3000);
+			for(int i = 0; i < 3000; i++)
+				assertTrue(set.get(i) == observers.get(i));
+			
+			set.clear();
+			assertTrue(set.size() == 0);
+			assertFalse(set.contains(observers.get(0)));
+		}
+	}
+
+}
@@ -0,0 +1,224 @@
+package com.google.gwt.ddmvc.test.runloop;
+
+import static org.junit.Assert.*;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.event.Observer;
+import com.google.gwt.ddmvc.model.ComputedModel;
+import com.google.gwt.ddmvc.model.Model;
+import com.google.gwt.ddmvc.model.Path;
+import com.google.gwt.ddmvc.model.Model.UpdateLevel;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+import com.google.gwt.ddmvc.model.update.UnknownUpdate;
+import com.google.gwt.ddmvc.view.View;
+
+/**
+ * Tests that the run-loop reuses its queues rather than allocating new ones.
+ * This is measured with the HotSpot thread allocation counter, so it is
+ * skipped on JVMs which do not provide it.
+ */
+public class RunLoopAllocationTest {
+
+	private static final int OBSERVERS = 20;
+	private static final int UPDATES_PER_OBSERVER = 5;
+	private static final int LOOPS = 2000;
+	
+	private static final Path<Object,Model,Object> A = Path.make("A");
+	private static final Path<Object,Model,Object> B = Path.make("B");
+	private static final Path<Object,Model,Object> C = Path.make("C");
+	
+	private class CountingObserver implements Observer {
+
+		public int updates;
+		
+		@Override
+		public void modelChanged(Collection<ModelUpdate> updates) {
+			this.updates += updates.size();
+		}
+
+		@Override
+		public void notifyObservers(ModelUpdate update, UpdateLevel level) {}
+
+		@Override
+		public Path<?,?,?> getPath() {
+			return null;
+		}
+
+		@Override
+		public boolean hasObservers() {
+			return false;
+		}
+		
+	}
+	
+	//Flips between two values whenever it is recomputed
+	private class Flip extends ComputedModel {
+		
+		private int flips;
+		
+		@Override
+		public Object computeValue() {
+			DDMVC.getDataRoot().getValue(A, this);
+			return ++flips % 2;
+		}
+		
+	}
+	
+	private class Plus extends ComputedModel {
+		
+		@Override
+		public boolean isLazy() {
+			return true;
+		}
+		
+		@Override
+		public Object computeValue() {
+			return (Integer) DDMVC.getDataRoot().getValue(B, this) + 1;
+		}
+		
+	}
+	
+	private class Display extends View {
+		
+		public int render;
+		
+		@Override
+		protected void initialize() {
+			observe(C.toValuePath());
+		}
+		
+		@Override
+		protected void render() {
+			DDMVC.getValue(C);
+			render++;
+		}
+		
+	}
+	
+	private CountingObserver[] observers;
+	private ModelUpdate update;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		observers = new CountingObserver[OBSERVERS];
+		for(int i = 0; i < OBSERVERS; i++)
+			observers[i] = new CountingObserver();
+		update = new UnknownUpdate(Path.make("value"));
+	}
+	
+	private void loop() {
+		for(int i = 0; i < UPDATES_PER_OBSERVER; i++)
+			for(CountingObserver observer : observers)
+				DDMVC.addNotify(observer, update);
+		DDMVC.runLoop();
+	}
+	
+	@Test
+	public void allUpdatesDelivered() {
+		loop();
+		loop();
+		for(CountingObserver observer : observers)
+			assertTrue(observer.updates == 2 * UPDATES_PER_OBSERVER);
+	}
+	
+	@Test
+	public void deliveredAfterBurst() {
+		CountingObserver[] burst = new CountingObserver[5000];
+		for(int i = 0; i < burst.length; i++) {
+			burst[i] = new CountingObserver();
+			for(int j = 0; j < 100; j++)
+				DDMVC.addNotify(burst[i], update);
+		}
+		DDMVC.runLoop();
+		
+		//The queues have given up the storage of the burst, and still work
+		loop();
+		loop();
+		for(CountingObserver observer : burst)
+			assertTrue(observer.updates == 100);
+		for(CountingObserver observer : observers)
+			assertTrue(observer.updates == 2 * UPDATES_PER_OBSERVER);
+	}
+	
+	/**
+	 * @return the allocation counter of the JVM, skipping the test if there
+	 * 				is none
+	 */
+	private com.sun.management.ThreadMXBean allocationCounter() {
+		java.lang.management.ThreadMXBean bean = 
+			ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		
+		com.sun.management.ThreadMXBean threads = 
+			(com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported()
+				&& threads.isThreadAllocatedMemoryEnabled());
+		return threads;
+	}
+	
+	/**
+	 * @param threads - the allocation counter
+	 * @param loop - the work of one run-loop
+	 * @return the bytes allocated by running the loop LOOPS times, after
+	 * 				warming up
+	 */
+	private long measure(com.sun.management.ThreadMXBean threads, 
+			Runnable loop) {
+		//Warm up, so that the queues reach their steady-state capacity
+		for(int i = 0; i < LOOPS; i++)
+			loop.run();
+		
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for(int i = 0; i < LOOPS; i++)
+			loop.run();
+		return threads.getThreadAllocatedBytes(thread) - before;
+	}
+	
+	@Test
+	public void steadyStateLoopDoesNotAllocate() {
+		long allocated = measure(allocationCounter(), new Runnable() {
+			@Override
+			public void run() {
+				loop();
+			}
+		});
+		
+		//Allow a few bytes per loop for the measurement itself
+		assertTrue("Allocated " + allocated + " bytes", allocated < 8 * LOOPS);
+	}
+	
+	@Test
+	public void cascadingLoopBarelyAllocates() {
+		com.sun.management.ThreadMXBean threads = allocationCounter();
+		DDMVC.setValue("A", 0);
+		final Flip flip = new Flip();
+		DDMVC.setModel("B", flip);
+		DDMVC.setModel("C", new Plus());
+		Display display = new Display();
+		DDMVC.runLoop();
+		
+		//Each loop recomputes B, invalidates C, and renders the display
+		final ModelUpdate changed = new UnknownUpdate(A);
+		int rendered = display.render;
+		long allocated = measure(threads, new Runnable() {
+			@Override
+			public void run() {
+				DDMVC.addNotify(flip, changed);
+				DDMVC.runLoop();
+			}
+		});
+		
+		assertTrue(display.render - rendered == 2 * LOOPS);
+		
+		//The observation tree keeps its observers in HashSets, and each one
+		//read allocates an iterator
+		assertTrue("Allocated " + allocated + " bytes", allocated < 256 * LOOPS);
+	}
+	
+}
@@ -0,0 +1,223 @@
+package com.google.gwt.ddmvc.test.runloop;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.RunLoopBudget;
+import com.google.gwt.ddmvc.RunLoopProgress;
+import com.google.gwt.ddmvc.RunLoopScheduler;
+import com.google.gwt.ddmvc.TaskExecutor;
+import com.google.gwt.ddmvc.model.ComputedModel;
+import com.google.gwt.ddmvc.view.View;
+
+/**
+ * Tests that the scheduler runs the run-loop after mutations, coalescing
+ * them within the debounce and maximum delay windows.
+ */
+public class RunLoopSchedulerTest {
+
+	/**
+	 * Runs tasks on a virtual clock, advanced explicitly by the test
+	 */
+	private class VirtualExecutor implements TaskExecutor {
+
+		private long now;
+		private List<Runnable> tasks = new ArrayList<Runnable>();
+		private List<Long> due = new ArrayList<Long>();
+		
+		@Override
+		public void schedule(Runnable task, int delayMillis) {
+			tasks.add(task);
+			due.add(now + delayMillis);
+		}
+		
+		@Override
+		public long currentTimeMillis() {
+			return now;
+		}
+		
+		public int scheduled() {
+			return tasks.size();
+		}
+		
+		public void advance(long millis) {
+			long until = now + millis;
+			while(true) {
+				int next = -1;
+				for(int i = 0; i < tasks.size(); i++)
+					if(due.get(i) <= until && (next < 0 || due.get(i) < due.get(next)))
+						next = i;
+				if(next < 0)
+					break;
+				
+				now = Math.max(now, due.remove(next));
+				tasks.remove(next).run();
+			}
+			now = until;
+		}
+		
+	}
+	
+	private class Increment extends ComputedModel {
+
+		private String dependent;
+		
+		public Increment(String dependent) {
+			this.dependent = dependent;
+		}
+
+		@Override
+		public Object computeValue() {
+			return (Integer) DDMVC.getDataRoot().getValue(dependent, this) + 1;
+		}
+		
+	}
+	
+	private class Display extends View {
+
+		public int render;
+		
+		@Override
+		protected void initialize() {
+			observe("A.$");
+		}
+
+		@Override
+		protected void render() {
+			render++;
+		}
+		
+	}
+	
+	private VirtualExecutor executor;
+	private RunLoopScheduler scheduler;
+	private Display display;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		DDMVC.setValue("A", 0);
+		display = new Display();
+		display.render = 0;
+		
+		executor = new VirtualExecutor();
+		scheduler = DDMVC.getRunLoopScheduler();
+		scheduler.setDebounceMillis(10);
+		scheduler.setMaxDelayMillis(50);
+		scheduler.setExecutor(executor);
+	}
+	
+	@Test
+	public void disabledByDefault() {
+		DDMVC.reset();
+		assertTrue(DDMVC.getRunLoopScheduler().getExecutor() == null);
+		DDMVC.setValue("A", 1);
+		assertFalse(DDMVC.getRunLoopScheduler().isPending());
+	}
+	
+	@Test
+	public void debounce() {
+		DDMVC.setValue("A", 1);
+		assertTrue(scheduler.isPending());
+		executor.advance(5);
+		DDMVC.setValue("A", 2);
+		executor.advance(5);
+		DDMVC.setValue("A", 3);
+		executor.advance(9);
+		assertTrue(display.render == 0);
+		
+		executor.advance(1);
+		assertTrue(display.render == 1);
+		assertTrue(scheduler.getScheduledLoops() == 1);
+		assertTrue(scheduler.getMutations() == 3);
+		assertFalse(scheduler.isPending());
+	}
+	
+	@Test
+	public void oneTaskAtATime() {
+		for(int i = 0; i < 100; i++)
+			DDMVC.setValue("A", i);
+		assertTrue(executor.scheduled() == 1);
+	}
+	
+	@Test
+	public void maxDelay() {
+		for(int i = 1; i <= 10; i++) {
+			DDMVC.setValue("A", i);
+			executor.advance(8);
+		}
+		
+		//Mutations never stopped for 10ms, but the first waited 50ms at most
+		assertTrue(display.render == 1);
+		assertTrue(scheduler.getScheduledLoops() == 1);
+	}
+	
+	@Test
+	public void flush() {
+		DDMVC.setValue("A", 1);
+		assertTrue(scheduler.flush().isEmpty());
+		assertTrue(display.render == 1);
+		assertTrue(scheduler.getFlushes() == 1);
+		
+		executor.advance(100);
+		assertTrue(display.render == 1);
+		assertTrue(scheduler.getScheduledLoops() == 0);
+	}
+	
+	@Test
+	public void cascadesDoNotReschedule() {
+		DDMVC.setModel("B", new Increment("A"));
+		DDMVC.setModel("C", new Increment("B"));
+		DDMVC.getValue("C");
+		scheduler.flush();
+		
+		DDMVC.setValue("A", 1);
+		executor.advance(100);
+		assertTrue(scheduler.getScheduledLoops() == 1);
+		assertTrue(DDMVC.getValue("C").equals(3));
+		assertFalse(scheduler.isPending());
+	}
+	
+	@Test
+	public void budgetResumes() {
+		DDMVC.setModel("B", new Increment("A"));
+		DDMVC.setModel("C", new Increment("B"));
+		DDMVC.getValue("C");
+		scheduler.flush();
+		
+		final List<RunLoopProgress> runs = new ArrayList<RunLoopProgress>();
+		scheduler.setListener(new RunLoopScheduler.Listener() {
+			@Override
+			public void runLoopRan(RunLoopProgress progress) {
+				runs.add(progress);
+			}
+		});
+		scheduler.setBudget(RunLoopBudget.iterations(1));
+		
+		DDMVC.setValue("A", 1);
+		executor.advance(10);
+		assertTrue(runs.size() == 2);
+		assertFalse(runs.get(0).isComplete());
+		assertTrue(runs.get(1).isComplete());
+		assertTrue(scheduler.getScheduledLoops() == 1);
+		assertTrue(display.render == 1);
+		assertFalse(scheduler.isPending());
+	}
+	
+	@Test
+	public void invalidWindows() {
+		try {
+			scheduler.setMaxDelayMillis(5);
+			fail();
+		} catch(IllegalArgumentException e) {}
+		
+		try {
+			scheduler.setDebounceMillis(-1);
+			fail();
+		} catch(IllegalArgumentException e) {}
+	}
+	
+}
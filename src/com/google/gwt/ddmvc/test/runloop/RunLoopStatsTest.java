@@ -0,0 +1,177 @@
+package com.google.gwt.ddmvc.test.runloop;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.gwt.ddmvc.DDMVC;
+import com.google.gwt.ddmvc.LatencyHistogram;
+import com.google.gwt.ddmvc.ObserverProfiler;
+import com.google.gwt.ddmvc.RunLoopBudget;
+import com.google.gwt.ddmvc.RunLoopStats;
+import com.google.gwt.ddmvc.controller.Controller;
+import com.google.gwt.ddmvc.controller.ServerRequest;
+import com.google.gwt.ddmvc.event.AppEvent;
+import com.google.gwt.ddmvc.model.ComputedModel;
+import com.google.gwt.ddmvc.view.View;
+
+/**
+ * Tests the run-loop statistics and the observer profiler
+ */
+public class RunLoopStatsTest {
+
+	private class Increment extends ComputedModel {
+
+		private String dependent;
+		
+		public Increment(String dependent) {
+			this.dependent = dependent;
+		}
+
+		@Override
+		public Object computeValue() {
+			return (Integer) DDMVC.getDataRoot().getValue(dependent, this) + 1;
+		}
+		
+	}
+	
+	private class Display extends View {
+
+		public int render;
+		
+		@Override
+		protected void initialize() {
+			observe("C.$");
+		}
+
+		@Override
+		protected void render() {
+			render++;
+		}
+		
+	}
+	
+	private class Tick extends AppEvent {}
+	
+	private class TickController extends Controller {
+
+		public TickController() {
+			subscribeToEvent(Tick.class);
+		}
+		
+		@Override
+		public ServerRequest respondToEvent(AppEvent event) {
+			DDMVC.setValue("A", (Integer) DDMVC.getValue("A") + 1);
+			return null;
+		}
+		
+	}
+	
+	private Display display;
+	
+	@Before
+	public void setUp() {
+		DDMVC.reset();
+		DDMVC.setValue("A", 0);
+		DDMVC.setModel("B", new Increment("A"));
+		DDMVC.setModel("C", new Increment("B"));
+		DDMVC.getValue("C");
+		display = new Display();
+		new TickController();
+		DDMVC.runLoop();
+	}
+	
+	@Test
+	public void testCounts() {
+		DDMVC.fireEvent(new Tick());
+		DDMVC.runLoop();
+		
+		RunLoopStats stats = DDMVC.getRunLoopStats();
+		assertTrue(stats.getEventsDispatched() == 1);
+		assertTrue(stats.getControllerInvocations() == 1);
+		assertTrue(stats.getServerRequests() == 0);
+		assertTrue(stats.getIterations() == 3);
+		assertTrue(stats.getNotificationsDelivered() == 3);
+		assertTrue(stats.getRecomputes() == 2);
+		assertTrue(stats.getRenders() == 1);
+		assertTrue(stats.getExceptions() == 0);
+		assertTrue(stats.getTotalNanos() >= 0);
+		assertTrue(display.render == 2);
+	}
+	
+	@Test
+	public void testStatsResetEachLoop() {
+		DDMVC.fireEvent(new Tick());
+		DDMVC.runLoop();
+		DDMVC.runLoop();
+		
+		RunLoopStats stats = DDMVC.getRunLoopStats();
+		assertTrue(stats.getEventsDispatched() == 0);
+		assertTrue(stats.getNotificationsDelivered() == 0);
+		assertTrue(stats.getIterations() == 0);
+	}
+	
+	@Test
+	public void testBudgetedLoopAccumulates() {
+		DDMVC.fireEvent(new Tick());
+		while(!DDMVC.runLoop(RunLoopBudget.iterations(1)).isComplete());
+		
+		RunLoopStats stats = DDMVC.getRunLoopStats();
+		assertTrue(stats.getEventsDispatched() == 1);
+		assertTrue(stats.getIterations() == 3);
+		assertTrue(stats.getRecomputes() == 2);
+		assertTrue(stats.getRenders() == 1);
+	}
+	
+	@Test
+	public void testProfilerDisabledByDefault() {
+		DDMVC.fireEvent(new Tick());
+		DDMVC.runLoop();
+		
+		assertFalse(DDMVC.getObserverProfiler().isEnabled());
+		assertTrue(DDMVC.getObserverProfiler().getHistograms().isEmpty());
+	}
+	
+	@Test
+	public void testProfiler() {
+		ObserverProfiler profiler = DDMVC.getObserverProfiler();
+		profiler.setEnabled(true);
+		
+		for(int i = 0; i < 10; i++) {
+			DDMVC.fireEvent(new Tick());
+			DDMVC.runLoop();
+		}
+		
+		LatencyHistogram increments = profiler.getHistogram(Increment.class);
+		LatencyHistogram displays = profiler.getHistogram(Display.class);
+		assertTrue(increments.getCount() == 20);
+		assertTrue(displays.getCount() == 10);
+		assertTrue(profiler.getHistograms().size() == 2);
+		
+		profiler.reset();
+		assertTrue(profiler.getHistogram(Increment.class) == null);
+	}
+	
+	@Test
+	public void testHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertTrue(histogram.getPercentileNanos(50) == 0);
+		
+		for(int i = 0; i < 99; i++)
+			histogram.record(100);
+		histogram.record(100000);
+		
+		assertTrue(histogram.getCount() == 100);
+		assertTrue(histogram.getMaxNanos() == 100000);
+		assertTrue(histogram.getMeanNanos() == (99 * 100 + 100000) / 100);
+		assertTrue(histogram.getBucketCount(7) == 99);
+		assertTrue(histogram.getPercentileNanos(50) == 127);
+		assertTrue(histogram.getPercentileNanos(99) == 127);
+		assertTrue(histogram.getPercentileNanos(100) == 100000);
+		
+		try {
+			histogram.getPercentileNanos(101);
+			fail();
+		} catch(IllegalArgumentException e) {}
+	}
+	
+}
@@ -0,0 +1,20 @@
+package com.google.gwt.ddmvc.test.runloop;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses( {
+	BudgetedRunLoopTest.class,
+	CycleDetectionTest.class,
+	EventTimerTest.class,
+	IngressTest.class,
+	JournalTest.class,
+	NotificationBudgetTest.class,
+	ObserverSetTest.class,
+	RunLoopSchedulerTest.class,
+	RunLoopStatsTest.class,
+	RunLoopAllocationTest.class
+})
+
+public class Tests {}
@@ -0,0 +1,117 @@
+package com.google.gwt.ddmvc.view;
+
+import com.google.gwt.ddmvc.model.Path;
+import com.google.gwt.ddmvc.model.update.ModelUpdate;
+
+/**
+ * A SubscriptionTable records which types of ModelUpdate a view responds to
+ * at each path, in place of rendering.
+ * 
+ * Paths are keyed by their string form in an open-addressing table, and the
+ * update types of each path are held in a plain array and compared by class
+ * identity, so that a lookup allocates nothing.
+ */
+class SubscriptionTable {
+
+	private static final int INITIAL_CAPACITY = 8;
+	
+	private String[] paths;
+	private Class<?>[][] types;
+	private int size;
+	
+	/**
+	 * Instantiate a new, empty SubscriptionTable
+	 */
+	public SubscriptionTable() {
+		paths = new String[INITIAL_CAPACITY];
+		types = new Class<?>[INITIAL_CAPACITY][];
+		size = 0;
+	}
+	
+	/**
+	 * Subscribe to a type of update at a path
+	 * @param path - the path of the updates
+	 * @param type - the type of update, or ModelUpdate for any update
+	 */
+	public void put(Path<?,?,?> path, Class<? extends ModelUpdate> type) {
+		String key = path.toString();
+		int position = find(paths, key);
+		
+		if(paths[position] == null) {
+			if((size + 1) * 2 > paths.length) {
+				grow();
+				position = find(paths, key);
+			}
+			paths[position] = key;
+			types[position] = new Class<?>[] { type };
+			size++;
+			return;
+		}
+		
+		Class<?>[] existing = types[position];
+		for(Class<?> subscribed : existing)
+			if(subscribed == type)
+				return;
+		
+		Class<?>[] added = new Class<?>[existing.length + 1];
+		System.arraycopy(existing, 0, added, 0, existing.length);
+		added[existing.length] = type;
+		types[position] = added;
+	}
+	
+	/**
+	 * Determine whether or not an update has been subscribed to, either by its
+	 * exact type or by means of ModelUpdate, at its target path
+	 * @param update - the update to check
+	 * @return true if the update is subscribed to
+	 */
+	public boolean isSubscribed(ModelUpdate update) {
+		if(size == 0)
+			return false;
+		
+		int position = find(paths, update.getTarget().toString());
+		if(paths[position] == null)
+			return false;
+		
+		Class<?> type = update.getClass();
+		for(Class<?> subscribed : types[position])
+			if(subscribed == type || subscribed == ModelUpdate.class)
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Find the position of a path in a table, or the empty position at which
+	 * it would be inserted
+	 * @param table - the table to search
+	 * @param key - the path string to look for
+	 * @return the position in the table
+	 */
+	private static int find(String[] table, String key) {
+		int mask = table.length - 1;
+		int h = key.hashCode();
+		int position = (h ^ (h >>> 16)) & mask;
+		while(table[position] != null && !table[position].equals(key))
+			position = (position + 1) & mask;
+		return position;
+	}
+	
+	/**
+	 * Double the capacity of the table, and re-insert every path
+	 */
+	private void grow() {
+		String[] oldPaths = paths;
+		Class<?>[][] oldTypes = types;
+		paths = new String[oldPaths.length * 2];
+		types = new Class<?>[oldPaths.length * 2][];
+		
+		for(int i = 0; i < oldPaths.length; i++) {
+			if(oldPaths[i] != null) {
+				int position = find(paths, oldPaths[i]);
+				paths[position] = oldPaths[i];
+				types[position] = oldTypes[i];
+			}
+		}
+	}
+	
+}
@@ -1,7 +1,6 @@
 package com.google.gwt.ddmvc.view;
 
 import java.util.Collection;
-import org.multimap.MultiHashMap;
 import com.google.gwt.ddmvc.DDMVC;
 import com.google.gwt.ddmvc.event.EventSource;
 import com.google.gwt.ddmvc.event.Observer;
@@ -17,14 +16,14 @@ import com.google.gwt.ddmvc.model.update.ModelUpdate;
  */
 public abstract class View extends EventSource implements Observer {
 	
-	//Maps Path.toString() -> ModelUpdate.getClass().getName()
-	private MultiHashMap<String, String> subscriptions;
+	//The update types responded to at each path, instead of rendering
+	private SubscriptionTable subscriptions;
 	
 	/**
 	 * Instantiate a new View
 	 */
 	public View() {
-		subscriptions = new MultiHashMap<String, String>();
+		subscriptions = new SubscriptionTable();
 		initialize();
 		render();
 	}
@@ -34,23 +33,16 @@ public abstract class View extends EventSource implements Observer {
 		boolean containsAll = true;
 		
 		for(ModelUpdate update : updates) {
-			
-			Collection<String> subscriptionTypes = 
-				subscriptions.get(update.getTarget().toString());
-			
-			String updateType = update.getClass().getName();
-			
-			if(!(subscriptionTypes.contains(ModelUpdate.class.getName())
-				|| subscriptionTypes.contains(updateType))) {
-
+			if(!subscriptions.isSubscribed(update)) {
 				containsAll = false;
 				break;
 			}
 		}
 		
-		if(!containsAll)
+		if(!containsAll) {
+			DDMVC.recordRender();
 			render();
-		else
+		} else
 			for(ModelUpdate update : updates)
 				respondToModelUpdate(update);
 	}
@@ -122,7 +114,7 @@ public abstract class View extends EventSource implements Observer {
 	protected void subscribeToModelUpdate(Path<?,?,?> path, 
 			Class<? extends ModelUpdate> cls) {
 		
-		subscriptions.put(path.toString(), cls.getName());
+		subscriptions.put(path, cls);
 	}
 	
 	/**